@@ -0,0 +1,181 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// One benchmark per phase of the pipeline: parsing the target, reading all_references.txt, rolling types up to components, skipping ignored types (with the trie, and with the linear scan it replaced),
+// correlating types with the target, and writing the references, all against a SyntheticCodebase. Sizes are parameters, so for example
+// -p types=200000 -p edges=2000000 measures a bigger codebase without recompiling. Packages are spread evenly over the components.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PhaseBenchmarks {
+
+	@State(Scope.Benchmark)
+	public static class Codebase {
+
+		@Param({ "10000", "100000" })
+		public int types;
+
+		@Param({ "100000", "1000000" })
+		public int edges;
+
+		@Param({ "100" })
+		public int components;
+
+		@Param({ "1000" })
+		public int packages;
+
+		@Param({ "500" })
+		public int ignores;
+
+		@Param({ "0.05" })
+		public double illegalRate;
+
+		SyntheticCodebase codebase;
+		Ignores ignored;
+		File targetFile;
+		File allReferences;
+		Target target;
+		RollUp rollUp;
+		List<String> typeNames;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			codebase = new SyntheticCodebase(types, edges, components);
+			codebase.setPackagesPerComponent(packages / components);
+			codebase.setIllegalRate(illegalRate);
+			File directory = Files.createTempDirectory("enforcer-benchmarks").toFile();
+			targetFile = new File(directory, "target.yaml");
+			codebase.writeTarget(targetFile);
+			allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + ".txt");
+			codebase.writeAllReferences(allReferences);
+			target = TargetUtils.parse(targetFile);
+			rollUp = new RollUp();
+			rollUp.add(target.components().values());
+			typeNames = new ArrayList<>(codebase.types().keySet());
+			ignored = new Ignores();
+			for (int i = 0; i < ignores; i++) {
+				ignored.add("org.thirdparty.library" + i + ".");
+			}
+		}
+	}
+
+	// Correlating modifies the target and the types, so each invocation gets new ones.
+	@State(Scope.Thread)
+	public static class Uncorrelated {
+
+		Target target;
+		RollUp rollUp;
+		Map<String, Type> types;
+
+		@Setup(Level.Invocation)
+		public void setup(Codebase codebase) throws Exception {
+			target = TargetUtils.parse(codebase.targetFile);
+			rollUp = new RollUp();
+			rollUp.add(target.components().values());
+			types = codebase.codebase.types();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Correlated {
+
+		TypeGraph graph;
+		Outputs outputs;
+
+		@Setup(Level.Trial)
+		public void setup(Codebase codebase) throws Exception {
+			Target target = TargetUtils.parse(codebase.targetFile);
+			RollUp rollUp = new RollUp();
+			rollUp.add(target.components().values());
+			graph = EnforcerUtils.correlate(codebase.codebase.types(), target.components(), rollUp, new HashSet<Problem>(), new Flags());
+			outputs = new Outputs(Files.createTempDirectory("enforcer-benchmarks-outputs").toFile());
+		}
+	}
+
+	@Benchmark
+	public Target parseTarget(Codebase codebase) throws Exception {
+		return TargetUtils.parse(codebase.targetFile);
+	}
+
+	@Benchmark
+	public Map<String, Type> readAllReferences(Codebase codebase) throws Exception {
+		return EnforcerUtils.typesFromAllReferences(codebase.allReferences);
+	}
+
+	@Benchmark
+	public void rollUp(Codebase codebase, Blackhole blackhole) {
+		for (String typeName : codebase.typeNames) {
+			blackhole.consume(codebase.rollUp.get(typeName));
+		}
+	}
+
+	@Benchmark
+	public void skipIgnored(Codebase codebase, Blackhole blackhole) {
+		for (String typeName : codebase.typeNames) {
+			blackhole.consume(EnforcerUtils.skip(typeName, codebase.ignored));
+		}
+	}
+
+	// The linear startsWith scan that the trie in Ignores replaced, for comparison with skipIgnored.
+	@Benchmark
+	public void skipIgnoredLinear(Codebase codebase, Blackhole blackhole) {
+		Set<String> prefixes = codebase.ignored.prefixes();
+		for (String typeName : codebase.typeNames) {
+			boolean skip = false;
+			for (String prefix : prefixes) {
+				if (typeName.startsWith(prefix)) {
+					skip = true;
+					break;
+				}
+			}
+			blackhole.consume(skip);
+		}
+	}
+
+	@Benchmark
+	public TypeGraph correlate(Uncorrelated uncorrelated) {
+		return EnforcerUtils.correlate(uncorrelated.types, uncorrelated.target.components(), uncorrelated.rollUp, new HashSet<Problem>(), new Flags());
+	}
+
+	@Benchmark
+	public void writeReferences(Correlated correlated) throws Exception {
+		Enforce.outputReferences(correlated.graph, correlated.outputs, new Flags());
+	}
+}
@@ -0,0 +1,228 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compact sibling of all_references.txt, for rapid iteration. Holds only what typesFromAllReferences uses, so components and layers are re-resolved
+// from the target on every run, same as with the text file.
+//
+// Layout: magic, version, varint type-name count, names (varint length + UTF-8), varint referring-type count, then for each referring type the varint
+// delta from the previous referring id, a varint edge count, and varint deltas between its (ascending) referred-to ids.
+public class AllReferencesBinary {
+
+	static final byte[] MAGIC = { 'A', 'E', 'R', 'F' };
+	static final int VERSION = 1;
+
+	static boolean isBinary(File allReferences) {
+		return allReferences.getName().endsWith(Outputs.BINARY_SUFFIX);
+	}
+
+	static void writeVarint(int value, OutputStream out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	static void writeString(String value, OutputStream out) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length, out);
+		out.write(bytes);
+	}
+
+	// Only types that take part in a reference are written, which is what the text file holds. Graph ids are ascending and targets are sorted per
+	// type, so renumbering in id order keeps every delta positive.
+	public static void write(TypeGraph graph, File binaryFile) throws Exception {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16)) {
+			write(graph, out);
+		}
+	}
+
+	static void write(TypeGraph graph, OutputStream out) throws Exception {
+		int[] remapped = new int[graph.size()];
+		for (int id = 0; id < graph.size(); id++) {
+			for (int reference = graph.firstReference(id); reference < graph.endReference(id); reference++) {
+				remapped[id] = 1;
+				remapped[graph.target(reference)] = 1;
+			}
+		}
+		int count = 0;
+		int rows = 0;
+		for (int id = 0; id < graph.size(); id++) {
+			if (graph.endReference(id) > graph.firstReference(id)) {
+				rows++;
+			}
+			remapped[id] = remapped[id] == 0 ? -1 : count++;
+		}
+		out.write(MAGIC);
+		out.write(VERSION);
+		writeVarint(count, out);
+		for (int id = 0; id < graph.size(); id++) {
+			if (remapped[id] < 0) {
+				continue;
+			}
+			writeString(graph.type(id).name(), out);
+		}
+		writeVarint(rows, out);
+		int previousRow = 0;
+		for (int id = 0; id < graph.size(); id++) {
+			int first = graph.firstReference(id);
+			int end = graph.endReference(id);
+			if (end == first) {
+				continue;
+			}
+			writeVarint(remapped[id] - previousRow, out);
+			previousRow = remapped[id];
+			writeVarint(end - first, out);
+			int previousTarget = 0;
+			for (int reference = first; reference < end; reference++) {
+				int target = remapped[graph.target(reference)];
+				writeVarint(target - previousTarget, out);
+				previousTarget = target;
+			}
+		}
+	}
+
+	// Buffered varint reader. Avoids the per-byte synchronization in BufferedInputStream.
+	static class Reader {
+
+		private final File file;
+		private final String kind;
+		private final InputStream in;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position = 0;
+		private int limit = 0;
+
+		Reader(File file, String kind, InputStream in) {
+			this.file = file;
+			this.kind = kind;
+			this.in = in;
+		}
+
+		Reader(File file, InputStream in) {
+			this(file, "all-references", in);
+		}
+
+		EnforcerException malformed(String detail) {
+			return new EnforcerException("malformed " + kind + " file " + file.getAbsolutePath() + ": " + detail, Errors.MALFORMED_ALL_REFERENCES_FILE);
+		}
+
+		boolean fill() throws IOException {
+			if (position < limit) {
+				return true;
+			}
+			limit = in.read(buffer);
+			position = 0;
+			return limit > 0;
+		}
+
+		int readByte() throws IOException {
+			if (!fill()) {
+				throw malformed("unexpected end of file");
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					if (value < 0) {
+						throw malformed("negative value");
+					}
+					return value;
+				}
+			}
+			throw malformed("varint too long");
+		}
+
+		// Ids only start at zero, so after the first a zero delta is a duplicate.
+		int readId(int previous, boolean first, int count) throws IOException {
+			int id = previous + readVarint();
+			if (id < previous || id >= count) {
+				throw malformed("type id out of range");
+			}
+			if (id == previous && !first) {
+				throw malformed("type id not increasing");
+			}
+			return id;
+		}
+
+		String readString() throws IOException {
+			byte[] bytes = new byte[readVarint()];
+			int read = 0;
+			while (read < bytes.length) {
+				if (!fill()) {
+					throw malformed("unexpected end of file");
+				}
+				int chunk = Math.min(bytes.length - read, limit - position);
+				System.arraycopy(buffer, position, bytes, read, chunk);
+				position += chunk;
+				read += chunk;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	public static Map<String, Type> read(File binaryFile) throws Exception {
+		Map<String, Type> types = new HashMap<>();
+		try (InputStream in = new FileInputStream(binaryFile)) {
+			Reader reader = new Reader(binaryFile, in);
+			for (byte b : MAGIC) {
+				if (reader.readByte() != b) {
+					throw reader.malformed("not an all-references file");
+				}
+			}
+			int version = reader.readByte();
+			if (version != VERSION) {
+				throw reader.malformed("unsupported version " + version);
+			}
+			Type[] byId = new Type[reader.readVarint()];
+			for (int id = 0; id < byId.length; id++) {
+				byId[id] = EnforcerUtils.get(reader.readString(), types);
+			}
+			int rows = reader.readVarint();
+			int referring = 0;
+			for (int row = 0; row < rows; row++) {
+				referring = reader.readId(referring, row == 0, byId.length);
+				Type referringType = byId[referring];
+				int edges = reader.readVarint();
+				int referredTo = 0;
+				for (int edge = 0; edge < edges; edge++) {
+					referredTo = reader.readId(referredTo, edge == 0, byId.length);
+					Type referredToType = byId[referredTo];
+					referringType.addReferenceName(referredToType.name());
+					referringType.addReference(referredToType);
+				}
+			}
+			if (reader.fill()) {
+				throw reader.malformed("unexpected data after references");
+			}
+		}
+		return types;
+	}
+}
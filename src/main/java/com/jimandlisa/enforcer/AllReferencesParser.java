@@ -0,0 +1,215 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Parallel alternative to EnforcerUtils.typesFromAllReferences. Memory-maps the file, splits it into line-aligned chunks, and pulls the referring
+// and referred-to class names (segments 0 and 4) straight out of the bytes. Chunks are merged in file order, so the result is the same as reading
+// the file line by line.
+public class AllReferencesParser {
+
+	static final int CHUNK_SIZE = 8 << 20;
+	static final int MAX_LINE_LENGTH = 1 << 20;
+	static final byte SEPARATOR = (byte) Separators.REFERENCE_SEPARATOR.value().charAt(0);
+	static final int REFERRED_TO_SEGMENT = 4;
+
+	// Names are interned per chunk, and edges are pairs of indexes into the names.
+	static class Chunk {
+
+		final List<String> names = new ArrayList<>();
+		final Map<String, Integer> ids = new HashMap<>();
+		int[] edges = new int[256];
+		int edgeCount = 0;
+
+		int id(String name) {
+			Integer id = ids.get(name);
+			if (id == null) {
+				id = names.size();
+				names.add(name);
+				ids.put(name, id);
+			}
+			return id;
+		}
+
+		void add(int referring, int referredTo) {
+			if (edgeCount + 2 > edges.length) {
+				edges = Arrays.copyOf(edges, edges.length * 2);
+			}
+			edges[edgeCount++] = referring;
+			edges[edgeCount++] = referredTo;
+		}
+	}
+
+	static EnforcerException malformed(File file, long offset, String detail) {
+		return new EnforcerException("malformed all-references file " + file.getAbsolutePath() + " at byte " + offset + ": " + detail, Errors.MALFORMED_ALL_REFERENCES_FILE);
+	}
+
+	// The reader is a duplicate of the mapped buffer, so setting its position doesn't disturb anything else.
+	static String name(ByteBuffer reader, int from, int to, byte[] scratch) {
+		byte[] bytes = to - from > scratch.length ? new byte[to - from] : scratch; // Only the last chunk can have a line longer than the scratch buffer.
+		reader.position(from);
+		reader.get(bytes, 0, to - from);
+		return new String(bytes, 0, to - from, StandardCharsets.UTF_8);
+	}
+
+	static boolean sameBytes(ByteBuffer buffer, int from1, int to1, int from2, int to2) {
+		if (to1 - from1 != to2 - from2) {
+			return false;
+		}
+		for (int i = 0; i < to1 - from1; i++) {
+			if (buffer.get(from1 + i) != buffer.get(from2 + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Parses every line that starts in [start, end). The buffer holds the file from mapStart on, and runs far enough past end to finish the last line.
+	static Chunk parse(File file, ByteBuffer buffer, long mapStart, long start, long end, long length) {
+		Chunk chunk = new Chunk();
+		ByteBuffer reader = buffer.duplicate();
+		byte[] scratch = new byte[MAX_LINE_LENGTH];
+		int previousStart = 0;
+		int previousEnd = -1;
+		int previousId = -1;
+		int limit = buffer.limit();
+		int position = (int) (start - mapStart);
+		if (start > 0 && buffer.get(position - 1) != '\n') {
+			while (position < limit && buffer.get(position) != '\n') { // Partial line belongs to the previous chunk.
+				position++;
+			}
+			position++;
+		}
+		int stop = (int) (end - mapStart);
+		while (position < stop) {
+			int lineStart = position;
+			int referringEnd = -1;
+			int referredToStart = -1;
+			int referredToEnd = -1;
+			int separators = 0;
+			while (position < limit && buffer.get(position) != '\n') {
+				if (buffer.get(position) == SEPARATOR) {
+					separators++;
+					if (separators == 1) {
+						referringEnd = position;
+					} else if (separators == REFERRED_TO_SEGMENT) {
+						referredToStart = position + 1;
+					} else if (separators == REFERRED_TO_SEGMENT + 1) {
+						referredToEnd = position;
+					}
+				}
+				position++;
+			}
+			if (position == limit && mapStart + limit < length) {
+				throw malformed(file, mapStart + lineStart, "line longer than " + MAX_LINE_LENGTH + " bytes");
+			}
+			if (separators < REFERRED_TO_SEGMENT) {
+				throw malformed(file, mapStart + lineStart, "expected at least " + (REFERRED_TO_SEGMENT + 1) + " segments");
+			}
+			if (referredToEnd < 0) {
+				referredToEnd = buffer.get(position - 1) == '\r' ? position - 1 : position; // There's at least one separator, so the line isn't empty.
+			}
+			if (previousId < 0 || !sameBytes(buffer, previousStart, previousEnd, lineStart, referringEnd)) { // Lines are sorted, so the referring class usually repeats.
+				previousId = chunk.id(name(reader, lineStart, referringEnd, scratch));
+				previousStart = lineStart;
+				previousEnd = referringEnd;
+			}
+			chunk.add(previousId, chunk.id(name(reader, referredToStart, referredToEnd, scratch)));
+			position++;
+		}
+		return chunk;
+	}
+
+	static class ChunkTask extends RecursiveTask<Chunk> {
+
+		private static final long serialVersionUID = -4121573316427207762L;
+
+		private final File file;
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final long length;
+
+		ChunkTask(File file, FileChannel channel, long start, long end, long length) {
+			this.file = file;
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.length = length;
+		}
+
+		@Override
+		protected Chunk compute() {
+			long mapStart = start == 0 ? 0 : start - 1; // Include the previous byte, to see whether the chunk starts on a line boundary.
+			long mapEnd = Math.min(length, end + MAX_LINE_LENGTH);
+			try {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+				return parse(file, buffer, mapStart, start, end, length);
+			} catch (IOException e) {
+				throw new EnforcerException("unable to read " + file.getAbsolutePath() + ": " + e.getMessage(), Errors.UNABLE_TO_READ_ALL_REFERENCES_FILE, e);
+			}
+		}
+	}
+
+	static void merge(Chunk chunk, Map<String, Type> types) {
+		Type[] local = new Type[chunk.names.size()];
+		for (int id = 0; id < local.length; id++) {
+			local[id] = EnforcerUtils.get(chunk.names.get(id), types);
+		}
+		for (int edge = 0; edge < chunk.edgeCount; edge += 2) {
+			Type referringType = local[chunk.edges[edge]];
+			Type referredToType = local[chunk.edges[edge + 1]];
+			referringType.addReferenceName(referredToType.name());
+			referringType.addReference(referredToType);
+		}
+	}
+
+	public static Map<String, Type> typesFromAllReferences(File allReferences) throws Exception {
+		return typesFromAllReferences(allReferences, CHUNK_SIZE);
+	}
+
+	static Map<String, Type> typesFromAllReferences(File allReferences, int chunkSize) throws Exception {
+		Map<String, Type> types = new HashMap<>();
+		ForkJoinPool pool = new ForkJoinPool();
+		try (FileChannel channel = FileChannel.open(allReferences.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			List<ChunkTask> tasks = new ArrayList<>();
+			for (long start = 0; start < length; start += chunkSize) {
+				ChunkTask task = new ChunkTask(allReferences, channel, start, Math.min(length, start + chunkSize), length);
+				pool.execute(task);
+				tasks.add(task);
+			}
+			for (ChunkTask task : tasks) {
+				merge(task.join(), types);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return types;
+	}
+}
@@ -16,6 +16,8 @@ package com.jimandlisa.enforcer;
 public class AnalyzeBinaryFlags extends Flags {
 	
 	private boolean preserveNestedTypes = false;
+	private boolean bcel = false;
+	private boolean cache = false;
 	
 	public AnalyzeBinaryFlags() {
 		super();
@@ -31,9 +33,31 @@ public class AnalyzeBinaryFlags extends Flags {
 	public boolean preserveNestedTypes() {
 		return preserveNestedTypes;
 	}
+
+	public void enableBcel() {
+		if (bcel()) {
+			throw new EnforcerException("bcel already set", Errors.BCEL_ALREADY_SPECIFIED);
+		}
+		this.bcel = true;
+	}
+
+	public boolean bcel() {
+		return bcel;
+	}
+
+	public void enableCache() {
+		if (cache()) {
+			throw new EnforcerException("cache already set", Errors.CACHE_ALREADY_SPECIFIED);
+		}
+		this.cache = true;
+	}
+
+	public boolean cache() {
+		return cache;
+	}
 	
 	@Override
 	public String toString() {
-		return "preserveNestedTypes=" + preserveNestedTypes + ", " + super.toString();
+		return "preserveNestedTypes=" + preserveNestedTypes + ", bcel=" + bcel + ", cache=" + cache + ", " + super.toString();
 	}
 }
@@ -14,16 +14,23 @@
 package com.jimandlisa.enforcer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AnalyzeBinaryInputs extends Inputs {
 	
 	private File ignores = null;
 	private File reflections = null;
 	private File fixUnresolveds = null;
+	private File cacheDirectory = null;
 
 	public AnalyzeBinaryInputs(File target, File binary) {
 		super(target, binary);
 	}
+
+	public AnalyzeBinaryInputs(List<File> targets, File binary) {
+		super(targets, binary);
+	}
 	
 	public File binary() {
 		return data;
@@ -61,9 +68,36 @@ public class AnalyzeBinaryInputs extends Inputs {
 	public final File fixUnresolveds() {
 		return fixUnresolveds;
 	}
+
+	public final void setCacheDirectory(File cacheDirectory) {
+		if (cacheDirectory() != null) {
+			throw new EnforcerException("already set cache directory " + cacheDirectory(), Errors.CACHE_ALREADY_SPECIFIED);
+		}
+		this.cacheDirectory = FileUtils.checkWriteDir(cacheDirectory);
+	}
+
+	public final File cacheDirectory() {
+		return cacheDirectory;
+	}
 	
+	@Override
+	public List<File> dataFiles() {
+		List<File> files = new ArrayList<>();
+		files.add(data);
+		for (File file : new File[] { ignores, reflections, fixUnresolveds }) {
+			if (file != null) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	String binaryToString() {
+		return "binary=" + data;
+	}
+
 	@Override
 	public String toString() {
-		return "target=" + target + ", binary=" + data + ", ignores=" + ignores + ", reflections=" + reflections + ", fix-unresolveds=" + fixUnresolveds;
+		return targetsToString() + ", " + binaryToString() + ", ignores=" + ignores + ", reflections=" + reflections + ", fix-unresolveds=" + fixUnresolveds + ", cache-directory=" + cacheDirectory;
 	}
 }
@@ -0,0 +1,114 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// One output file. Each artifact computes its own content, so artifacts can be written concurrently.
+// Content is written to a temporary file next to the output and then moved over it, so editors and graph tools watching the output never see a
+// half-written file, and a failed run leaves the previous output in place.
+public abstract class Artifact implements Callable<File> {
+
+	static final int BUFFER_SIZE = 1 << 20;
+
+	private final File file;
+
+	public Artifact(final File file) {
+		super();
+		this.file = file;
+	}
+
+	public File file() {
+		return file;
+	}
+
+	// Large buffer in front of a file channel, so slow (for example, network-backed) file systems see few, big writes.
+	static PrintStream open(File file) throws Exception {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		return new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+	}
+
+	static File temporary(File file) {
+		return new File(file.getAbsolutePath() + ".tmp");
+	}
+
+	// Falls back to a plain replace on file systems that can't move atomically.
+	static void move(File from, File to) throws Exception {
+		try {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	protected abstract void write(PrintStream out) throws Exception;
+
+	@Override
+	public File call() throws Exception {
+		File temporary = temporary(file);
+		try {
+			try (PrintStream out = open(temporary)) {
+				write(out);
+				if (out.checkError()) { // PrintStream swallows IOExceptions.
+					throw new EnforcerException("error writing " + file.getAbsolutePath(), Errors.CANNOT_WRITE_FILE);
+				}
+			}
+			move(temporary, file);
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+		return file;
+	}
+
+	// Writes all the artifacts at once, one thread per artifact (there are only a dozen or so, and they mostly wait on the file system).
+	public static void write(List<Artifact> artifacts) throws Exception {
+		if (artifacts.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(artifacts.size());
+		try {
+			List<Future<File>> futures = new ArrayList<>();
+			for (Artifact artifact : artifacts) {
+				futures.add(executor.submit(artifact));
+			}
+			for (Future<File> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw new EnforcerException("error writing outputs: " + e.getCause(), Errors.CANNOT_WRITE_FILE, e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs one task per item (each of several targets, or each binary of a fleet), several at a time, each printing to its own buffered console so
+// their output isn't interleaved. Once all are done, prints each item's heading and output, in item order, followed by its failure, if any. A
+// failure doesn't stop the other items, but is returned, counted with the rest, for the caller to throw once it's finished.
+abstract class BufferedTasks {
+
+	private final int count;
+	private final String items;
+
+	BufferedTasks(final int count, final String items) {
+		super();
+		this.count = count;
+		this.items = items;
+	}
+
+	abstract String heading(int index);
+
+	abstract void task(int index, PrintStream out) throws Exception;
+
+	// Null if nothing failed.
+	static Exception failure(Exception first, int failed, int count, String items) {
+		if (first instanceof EnforcerException) {
+			return new EnforcerException(failed + " of " + count + " " + items + " failed, first with: " + first.getMessage(), ((EnforcerException)first).error(), first);
+		}
+		return first;
+	}
+
+	Exception run(int threads, PrintStream console) throws Exception {
+		final ByteArrayOutputStream[] consoles = new ByteArrayOutputStream[count];
+		final Exception[] failures = new Exception[count];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			final int index = i;
+			consoles[index] = new ByteArrayOutputStream();
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try (PrintStream out = new PrintStream(consoles[index], true, StandardCharsets.UTF_8.name())) {
+						task(index, out);
+					} catch (Exception e) {
+						failures[index] = e;
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		int failed = 0;
+		Exception first = null;
+		for (int i = 0; i < count; i++) {
+			console.println(heading(i));
+			console.print(consoles[i].toString(StandardCharsets.UTF_8.name()));
+			if (failures[i] != null) {
+				console.println(failures[i].getMessage());
+				failed++;
+				first = first == null ? failures[i] : first;
+			}
+		}
+		return failure(first, failed, count, items);
+	}
+}
@@ -0,0 +1,181 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jimandlisa.enforcer.ClassFileScanner.ScannedClass;
+
+// Remembers what each class file refers to, keyed by a hash of the class file's bytes, so that rescanning a binary where little has changed only parses
+// the classes that did change. The cached names are already denested and filtered, so they depend on the ignores and on whether nested types are preserved.
+// The first line of the file fingerprints both, and if either has changed the whole cache is discarded. The rest of the file is one line per class file:
+// hash!referringClass!referredToClass,referredToClass,... (with an empty referring class if the class file is ignored).
+public class ClassFileCache {
+
+	public static final String CACHE_FILE_NAME = "class_file_cache.txt";
+	static final String FORMAT_VERSION = "1";
+
+	private final File file;
+	private final String fingerprint;
+	private final Map<String, ScannedClass> previous = new ConcurrentHashMap<>();
+	private final Map<String, ScannedClass> current = new ConcurrentHashMap<>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	public ClassFileCache(final File cacheDirectory, final Ignores ignores, final AnalyzeBinaryFlags flags) throws Exception {
+		super();
+		this.file = Paths.get(FileUtils.checkWriteDir(cacheDirectory).getAbsolutePath(), CACHE_FILE_NAME).toFile();
+		this.fingerprint = fingerprint(ignores, flags);
+		load();
+	}
+
+	// Kept only in memory, for sharing between the binaries of a fleet when nothing is to be saved.
+	ClassFileCache(final Ignores ignores, final AnalyzeBinaryFlags flags) throws Exception {
+		super();
+		this.file = null;
+		this.fingerprint = fingerprint(ignores, flags);
+	}
+
+	static String hex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+
+	static String hash(byte[] bytes) throws Exception {
+		return hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+	}
+
+	static String fingerprint(Ignores ignores, AnalyzeBinaryFlags flags) throws Exception {
+		StringBuilder builder = new StringBuilder("preserveNestedTypes=" + flags.preserveNestedTypes());
+		for (String ignore : CollectionUtils.sort(new ArrayList<>(ignores.prefixes()))) {
+			builder.append("\n").append(ignore);
+		}
+		return "v" + FORMAT_VERSION + Separators.REFERENCE_SEPARATOR.value() + hash(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String format(String hash, ScannedClass scanned) {
+		StringBuilder builder = new StringBuilder(hash).append(Separators.REFERENCE_SEPARATOR.value());
+		if (scanned.name() != null) {
+			builder.append(scanned.name());
+		}
+		builder.append(Separators.REFERENCE_SEPARATOR.value());
+		builder.append(String.join(Separators.SUPPLEMENTAL_TYPES_TO_LIST_SEPARATOR.value(), scanned.referredTo()));
+		return builder.toString();
+	}
+
+	// Returns false if the line is malformed, which shouldn't happen unless the file was edited by hand, in which case it's safest to start over.
+	static boolean parse(String line, Map<String, ScannedClass> entries) {
+		String[] segments = line.split(Separators.REFERENCE_SEPARATOR.value(), -1);
+		if (segments.length != 3 || segments[0].isEmpty() || (segments[1].isEmpty() && !segments[2].isEmpty())) {
+			return false;
+		}
+		Set<String> referredTo = new LinkedHashSet<>();
+		if (!segments[2].isEmpty()) {
+			referredTo.addAll(Arrays.asList(segments[2].split(Separators.SUPPLEMENTAL_TYPES_TO_LIST_SEPARATOR.value())));
+		}
+		entries.put(segments[0], new ScannedClass(segments[1].isEmpty() ? null : segments[1], referredTo));
+		return true;
+	}
+
+	void load(BufferedReader reader) throws IOException {
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			if (!parse(line, previous)) {
+				previous.clear();
+				return;
+			}
+		}
+	}
+
+	void load() throws Exception {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			if (fingerprint.equals(reader.readLine())) { // Otherwise ignores or flags changed (or the file is empty), so everything has to be rescanned.
+				load(reader);
+			}
+		} catch (CharacterCodingException e) {
+			previous.clear(); // Not even text, so same as malformed.
+		}
+	}
+
+	// Checks this run's entries too, so a class file already scanned in another binary sharing the cache isn't scanned again.
+	ScannedClass get(String hash) {
+		ScannedClass scanned = current.get(hash);
+		if (scanned == null) {
+			scanned = previous.get(hash);
+		}
+		if (scanned == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		current.put(hash, scanned);
+		return scanned;
+	}
+
+	void put(String hash, ScannedClass scanned) {
+		current.put(hash, scanned);
+	}
+
+	int hits() {
+		return hits.get();
+	}
+
+	int misses() {
+		return misses.get();
+	}
+
+	// Only writes entries for class files seen in this scan, so the cache doesn't grow forever as classes are changed or deleted. Writes to a temporary file
+	// first, so an interrupted run can't leave a truncated cache behind.
+	public synchronized void save() throws Exception {
+		if (file == null) {
+			return;
+		}
+		List<String> hashes = CollectionUtils.sort(new ArrayList<>(current.keySet()));
+		File temporary = File.createTempFile(CACHE_FILE_NAME, ".tmp", file.getParentFile()); // Unique, since binaries of a fleet can share a cache directory.
+		try (PrintStream out = new PrintStream(Files.newOutputStream(temporary.toPath()), false, StandardCharsets.UTF_8.name())) {
+			out.println(fingerprint);
+			for (String hash : hashes) {
+				out.println(format(hash, current.get(hash)));
+			}
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public File file() {
+		return file;
+	}
+}
@@ -0,0 +1,505 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.classfile.AnnotationEntry;
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantMethodType;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.EnclosingMethod;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.InnerClass;
+import org.apache.bcel.classfile.InnerClasses;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+// Alternative to pf-CDA that reads referred-to types straight out of the constant pool and descriptors of each .class entry, using BCEL. Nothing is retained
+// per class except the names, and entries are parsed in parallel, so this is much faster and lighter than building a pf-CDA workset.
+// Jars nested inside the binary (for example, in WEB-INF/lib, or inside a war inside an ear) are expanded and scanned concurrently too.
+// Denesting doesn't have to guess here, because the JVM spec requires every class to list every nested class it mentions in its InnerClasses attribute,
+// along with the enclosing class (or zero, for local and anonymous classes, which can only be referred to from within the same outermost type).
+public class ClassFileScanner {
+
+	// Below this many entries, a task parses its entries itself instead of splitting further.
+	static final int THRESHOLD = 64;
+
+	static class ScannedClass {
+
+		private final String name;
+		private final Set<String> referredTo;
+
+		ScannedClass(final String name, final Set<String> referredTo) {
+			super();
+			this.name = name;
+			this.referredTo = referredTo;
+		}
+
+		String name() {
+			return name;
+		}
+
+		Set<String> referredTo() {
+			return referredTo;
+		}
+	}
+
+	static String className(String internalName) {
+		return internalName.replace('/', '.');
+	}
+
+	static String className(int index, ConstantPool pool) {
+		return className(((ConstantClass)pool.getConstant(index, Const.CONSTANT_Class)).getBytes(pool));
+	}
+
+	// Adds every class named in a field or method descriptor. Primitives and array brackets are skipped, because only L...; names classes.
+	static void descriptor(String descriptor, Set<String> names) {
+		int i = 0;
+		while (i < descriptor.length()) {
+			if (descriptor.charAt(i) != 'L') {
+				i++;
+				continue;
+			}
+			int end = descriptor.indexOf(';', i);
+			if (end < 0) {
+				return;
+			}
+			names.add(className(descriptor.substring(i + 1, end)));
+			i = end + 1;
+		}
+	}
+
+	static void annotations(AnnotationEntry[] entries, Set<String> names) {
+		for (AnnotationEntry entry : entries) {
+			descriptor(entry.getAnnotationType(), names);
+		}
+	}
+
+	static Set<String> rawReferredTo(JavaClass javaClass) {
+		Set<String> names = new LinkedHashSet<>();
+		ConstantPool pool = javaClass.getConstantPool();
+		for (Constant constant : pool.getConstantPool()) {
+			if (constant instanceof ConstantClass) {
+				String name = ((ConstantClass)constant).getBytes(pool);
+				if (name.startsWith("[")) {
+					descriptor(name, names);
+				} else {
+					names.add(className(name));
+				}
+			} else if (constant instanceof ConstantNameAndType) {
+				descriptor(((ConstantNameAndType)constant).getSignature(pool), names);
+			} else if (constant instanceof ConstantMethodType) {
+				descriptor(((ConstantUtf8)pool.getConstant(((ConstantMethodType)constant).getDescriptorIndex(), Const.CONSTANT_Utf8)).getBytes(), names);
+			}
+		}
+		for (Field field : javaClass.getFields()) {
+			descriptor(field.getSignature(), names);
+			annotations(field.getAnnotationEntries(), names);
+		}
+		for (Method method : javaClass.getMethods()) {
+			descriptor(method.getSignature(), names);
+			annotations(method.getAnnotationEntries(), names);
+		}
+		annotations(javaClass.getAnnotationEntries(), names);
+		return names;
+	}
+
+	// Maps each nested class mentioned by this class to its enclosing class, or to null for local and anonymous classes.
+	static Map<String, String> enclosingClasses(JavaClass javaClass) {
+		Map<String, String> enclosing = new HashMap<>();
+		ConstantPool pool = javaClass.getConstantPool();
+		for (Attribute attribute : javaClass.getAttributes()) {
+			if (attribute instanceof InnerClasses) {
+				for (InnerClass innerClass : ((InnerClasses)attribute).getInnerClasses()) {
+					String inner = className(innerClass.getInnerClassIndex(), pool);
+					enclosing.put(inner, innerClass.getOuterClassIndex() == 0 ? null : className(innerClass.getOuterClassIndex(), pool));
+				}
+			}
+		}
+		for (Attribute attribute : javaClass.getAttributes()) {
+			if (attribute instanceof EnclosingMethod) {
+				enclosing.put(javaClass.getClassName(), className(((EnclosingMethod)attribute).getEnclosingClassIndex(), pool));
+			}
+		}
+		return enclosing;
+	}
+
+	// Walks outwards until reaching a class that isn't nested. Local and anonymous classes resolve to the outermost type of the class referring to them, which
+	// has to be computed first (with a null outermost). If the class itself is nested inside a local or anonymous class, we only have the name to go on.
+	static String denest(String typeName, String outermost, Map<String, String> enclosing) {
+		String current = typeName;
+		// Bounded by the number of entries, so a malformed class file with an enclosing-class cycle can't spin forever.
+		for (int i = 0; i <= enclosing.size(); i++) {
+			if (!enclosing.containsKey(current)) {
+				return current;
+			}
+			String outer = enclosing.get(current);
+			if (outer == null) {
+				return outermost == null ? current.replaceAll("[$].*$", "") : outermost;
+			}
+			current = outer;
+		}
+		return current;
+	}
+
+	static ScannedClass scan(JavaClass javaClass, AnalyzeBinaryFlags flags) {
+		String self = javaClass.getClassName();
+		EnforcerUtils.checkSeparators(self);
+		Map<String, String> enclosing = flags.preserveNestedTypes() ? Collections.<String, String>emptyMap() : enclosingClasses(javaClass);
+		String name = denest(self, null, enclosing);
+		Set<String> referredTo = new LinkedHashSet<>();
+		for (String rawName : rawReferredTo(javaClass)) {
+			EnforcerUtils.checkSeparators(rawName);
+			referredTo.add(denest(rawName, name, enclosing));
+		}
+		return new ScannedClass(name, referredTo);
+	}
+
+	static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count = 0;
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	static ScannedClass scan(byte[] bytes, String entryName, AnalyzeBinaryFlags flags) throws IOException {
+		try {
+			return scan(new ClassParser(new ByteArrayInputStream(bytes), entryName).parse(), flags);
+		} catch (ClassFormatException e) {
+			throw new EnforcerException("malformed class file " + entryName + ": " + e.getMessage(), Errors.MALFORMED_CLASS_FILE, e);
+		}
+	}
+
+	// Drops ignored classes, and self-references and ignored classes from what a class refers to. A dropped class keeps a null name, so it can still be cached.
+	static ScannedClass filter(ScannedClass scanned, Ignores ignores) {
+		if (EnforcerUtils.skip(scanned.name(), ignores)) {
+			return new ScannedClass(null, Collections.<String>emptySet());
+		}
+		Set<String> referredTo = new LinkedHashSet<>();
+		for (String referredToClass : scanned.referredTo()) {
+			if (EnforcerUtils.skip(scanned.name(), referredToClass, ignores)) {
+				continue;
+			}
+			referredTo.add(referredToClass);
+		}
+		return new ScannedClass(scanned.name(), referredTo);
+	}
+
+	// What every task needs to scan a class file. The cache is null unless caching was requested.
+	static class ScanSettings {
+
+		private final Ignores ignores;
+		private final AnalyzeBinaryFlags flags;
+		private final ClassFileCache cache;
+		private final Progress progress;
+
+		ScanSettings(final Ignores ignores, final AnalyzeBinaryFlags flags, final ClassFileCache cache, final Progress progress) {
+			super();
+			this.ignores = ignores;
+			this.flags = flags;
+			this.cache = cache;
+			this.progress = progress;
+		}
+
+		Progress progress() {
+			return progress;
+		}
+
+		ScannedClass scan(byte[] bytes, String entryName) throws Exception {
+			ScannedClass scanned = cached(bytes, entryName);
+			progress.step(scanned.referredTo().size());
+			return scanned;
+		}
+
+		private ScannedClass cached(byte[] bytes, String entryName) throws Exception {
+			if (cache == null) {
+				return filter(ClassFileScanner.scan(bytes, entryName, flags), ignores);
+			}
+			String hash = ClassFileCache.hash(bytes);
+			ScannedClass scanned = cache.get(hash);
+			if (scanned == null) {
+				scanned = filter(ClassFileScanner.scan(bytes, entryName, flags), ignores);
+				cache.put(hash, scanned);
+			}
+			return scanned;
+		}
+	}
+
+	// A class file in the outermost binary is read on demand by whichever worker scans it. A class file in a nested archive has already been read,
+	// because nested archives can only be walked sequentially.
+	static class ClassEntry {
+
+		private final String name;
+		private final ZipFile zip;
+		private final ZipEntry entry;
+		private final byte[] bytes;
+
+		ClassEntry(final ZipFile zip, final ZipEntry entry) {
+			super();
+			this.name = entry.getName();
+			this.zip = zip;
+			this.entry = entry;
+			this.bytes = null;
+		}
+
+		ClassEntry(final String name, final byte[] bytes) {
+			super();
+			this.name = name;
+			this.zip = null;
+			this.entry = null;
+			this.bytes = bytes;
+		}
+
+		String name() {
+			return name;
+		}
+
+		byte[] bytes() throws IOException {
+			if (bytes != null) {
+				return bytes;
+			}
+			try (InputStream in = zip.getInputStream(entry)) {
+				return read(in);
+			}
+		}
+	}
+
+	static class ScanTask extends RecursiveTask<List<ScannedClass>> {
+
+		private static final long serialVersionUID = 2817342940143565219L;
+
+		private final List<ClassEntry> entries;
+		private final ScanSettings settings;
+
+		ScanTask(final List<ClassEntry> entries, final ScanSettings settings) {
+			super();
+			this.entries = entries;
+			this.settings = settings;
+		}
+
+		@Override
+		protected List<ScannedClass> compute() {
+			if (entries.size() > THRESHOLD) {
+				int middle = entries.size() / 2;
+				ScanTask first = new ScanTask(entries.subList(0, middle), settings);
+				ScanTask second = new ScanTask(entries.subList(middle, entries.size()), settings);
+				first.fork();
+				List<ScannedClass> secondScanned = second.compute();
+				List<ScannedClass> scanned = new ArrayList<>(first.join());
+				scanned.addAll(secondScanned);
+				return scanned;
+			}
+			List<ScannedClass> scanned = new ArrayList<>();
+			for (ClassEntry entry : entries) {
+				try {
+					scanned.add(settings.scan(entry.bytes(), entry.name()));
+				} catch (EnforcerException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new EnforcerException("unable to read " + entry.name() + ": " + e.getMessage(), Errors.UNABLE_TO_READ_BINARY, e);
+				}
+			}
+			return scanned;
+		}
+	}
+
+	static boolean isClass(String entryName) {
+		return entryName.endsWith(".class") && !entryName.endsWith("module-info.class"); // Module descriptors aren't types.
+	}
+
+	static boolean isArchive(String entryName) {
+		return Enforce.isBinary(new File(entryName));
+	}
+
+	// Joins in the order the tasks were forked, so the merged types don't depend on scheduling.
+	static List<ScannedClass> joinInOrder(List<RecursiveTask<List<ScannedClass>>> tasks) {
+		List<ScannedClass> scanned = new ArrayList<>();
+		for (RecursiveTask<List<ScannedClass>> task : tasks) {
+			scanned.addAll(task.join());
+		}
+		return scanned;
+	}
+
+	static void forkInOrder(RecursiveTask<List<ScannedClass>> task, List<RecursiveTask<List<ScannedClass>>> tasks) {
+		task.fork();
+		tasks.add(task);
+	}
+
+	// Discovers the class files and nested archives in one archive, forking a task for each nested archive as soon as it's found, so nested archives are
+	// scanned concurrently with each other and with the classes of the archive that contains them. The outermost binary is opened as a ZipFile so its
+	// entries can be read in any order, including by the tasks for the archives nested directly in it. Deeper archives (for example, a jar in WEB-INF/lib
+	// of a war inside an ear) can only be walked as streams, so each is read into memory when found, and its class files are scanned in batches as they're read.
+	static class ArchiveTask extends RecursiveTask<List<ScannedClass>> {
+
+		private static final long serialVersionUID = -4197610453318720617L;
+
+		private final ZipFile zip;
+		private final ZipEntry entry;
+		private final String path;
+		private final byte[] bytes;
+		private final ScanSettings settings;
+
+		ArchiveTask(final ZipFile zip, final ScanSettings settings) {
+			super();
+			this.zip = zip;
+			this.entry = null;
+			this.path = zip.getName();
+			this.bytes = null;
+			this.settings = settings;
+		}
+
+		ArchiveTask(final ZipFile zip, final ZipEntry entry, final ScanSettings settings) {
+			super();
+			this.zip = zip;
+			this.entry = entry;
+			this.path = zip.getName() + "!/" + entry.getName();
+			this.bytes = null;
+			this.settings = settings;
+		}
+
+		ArchiveTask(final String path, final byte[] bytes, final ScanSettings settings) {
+			super();
+			this.zip = null;
+			this.entry = null;
+			this.path = path;
+			this.bytes = bytes;
+			this.settings = settings;
+		}
+
+		List<ScannedClass> computeOutermost() {
+			List<ClassEntry> classes = new ArrayList<>();
+			List<RecursiveTask<List<ScannedClass>>> archives = new ArrayList<>();
+			Enumeration<? extends ZipEntry> enumeration = zip.entries();
+			while (enumeration.hasMoreElements()) {
+				ZipEntry next = enumeration.nextElement();
+				if (next.isDirectory()) {
+					continue;
+				}
+				if (isClass(next.getName())) {
+					classes.add(new ClassEntry(zip, next));
+				} else if (isArchive(next.getName())) {
+					forkInOrder(new ArchiveTask(zip, next, settings), archives);
+				}
+			}
+			settings.progress().grow(classes.size());
+			List<ScannedClass> scanned = new ArrayList<>(new ScanTask(classes, settings).compute());
+			scanned.addAll(joinInOrder(archives));
+			return scanned;
+		}
+
+		List<ScannedClass> computeNested() throws IOException {
+			List<RecursiveTask<List<ScannedClass>>> tasks = new ArrayList<>();
+			List<ClassEntry> batch = new ArrayList<>();
+			try (ZipInputStream in = new ZipInputStream(bytes == null ? zip.getInputStream(entry) : new ByteArrayInputStream(bytes))) {
+				ZipEntry next = null;
+				while ((next = in.getNextEntry()) != null) {
+					if (next.isDirectory()) {
+						continue;
+					}
+					String name = path + "!/" + next.getName();
+					if (isClass(next.getName())) {
+						batch.add(new ClassEntry(name, read(in)));
+						if (batch.size() == THRESHOLD) {
+							settings.progress().grow(batch.size());
+							forkInOrder(new ScanTask(batch, settings), tasks);
+							batch = new ArrayList<>();
+						}
+					} else if (isArchive(next.getName())) {
+						forkInOrder(new ArchiveTask(name, read(in), settings), tasks);
+					}
+				}
+			}
+			settings.progress().grow(batch.size());
+			forkInOrder(new ScanTask(batch, settings), tasks);
+			return joinInOrder(tasks);
+		}
+
+		@Override
+		protected List<ScannedClass> compute() {
+			try {
+				return zip == null || entry != null ? computeNested() : computeOutermost();
+			} catch (IOException e) {
+				throw new EnforcerException("unable to read " + path + ": " + e.getMessage(), Errors.UNABLE_TO_READ_BINARY, e);
+			}
+		}
+	}
+
+	static List<ScannedClass> scan(File binary, ScanSettings settings) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool();
+		try (ZipFile zip = new ZipFile(binary)) {
+			return pool.invoke(new ArchiveTask(zip, settings));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static void merge(List<ScannedClass> scannedClasses, Map<String, Type> types) {
+		for (ScannedClass scanned : scannedClasses) {
+			if (scanned.name() == null) {
+				continue;
+			}
+			EnforcerUtils.get(scanned.name(), types).referenceNames().addAll(scanned.referredTo());
+		}
+	}
+
+	// Leaves saving the cache to the caller, so a cache shared by several binaries is only saved once.
+	static Map<String, Type> scanTypes(File binary, Ignores ignores, AnalyzeBinaryFlags flags, ClassFileCache cache) throws Exception {
+		Map<String, Type> types = new HashMap<>();
+		// Nested archives are only counted once opened, so the total grows as the scan goes.
+		try (Progress progress = Progress.start(flags, "Scanning " + binary.getName(), "classes", 0)) {
+			merge(scan(binary, new ScanSettings(ignores, flags, cache, progress)), types);
+		}
+		return types;
+	}
+
+	public static Map<String, Type> typesFromBinary(File binary, Ignores ignores, AnalyzeBinaryFlags flags, ClassFileCache cache) throws Exception {
+		Map<String, Type> types = scanTypes(binary, ignores, flags, cache);
+		if (cache != null) {
+			cache.save();
+		}
+		return types;
+	}
+
+	public static Map<String, Type> typesFromBinary(File binary, Ignores ignores, AnalyzeBinaryFlags flags) throws Exception {
+		return typesFromBinary(binary, ignores, flags, null);
+	}
+}
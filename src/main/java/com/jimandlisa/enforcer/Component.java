@@ -13,8 +13,8 @@
 
 package com.jimandlisa.enforcer;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -29,7 +29,9 @@ public class Component {
 	private final Set<String> packages = new LinkedHashSet<>();
 	private final Set<String> classes = new LinkedHashSet<>();
 	private final Map<String, Type> types = new HashMap<>();
-	private final Set<Reference> references = new HashSet<>();
+	private TypeGraph graph = null;
+	private int id = -1;
+	private byte[][] kinds = null;
 	
 	public Component(final String name, final Layer layer, final Domain domain, final String description) {
 		super();
@@ -76,8 +78,49 @@ public class Component {
 		types.put(type.name(), type);
 	}
 	
+	// Set once the target's components are numbered. Kinds is shared by all of them, and indexed by referring and then referred-to id.
+	void number(int id, byte[][] kinds) {
+		this.id = id;
+		this.kinds = kinds;
+	}
+
+	int id() {
+		return id;
+	}
+
+	static ReferenceKinds kind(Component referring, Component referredTo) {
+		if (referring == referredTo) {
+			return ReferenceKinds.INTRA_COMPONENT;
+		}
+		int referringDepth = referring.layer().depth();
+		int referredToDepth = referredTo.layer().depth();
+		if (referringDepth == referredToDepth) {
+			return ReferenceKinds.INTER_COMPONENT_SAME_LAYER;
+		}
+		if (referringDepth < referredToDepth) {
+			return ReferenceKinds.INTER_COMPONENT_LOWER_TO_HIGHER;
+		}
+		return ReferenceKinds.INTER_COMPONENT_HIGHER_TO_LOWER;
+	}
+
+	// A lookup if both components were numbered together, else worked out.
+	ReferenceKinds kind(Component referredTo) {
+		if (kinds != null && referredTo.kinds == kinds) {
+			return ReferenceKinds.KINDS[kinds[id][referredTo.id]];
+		}
+		return kind(this, referredTo);
+	}
+
+	void attach(TypeGraph graph) {
+		this.graph = graph;
+	}
+
+	// References from the types in this component, read from the graph once there is one.
 	public Set<Reference> references() {
-		return references;
+		if (graph == null) {
+			return Collections.emptySet();
+		}
+		return graph.references(this);
 	}
 
 	@Override
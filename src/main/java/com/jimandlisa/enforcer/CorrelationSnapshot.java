@@ -0,0 +1,400 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// What a rapid-iteration run resolved and correlated, saved so the next run against the same all_references file can skip parsing it, and only redo the
+// parts of the correlation that the changes to the target can affect. Types keep their previous component unless that component's packages or classes
+// changed, or they fall under a package of a component that changed. References are only re-checked when the component or layer depth at either end
+// changed; the rest keep their previous legality.
+//
+// Layout: magic, version, the all-references file's fingerprint, the components (name, layer depth, packages, classes), the type names in graph id order,
+// each type's varint edge count and varint deltas between its (ascending) referred-to ids, each type's component and matched package (varint index + 1,
+// 0 for no package, if the type was assigned by class), and the varint count and deltas of the illegal edges.
+public class CorrelationSnapshot {
+
+	static final byte[] MAGIC = { 'A', 'E', 'C', 'S' };
+	static final int VERSION = 1;
+
+	static class Spec {
+
+		private final String name;
+		private final int depth;
+		private final Set<String> packages;
+		private final Set<String> classes;
+
+		Spec(final String name, final int depth, final Set<String> packages, final Set<String> classes) {
+			this.name = name;
+			this.depth = depth;
+			this.packages = packages;
+			this.classes = classes;
+		}
+
+		Spec(final Component component) {
+			this(component.name(), component.layer().depth(), component.packages(), component.classes());
+		}
+
+		// Same packages and classes means the same types, whatever else changed.
+		boolean assignsSameTypes(Component component) {
+			return component != null && packages.equals(component.packages()) && classes.equals(component.classes());
+		}
+	}
+
+	private final String fingerprint;
+	private final List<Spec> specs;
+	private final List<String> packages;
+	private final String[] names;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] componentOf;
+	private final int[] packageOf;
+	private final BitSet illegal;
+
+	CorrelationSnapshot(final String fingerprint, final List<Spec> specs, final String[] names, final int[] offsets, final int[] targets, final int[] componentOf, final int[] packageOf, final BitSet illegal) {
+		super();
+		this.fingerprint = fingerprint;
+		this.specs = specs;
+		this.packages = new ArrayList<>();
+		for (Spec spec : specs) {
+			packages.addAll(spec.packages);
+		}
+		this.names = names;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.componentOf = componentOf;
+		this.packageOf = packageOf;
+		this.illegal = illegal;
+	}
+
+	// Rapid-iteration inputs are rewritten wholesale, so length and modification time are enough to tell whether the references changed.
+	static String fingerprint(File allReferences) {
+		return allReferences.getAbsolutePath() + Separators.REFERENCE_SEPARATOR.value() + allReferences.length() + Separators.REFERENCE_SEPARATOR.value() + allReferences.lastModified();
+	}
+
+	// Must be called on the graph and roll-up of a successful correlation, before anything else looks up packages in the roll-up.
+	public static CorrelationSnapshot of(File allReferences, TypeGraph graph, Map<String, Component> components, RollUp rollUp) {
+		List<Spec> specs = new ArrayList<>();
+		Map<String, Integer> componentIndexes = new HashMap<>();
+		Map<String, Integer> packageIndexes = new HashMap<>();
+		for (Component component : new TreeMap<>(components).values()) {
+			componentIndexes.put(component.name(), specs.size());
+			specs.add(new Spec(component));
+			for (String pkg : component.packages()) {
+				packageIndexes.put(pkg, packageIndexes.size());
+			}
+		}
+		String[] names = new String[graph.size()];
+		int[] offsets = new int[graph.size() + 1];
+		int[] targets = new int[graph.referenceCount()];
+		int[] componentOf = new int[graph.size()];
+		int[] packageOf = new int[graph.size()];
+		BitSet illegal = new BitSet(graph.referenceCount());
+		for (int id = 0; id < graph.size(); id++) {
+			Type type = graph.type(id);
+			names[id] = type.name();
+			offsets[id] = graph.firstReference(id);
+			componentOf[id] = componentIndexes.get(type.component().name()); // A successful correlation resolves every type to a component.
+			packageOf[id] = type.component().classes().contains(type.name()) ? -1 : packageIndexes.get(rollUp.match(type.name()));
+		}
+		offsets[graph.size()] = graph.referenceCount();
+		for (int id = 0; id < graph.size(); id++) {
+			for (int reference = graph.firstReference(id); reference < graph.endReference(id); reference++) {
+				targets[reference] = graph.target(reference);
+				Type referredTo = graph.type(targets[reference]);
+				if (!Reference.kind(graph.type(id), referredTo).isLegal()) {
+					illegal.set(reference);
+				}
+			}
+		}
+		return new CorrelationSnapshot(fingerprint(allReferences), specs, names, offsets, targets, componentOf, packageOf, illegal);
+	}
+
+	public boolean matches(File allReferences) {
+		return fingerprint.equals(fingerprint(allReferences));
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	// Fresh types, same as parsing the all-references file would produce.
+	public Map<String, Type> types() {
+		Map<String, Type> types = new HashMap<>();
+		Type[] byId = new Type[names.length];
+		for (int id = 0; id < names.length; id++) {
+			byId[id] = EnforcerUtils.get(names[id], types);
+		}
+		for (int id = 0; id < names.length; id++) {
+			for (int reference = offsets[id]; reference < offsets[id + 1]; reference++) {
+				byId[id].addReferenceName(byId[targets[reference]].name());
+				byId[id].addReference(byId[targets[reference]]);
+			}
+		}
+		return types;
+	}
+
+	static boolean isUnder(String name, Set<String> packages) {
+		for (int i = 0; i < name.length(); i++) {
+			if (RollUp.isBoundary(name.charAt(i)) && packages.contains(name.substring(0, i))) {
+				return true;
+			}
+		}
+		return packages.contains(name);
+	}
+
+	// Same as EnforcerUtils.correlate, for types from types(), but only types whose component might have changed are looked up, and only references
+	// whose component or layer depth might have changed are checked.
+	public TypeGraph correlate(Map<String, Type> types, Map<String, Component> components, RollUp rollUp, Set<Problem> problems, Flags flags) {
+		EnforcerUtils.correlateComponentClassesToTypes(types, components, problems);
+		EnforcerUtils.reportFatalErrors(problems, flags);
+		rollUp.add(components.values());
+		Set<String> changed = new HashSet<>();
+		Set<String> changedPackages = new HashSet<>();
+		Set<String> previousNames = new HashSet<>();
+		for (Spec spec : specs) {
+			previousNames.add(spec.name);
+			Component component = components.get(spec.name);
+			if (!spec.assignsSameTypes(component)) {
+				changed.add(spec.name);
+				changedPackages.addAll(spec.packages);
+				if (component != null) {
+					changedPackages.addAll(component.packages());
+				}
+			}
+		}
+		for (Component component : components.values()) {
+			if (!previousNames.contains(component.name())) {
+				changed.add(component.name());
+				changedPackages.addAll(component.packages());
+			}
+		}
+		for (int id = 0; id < names.length; id++) {
+			Type type = types.get(names[id]);
+			if (type.component() != null) {
+				continue; // Was already resolved by class name.
+			}
+			Spec previous = specs.get(componentOf[id]);
+			Component component;
+			if (packageOf[id] < 0 || changed.contains(previous.name) || isUnder(type.name(), changedPackages)) {
+				component = rollUp.get(type.name());
+			} else {
+				component = components.get(previous.name);
+				rollUp.markMatched(packages.get(packageOf[id]));
+			}
+			if (component == null) {
+				problems.add(new Problem("unable to resolve type " + type.name() + " to component", Errors.TYPE_NOT_RESOLVED_TO_COMPONENT));
+				continue;
+			}
+			component.add(type);
+			type.setComponent(component);
+		}
+		rollUp.validate(problems);
+		EnforcerUtils.reportFatalErrors(problems, flags);
+		TypeGraph graph = new TypeGraph(types);
+		correlateReferences(graph, problems, EnforcerUtils.failFast(Errors.ILLEGAL_REFERENCE, flags));
+		EnforcerUtils.reportFatalErrors(problems, flags);
+		return graph;
+	}
+
+	// Only references to or from a type whose component or depth changed are rechecked; the rest are illegal if they were last time. Stops at
+	// the limit, same as a full run.
+	private void correlateReferences(TypeGraph graph, Set<Problem> problems, int limit) {
+		boolean[] affected = new boolean[graph.size()];
+		for (int id = 0; id < graph.size(); id++) {
+			Component component = graph.type(id).component();
+			Spec previous = specs.get(componentOf[id]);
+			affected[id] = !previous.name.equals(component.name()) || previous.depth != component.layer().depth();
+		}
+		int found = 0;
+		for (int id = 0; id < graph.size(); id++) {
+			for (int reference = graph.firstReference(id); reference < graph.endReference(id); reference++) {
+				int target = graph.target(reference);
+				boolean isIllegal = affected[id] || affected[target] ? !Reference.kind(graph.type(id), graph.type(target)).isLegal() : illegal.get(reference);
+				if (isIllegal) {
+					EnforcerUtils.addIllegal(new Reference(graph.type(id), graph.type(target)), problems);
+					if (++found == limit) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	static void writeStrings(Set<String> strings, OutputStream out) throws IOException {
+		AllReferencesBinary.writeVarint(strings.size(), out);
+		for (String string : strings) {
+			AllReferencesBinary.writeString(string, out);
+		}
+	}
+
+	void write(OutputStream out) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+		AllReferencesBinary.writeString(fingerprint, out);
+		AllReferencesBinary.writeVarint(specs.size(), out);
+		for (Spec spec : specs) {
+			AllReferencesBinary.writeString(spec.name, out);
+			AllReferencesBinary.writeString(Integer.toString(spec.depth), out);
+			writeStrings(spec.packages, out);
+			writeStrings(spec.classes, out);
+		}
+		AllReferencesBinary.writeVarint(names.length, out);
+		for (String name : names) {
+			AllReferencesBinary.writeString(name, out);
+		}
+		for (int id = 0; id < names.length; id++) {
+			AllReferencesBinary.writeVarint(offsets[id + 1] - offsets[id], out);
+			int previous = 0;
+			for (int reference = offsets[id]; reference < offsets[id + 1]; reference++) {
+				AllReferencesBinary.writeVarint(targets[reference] - previous, out);
+				previous = targets[reference];
+			}
+		}
+		for (int id = 0; id < names.length; id++) {
+			AllReferencesBinary.writeVarint(componentOf[id] + 1, out);
+			AllReferencesBinary.writeVarint(packageOf[id] + 1, out);
+		}
+		AllReferencesBinary.writeVarint(illegal.cardinality(), out);
+		int previous = 0;
+		for (int reference = illegal.nextSetBit(0); reference >= 0; reference = illegal.nextSetBit(reference + 1)) {
+			AllReferencesBinary.writeVarint(reference - previous, out);
+			previous = reference;
+		}
+	}
+
+	// Written to a temporary file and moved into place, so an interrupted run can't leave a partial snapshot behind.
+	public void write(File file) throws Exception {
+		File temporary = Artifact.temporary(file);
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary.toPath()), 1 << 16)) {
+			write(out);
+		}
+		Artifact.move(temporary, file);
+	}
+
+	static Set<String> readStrings(AllReferencesBinary.Reader reader) throws IOException {
+		Set<String> strings = new LinkedHashSet<>();
+		int count = reader.readVarint();
+		for (int i = 0; i < count; i++) {
+			strings.add(reader.readString());
+		}
+		return strings;
+	}
+
+	static int readIndex(AllReferencesBinary.Reader reader, int count) throws IOException {
+		int index = reader.readVarint() - 1;
+		if (index >= count) {
+			throw reader.malformed("index out of range");
+		}
+		return index;
+	}
+
+	static CorrelationSnapshot read(File file, InputStream in) throws IOException {
+		AllReferencesBinary.Reader reader = new AllReferencesBinary.Reader(file, "correlation snapshot", in);
+		for (byte b : MAGIC) {
+			if (reader.readByte() != b) {
+				throw reader.malformed("not a correlation snapshot");
+			}
+		}
+		int version = reader.readByte();
+		if (version != VERSION) {
+			throw reader.malformed("unsupported version " + version);
+		}
+		String fingerprint = reader.readString();
+		List<Spec> specs = new ArrayList<>();
+		int packageCount = 0;
+		int specCount = reader.readVarint();
+		for (int i = 0; i < specCount; i++) {
+			String name = reader.readString();
+			int depth;
+			try {
+				depth = Integer.parseInt(reader.readString());
+			} catch (NumberFormatException e) {
+				throw reader.malformed("invalid layer depth");
+			}
+			Spec spec = new Spec(name, depth, readStrings(reader), readStrings(reader));
+			packageCount += spec.packages.size();
+			specs.add(spec);
+		}
+		String[] names = new String[reader.readVarint()];
+		for (int id = 0; id < names.length; id++) {
+			names[id] = reader.readString();
+		}
+		int[] offsets = new int[names.length + 1];
+		List<int[]> rows = new ArrayList<>();
+		for (int id = 0; id < names.length; id++) {
+			int[] row = new int[reader.readVarint()];
+			int previous = 0;
+			for (int i = 0; i < row.length; i++) {
+				row[i] = reader.readId(previous, i == 0, names.length);
+				previous = row[i];
+			}
+			rows.add(row);
+			offsets[id + 1] = offsets[id] + row.length;
+		}
+		int[] targets = new int[offsets[names.length]];
+		for (int id = 0; id < names.length; id++) {
+			System.arraycopy(rows.get(id), 0, targets, offsets[id], offsets[id + 1] - offsets[id]);
+		}
+		int[] componentOf = new int[names.length];
+		int[] packageOf = new int[names.length];
+		for (int id = 0; id < names.length; id++) {
+			componentOf[id] = readIndex(reader, specs.size());
+			if (componentOf[id] < 0) {
+				throw reader.malformed("type without component");
+			}
+			packageOf[id] = readIndex(reader, packageCount);
+		}
+		BitSet illegal = new BitSet(targets.length);
+		int count = reader.readVarint();
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			previous = reader.readId(previous, i == 0, targets.length);
+			illegal.set(previous);
+		}
+		if (reader.fill()) {
+			throw reader.malformed("unexpected data after snapshot");
+		}
+		return new CorrelationSnapshot(fingerprint, specs, names, offsets, targets, componentOf, packageOf, illegal);
+	}
+
+	// Returns null if there's no usable snapshot for the all-references file, in which case the caller falls back to a full run.
+	public static CorrelationSnapshot read(File file, File allReferences) throws Exception {
+		if (!file.exists()) {
+			return null;
+		}
+		CorrelationSnapshot snapshot;
+		try (InputStream in = new FileInputStream(file)) {
+			snapshot = read(file, in);
+		} catch (EnforcerException e) {
+			return null; // Malformed, probably from an older version, so just start over.
+		}
+		return snapshot.matches(allReferences) ? snapshot : null;
+	}
+}
@@ -0,0 +1,58 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.pfsw.tools.cda.base.model.ClassInformation;
+import org.pfsw.tools.cda.base.model.Workset;
+
+// Remembers what each raw class name denests to, because the same nested names turn up over and over again (once per class that refers to them).
+// One of these is shared across a whole run, so each distinct name is denested exactly once. See comments on the denest methods in EnforcerUtils.java
+// for why denesting is costly and error-prone to begin with.
+public class Denester {
+
+	private final AnalyzeBinaryFlags flags;
+	private final Map<String, String> denestedStrings = new HashMap<>();
+	private final Map<String, String> denestedClassInfos = new HashMap<>();
+
+	public Denester(final AnalyzeBinaryFlags flags) {
+		super();
+		this.flags = flags;
+	}
+
+	// Results are kept separately from denest(ClassInformation, Workset), because with structure to work with the results can differ.
+	public String denest(String typeName) {
+		String denested = denestedStrings.get(typeName);
+		if (denested == null) {
+			denested = EnforcerUtils.denest(typeName, flags);
+			denestedStrings.put(typeName, denested);
+		}
+		return denested;
+	}
+
+	public String denest(ClassInformation classInfo, Workset workset) {
+		String denested = denestedClassInfos.get(classInfo.getName());
+		if (denested == null) {
+			denested = EnforcerUtils.denest(classInfo, workset, flags);
+			denestedClassInfos.put(classInfo.getName(), denested);
+		}
+		return denested;
+	}
+
+	int size() {
+		return denestedStrings.size() + denestedClassInfos.size();
+	}
+}
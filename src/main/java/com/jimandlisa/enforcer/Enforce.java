@@ -14,9 +14,13 @@
 package com.jimandlisa.enforcer;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -27,12 +31,47 @@ import java.util.Set;
 // Handles interactions with the user, and outputs results. Delegates analysis and enforcement to EnforcerUtils.
 public class Enforce {
 
-	private static final String ANALYZE_BINARY_USAGE = ": usage: /full/path/to/target/architecture/.yaml /full/path/to/binary (.jar, .war, or .ear) /full/path/to/writable/output/directory " + Optionals.IGNORES + "/full/path/to/file/of/packages/and/classes/to/ignore "
-			+ Optionals.REFLECTIONS + "/full/path/to/file/of/reflection/references " + Optionals.FIX_UNRESOLVEDS + "/full/path/to/file/of/fixed/unresolveds " + Optionals.PRESERVE_NESTED_TYPES + " (preserves nested types) " + Optionals.STRICT
-			+ " (strict, requires that all types resolve and no illegal references) " + Optionals.DEBUG + " (debug) [last six args optional and unordered]";
+	static final int PARALLEL_SORT_THRESHOLD = 8192;
+	static final long MEGABYTE = 1024 * 1024;
+	static final int CONCURRENT_SORTS = 7;
 
-	private static final String RAPID_ITERATION_USAGE = ": usage: /full/path/to/target/architecture/.yaml /full/path/to/" + Outputs.ALL_REFERENCES_BASE_NAME + ".txt /full/path/to/writable/output/directory " + Optionals.STRICT
-			+ " (strict, requires that all types resolve and no illegal references) " + Optionals.DEBUG + " (debug) [last two args optional and unordered]";
+	private static final String ANALYZE_BINARY_USAGE = ": usage: /full/path/to/target/architecture/.yaml[" + File.pathSeparator + "/full/path/to/another/.yaml...] /full/path/to/binary (.jar, .war, or .ear, or a directory of them, or several separated by " + File.pathSeparator + ") /full/path/to/writable/output/directory " + Optionals.IGNORES + "/full/path/to/file/of/packages/and/classes/to/ignore "
+			+ Optionals.REFLECTIONS + "/full/path/to/file/of/reflection/references " + Optionals.FIX_UNRESOLVEDS + "/full/path/to/file/of/fixed/unresolveds " + Optionals.PRESERVE_NESTED_TYPES + " (preserves nested types) " + Optionals.BCEL
+			+ " (analyzes with BCEL instead of pf-CDA) " + Optionals.CACHE + "[/full/path/to/cache/directory] (caches BCEL results per class file, in output directory unless specified) " + Optionals.MEMORY_CEILING
+			+ "megabytes (sorts outputs in about this much memory, spilling to output directory) " + Optionals.WATCH
+			+ " (keeps running, re-enforcing whenever the target or other input files change) " + Optionals.PROFILE + " (profiles each phase, writing times, allocations, and heap use to " + Outputs.PROFILE_FILE_NAME
+			+ " in output directory) " + Optionals.QUIET + " (quiet, no progress reports during long runs) " + Optionals.FAIL_FAST
+			+ "count (fails fast, stopping at this many fatal problems without writing outputs, requires strict) " + Optionals.STRICT + " (strict, requires that all types resolve and no illegal references) " + Optionals.DEBUG + " (debug) [last thirteen args optional and unordered]";
+
+	private static final String RAPID_ITERATION_USAGE = ": usage: /full/path/to/target/architecture/.yaml[" + File.pathSeparator + "/full/path/to/another/.yaml...] /full/path/to/" + Outputs.ALL_REFERENCES_BASE_NAME + ".txt (or " + Outputs.BINARY_SUFFIX + ") /full/path/to/writable/output/directory " + Optionals.MAPPED
+			+ " (memory-maps and parses " + Outputs.ALL_REFERENCES_BASE_NAME + ".txt in parallel) " + Optionals.INCREMENTAL + " (reuses the previous run's correlation, redoing only what target changes affect) " + Optionals.MEMORY_CEILING
+			+ "megabytes (sorts outputs in about this much memory, spilling to output directory) " + Optionals.WATCH
+			+ " (keeps running, re-enforcing whenever the target or other input files change) " + Optionals.PROFILE + " (profiles each phase, writing times, allocations, and heap use to " + Outputs.PROFILE_FILE_NAME
+			+ " in output directory) " + Optionals.QUIET + " (quiet, no progress reports during long runs) " + Optionals.FAIL_FAST
+			+ "count (fails fast, stopping at this many fatal problems without writing outputs, requires strict) " + Optionals.STRICT + " (strict, requires that all types resolve and no illegal references) " + Optionals.DEBUG + " (debug) [last nine args optional and unordered]";
+
+	static long megabytes(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new EnforcerException("invalid memory ceiling " + value + ", must be a positive number of megabytes", Errors.INVALID_MEMORY_CEILING);
+		}
+	}
+
+	// Only strict makes unresolved types and illegal references fatal, so without it there'd be nothing to fail fast on.
+	static void checkFailFast(Flags flags) {
+		if (flags.failFast() > 0 && !flags.strict()) {
+			throw new EnforcerException("fail fast requires strict", Errors.FAIL_FAST_REQUIRES_STRICT);
+		}
+	}
+
+	static int count(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new EnforcerException("invalid fail fast " + value + ", must be a positive number of fatal problems", Errors.INVALID_FAIL_FAST);
+		}
+	}
 
 	static void parseArg(String arg, Inputs inputs, Flags flags) {
 		boolean isBinary = inputs instanceof AnalyzeBinaryInputs;
@@ -55,6 +94,44 @@ public class Enforce {
 					((AnalyzeBinaryFlags)flags).enablePreserveNestedTypes();
 					return;
 				}
+				if (arg.startsWith(Optionals.BCEL.indicator())) {
+					((AnalyzeBinaryFlags)flags).enableBcel();
+					return;
+				}
+				if (arg.startsWith(Optionals.CACHE.indicator())) {
+					((AnalyzeBinaryFlags)flags).enableCache();
+					String cacheDirectory = arg.replaceFirst(Optionals.CACHE.indicator(), "");
+					if (!cacheDirectory.isEmpty()) {
+						((AnalyzeBinaryInputs)inputs).setCacheDirectory(new File(cacheDirectory));
+					}
+					return;
+				}
+			} else if (arg.startsWith(Optionals.MAPPED.indicator())) {
+				((RapidIterationFlags)flags).enableMapped();
+				return;
+			} else if (arg.startsWith(Optionals.INCREMENTAL.indicator())) {
+				((RapidIterationFlags)flags).enableIncremental();
+				return;
+			}
+			if (arg.startsWith(Optionals.MEMORY_CEILING.indicator())) {
+				flags.setMemoryCeiling(megabytes(arg.replaceFirst(Optionals.MEMORY_CEILING.indicator(), "")));
+				return;
+			}
+			if (arg.startsWith(Optionals.WATCH.indicator())) {
+				flags.enableWatch();
+				return;
+			}
+			if (arg.startsWith(Optionals.PROFILE.indicator())) {
+				flags.enableProfile();
+				return;
+			}
+			if (arg.startsWith(Optionals.QUIET.indicator())) {
+				flags.enableQuiet();
+				return;
+			}
+			if (arg.startsWith(Optionals.FAIL_FAST.indicator())) {
+				flags.setFailFast(count(arg.replaceFirst(Optionals.FAIL_FAST.indicator(), "")));
+				return;
 			}
 			if (arg.startsWith(Optionals.STRICT.indicator())) {
 				flags.enableStrict();
@@ -88,13 +165,6 @@ public class Enforce {
 		}
 	}
 
-	static boolean output(Errors error, Problem problem) {
-		if (error == null) {
-			return problem.isWarning();
-		}
-		return problem.error() == error;
-	}
-
 	static String suffix(int count, File file) {
 		if (count == 1) {
 			return ", SEE " + file.getAbsolutePath();
@@ -109,14 +179,27 @@ public class Enforce {
 		return error.name().replace("_", " ") + suffix(count, problemsFile);
 	}
 
-	static void reportProblems(Set<Problem> problems, Errors error, int count, PrintStream console, File problemsFile) throws Exception {
+	static Problem[] sort(List<Problem> bucket) {
+		Problem[] sorted = bucket.toArray(new Problem[bucket.size()]);
+		if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+			Arrays.parallelSort(sorted); // Stable, like Arrays.sort, so equal problems keep their relative order.
+		} else {
+			Arrays.sort(sorted);
+		}
+		return sorted;
+	}
+
+	// With nothing to report, an earlier run's file (in watch mode, say) is deleted, so it can't be mistaken for this run's.
+	static void reportProblems(final List<Problem> sorted, Errors error, int count, PrintStream console, File problemsFile, List<Artifact> artifacts) throws Exception {
 		if (count == 0) {
+			Files.deleteIfExists(problemsFile.toPath());
 			return;
 		}
-		try (PrintStream out = new PrintStream(new FileOutputStream(problemsFile))) {
-			console.println(heading(error, count, problemsFile));
-			for (Problem problem : CollectionUtils.sort(new ArrayList<>(problems))) {
-				if (output(error, problem)) {
+		console.println(heading(error, count, problemsFile));
+		artifacts.add(new Artifact(problemsFile) {
+			@Override
+			protected void write(PrintStream out) {
+				for (Problem problem : sorted) {
 					if (problem.isWarning()) {
 						out.println(problem.humanReadableToString());
 					} else {
@@ -124,29 +207,61 @@ public class Enforce {
 					}
 				}
 			}
+		});
+	}
+
+	// One pass over the problems puts each one in its error's bucket, and each bucket is sorted once. Sorting a bucket gives the same order as
+	// sorting all the problems and then filtering.
+	static Map<Errors, List<Problem>> problemsByError(Collection<Problem> problems) {
+		Map<Errors, List<Problem>> buckets = new EnumMap<>(Errors.class);
+		for (Problem problem : problems) {
+			List<Problem> bucket = buckets.get(problem.error());
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				buckets.put(problem.error(), bucket);
+			}
+			bucket.add(problem);
+		}
+		for (Map.Entry<Errors, List<Problem>> entry : buckets.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(Arrays.asList(sort(entry.getValue()))));
 		}
+		return Collections.unmodifiableMap(buckets);
 	}
 
 	static void reportProblems(Set<Problem> problems, PrintStream console, Outputs outputs, Flags flags) throws Exception {
+		reportProblems(problemsByError(problems), console, outputs, flags);
+	}
+
+	private static List<Problem> bucket(Map<Errors, List<Problem>> problemsByError, Errors error) {
+		List<Problem> bucket = problemsByError.get(error);
+		return bucket == null ? Collections.<Problem>emptyList() : bucket;
+	}
+
+	// Writes from buckets that are already sorted. Warnings come from several buckets, so they're sorted again, but there are only ever a few.
+	// Headings go to the console in a fixed order, then the files are written concurrently.
+	static void reportProblems(Map<Errors, List<Problem>> problemsByError, PrintStream console, Outputs outputs, Flags flags) throws Exception {
 		int warningsCount = 0;
-		int unresolvedTypesCount = 0;
-		int illegalReferencesCount = 0;
-		int illegalComponentReferencesCount = 0;
-		for (Problem problem : problems) {
-			if (problem.error() == Errors.UNRESOLVED_REFERENCE) {
-				unresolvedTypesCount++;
-			} else if (problem.error() == Errors.ILLEGAL_REFERENCE) {
-				illegalReferencesCount++;
-			} else if (problem.error() == Errors.ILLEGAL_COMPONENT_REFERENCE) {
-				illegalComponentReferencesCount++;
-			} else {
-				warningsCount++; // There are only three errors that aren't immediately fatal, and they're handled above, so this has to be a warning.
+		List<Problem> warnings = new ArrayList<>();
+		for (Map.Entry<Errors, List<Problem>> entry : problemsByError.entrySet()) {
+			if (entry.getKey() == Errors.UNRESOLVED_REFERENCE || entry.getKey() == Errors.ILLEGAL_REFERENCE || entry.getKey() == Errors.ILLEGAL_COMPONENT_REFERENCE) {
+				continue;
+			}
+			warningsCount += entry.getValue().size(); // There are only three errors that aren't immediately fatal, and they're handled below, so these have to be warnings.
+			for (Problem problem : entry.getValue()) {
+				if (problem.isWarning()) {
+					warnings.add(problem);
+				}
 			}
 		}
-		reportProblems(problems, null, warningsCount, console, outputs.warnings());
-		reportProblems(problems, Errors.UNRESOLVED_REFERENCE, unresolvedTypesCount, console, outputs.unresolvedTypes());
-		reportProblems(problems, Errors.ILLEGAL_REFERENCE, illegalReferencesCount, console, outputs.illegalReferences());
-		reportProblems(problems, Errors.ILLEGAL_COMPONENT_REFERENCE, illegalComponentReferencesCount, console, outputs.illegalComponentReferences());
+		List<Artifact> artifacts = new ArrayList<>();
+		reportProblems(Arrays.asList(sort(warnings)), null, warningsCount, console, outputs.warnings(), artifacts);
+		List<Problem> unresolvedTypes = bucket(problemsByError, Errors.UNRESOLVED_REFERENCE);
+		reportProblems(unresolvedTypes, Errors.UNRESOLVED_REFERENCE, unresolvedTypes.size(), console, outputs.unresolvedTypes(), artifacts);
+		List<Problem> illegalReferences = bucket(problemsByError, Errors.ILLEGAL_REFERENCE);
+		reportProblems(illegalReferences, Errors.ILLEGAL_REFERENCE, illegalReferences.size(), console, outputs.illegalReferences(), artifacts);
+		List<Problem> illegalComponentReferences = bucket(problemsByError, Errors.ILLEGAL_COMPONENT_REFERENCE);
+		reportProblems(illegalComponentReferences, Errors.ILLEGAL_COMPONENT_REFERENCE, illegalComponentReferences.size(), console, outputs.illegalComponentReferences(), artifacts);
+		Artifact.write(artifacts);
 	}
 
 	static void output(Set<String> content, PrintStream output) {
@@ -156,15 +271,14 @@ public class Enforce {
 		content.clear();
 	}
 
-	static Set<String> descriptions(Set<Reference> references, boolean includeClasses) {
-		Set<String> descriptions = new HashSet<>();
+	static SortedLines descriptions(Iterable<Reference> references, boolean includeClasses, SortedLines descriptions) throws Exception {
 		for (Reference reference : references) {
 			descriptions.add(reference.parseableDescription(includeClasses, true));
 		}
 		return descriptions;
 	}
 
-	static Map<String, Integer> nodes(List<Reference> references, boolean includeClasses) {
+	static Map<String, Integer> nodes(Iterable<Reference> references, boolean includeClasses) {
 		Map<String, Integer> nodes = new HashMap<>();
 		int id = 0;
 		for (Reference reference : references) {
@@ -189,54 +303,289 @@ public class Enforce {
 		return type.component().name();
 	}
 
-	static void outputReferences(Set<Reference> references, boolean includeClasses, File allFile, File gephiNodesFile, File gephiEdgesFile, File yEdFile) throws Exception {
-		// Main output.
-		try (PrintStream out = new PrintStream(new FileOutputStream(allFile))) {
-			output(descriptions(references, includeClasses), out);
-		}
-		// Output for graphics tools. Sorting makes output deterministic.
-		List<Reference> allRefs = CollectionUtils.sort(new ArrayList<>(references));
-		Map<String, Integer> nodes = nodes(allRefs, includeClasses);
-		try (PrintStream gephiNodes = new PrintStream(new FileOutputStream(gephiNodesFile)); PrintStream gephiEdges = new PrintStream(new FileOutputStream(gephiEdgesFile)); PrintStream yed = new PrintStream(new FileOutputStream(yEdFile))) {
-			gephiNodes.println("ID;Label");
-			Set<String> gephiText = new HashSet<>();
-			Set<String> yedText = new HashSet<>();
-			for (String nodeName : CollectionUtils.sort(new ArrayList<>(nodes.keySet()))) {
-				int nodeId = nodes.get(nodeName);
-				gephiText.add(nodeId + ";" + nodeName);
-				yedText.add(nodeId + " " + nodeName);
-			}
-			output(gephiText, gephiNodes);
-			output(yedText, yed);
-			yed.println("#");
-			gephiEdges.println("Source;Target");
-			for (Reference reference : allRefs) {
-				String referrer = name(reference.referringType(), includeClasses);
-				String referredTo = name(reference.referredToType(), includeClasses);
-				if (referrer.equals(referredTo)) {
-					continue;
+	static SortedLines nodeLines(Map<String, Integer> nodes, String separator, SortedLines lines) throws Exception {
+		for (Map.Entry<String, Integer> node : nodes.entrySet()) {
+			lines.add(node.getValue() + separator + node.getKey());
+		}
+		return lines;
+	}
+
+	static SortedLines edgeLines(Iterable<Reference> references, boolean includeClasses, Map<String, Integer> nodes, String separator, SortedLines lines) throws Exception {
+		for (Reference reference : references) {
+			String referrer = name(reference.referringType(), includeClasses);
+			String referredTo = name(reference.referredToType(), includeClasses);
+			if (referrer.equals(referredTo)) {
+				continue;
+			}
+			lines.add(nodes.get(referrer) + separator + nodes.get(referredTo));
+		}
+		return lines;
+	}
+
+	// Main output, plus output for graphics tools. Sorting makes output deterministic. Node ids are assigned up front, because the graphics files
+	// have to agree on them. If descriptions are streamed, the references must already be sorted, and unique when described (true with classes included,
+	// because type names never contain characters that sort before the separator). Each sort holds at most about ceiling bytes of lines (0 for no
+	// ceiling), spilling the rest to the spill directory.
+	static List<Artifact> referenceArtifacts(final Iterable<Reference> references, final boolean includeClasses, final boolean streamDescriptions, File allFile, File gephiNodesFile, File gephiEdgesFile,
+			File yEdFile, final File spillDirectory, final long ceiling) {
+		final Map<String, Integer> nodes = nodes(references, includeClasses);
+		List<Artifact> artifacts = new ArrayList<>();
+		artifacts.add(new Artifact(allFile) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				if (!streamDescriptions) {
+					try (SortedLines descriptions = descriptions(references, includeClasses, new SortedLines(spillDirectory, ceiling))) {
+						descriptions.print(out);
+					}
+					return;
+				}
+				for (Reference reference : references) {
+					out.println(reference.parseableDescription(includeClasses, true));
 				}
-				int referrerNodeId = nodes.get(referrer);
-				int referredToNodeId = nodes.get(referredTo);
-				gephiText.add(referrerNodeId + ";" + referredToNodeId);
-				yedText.add(referrerNodeId + " " + referredToNodeId);
 			}
-			output(gephiText, gephiEdges);
-			output(yedText, yed);
+		});
+		artifacts.add(new Artifact(gephiNodesFile) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				out.println("ID;Label");
+				try (SortedLines lines = nodeLines(nodes, ";", new SortedLines(spillDirectory, ceiling))) {
+					lines.print(out);
+				}
+			}
+		});
+		artifacts.add(new Artifact(gephiEdgesFile) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				out.println("Source;Target");
+				try (SortedLines lines = edgeLines(references, includeClasses, nodes, ";", new SortedLines(spillDirectory, ceiling))) {
+					lines.print(out);
+				}
+			}
+		});
+		artifacts.add(new Artifact(yEdFile) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				try (SortedLines lines = nodeLines(nodes, " ", new SortedLines(spillDirectory, ceiling))) {
+					lines.print(out);
+				}
+				out.println("#");
+				try (SortedLines lines = edgeLines(references, includeClasses, nodes, " ", new SortedLines(spillDirectory, ceiling))) {
+					lines.print(out);
+				}
+			}
+		});
+		return artifacts;
+	}
+
+	static void outputReferences(Set<Reference> references, boolean includeClasses, File allFile, File gephiNodesFile, File gephiEdgesFile, File yEdFile) throws Exception {
+		Artifact.write(referenceArtifacts(CollectionUtils.sort(new ArrayList<>(references)), includeClasses, false, allFile, gephiNodesFile, gephiEdgesFile, yEdFile, allFile.getParentFile(), 0));
+	}
+
+	// Same output as above, without holding all the references in memory.
+	static void outputReferences(TypeGraph graph, boolean includeClasses, File allFile, File gephiNodesFile, File gephiEdgesFile, File yEdFile) throws Exception {
+		Artifact.write(referenceArtifacts(graph.references(), includeClasses, includeClasses, allFile, gephiNodesFile, gephiEdgesFile, yEdFile, allFile.getParentFile(), 0));
+	}
+
+	// Writes every reference output at once. The memory ceiling is shared by the sorts that can run at the same time: three at class level (the
+	// main output is streamed), and four at component level.
+	static void outputReferences(final TypeGraph graph, Outputs outputs, Flags flags) throws Exception {
+		long ceiling = flags.memoryCeiling() * MEGABYTE / CONCURRENT_SORTS;
+		List<Artifact> artifacts = new ArrayList<>();
+		artifacts.addAll(referenceArtifacts(graph.references(), true, true, outputs.allReferences(), outputs.allReferencesGephiNodes(), outputs.allReferencesGephiEdges(), outputs.allReferencesYeD(),
+				outputs.outputDirectory(), ceiling));
+		artifacts.add(new Artifact(outputs.allReferencesBinary()) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				AllReferencesBinary.write(graph, out);
+			}
+		});
+		artifacts.addAll(referenceArtifacts(graph.references(), false, false, outputs.allComponentReferences(), outputs.allComponentReferencesGephiNodes(), outputs.allComponentReferencesGephiEdges(),
+				outputs.allComponentReferencesYeD(), outputs.outputDirectory(), ceiling));
+		Artifact.write(artifacts);
+	}
+
+	static boolean incremental(Flags flags) {
+		return flags instanceof RapidIterationFlags && ((RapidIterationFlags)flags).incremental();
+	}
+
+	static Target parse(File target, Flags flags) throws Exception {
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.PARSE_TARGET);
+		Target parsed = TargetUtils.parse(target);
+		Profiler.stop(flags, measurement);
+		return parsed;
+	}
+
+	// Correlates already-resolved types to the target, from the snapshot if there is one.
+	static EnforcementResult correlate(Target target, Map<String, Type> types, CorrelationSnapshot snapshot, Set<Problem> problems, Flags flags) throws Exception {
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.CORRELATE);
+		RollUp rollUp = new RollUp();
+		TypeGraph graph = snapshot == null ? EnforcerUtils.correlate(types, target.components(), rollUp, problems, flags) : snapshot.correlate(types, target.components(), rollUp, problems, flags);
+		EnforcementResult result = new EnforcementResult(target, types, graph, rollUp, problems, flags); // Sorts the problems, so it's timed too.
+		Profiler.stop(flags, measurement);
+		return result;
+	}
+
+	// Resolves (from the snapshot or cache, if any) and correlates.
+	static EnforcementResult enforce(Inputs inputs, Flags flags, CorrelationSnapshot snapshot, ResolutionCache cache) throws Exception {
+		Target target = parse(inputs.target(), flags);
+		Set<Problem> problems = new LinkedHashSet<>();
+		Map<String, Type> types;
+		if (snapshot != null) {
+			types = snapshot.types();
+		} else if (cache != null) {
+			ResolvedTypes resolved = cache.resolve(inputs, flags);
+			problems.addAll(resolved.problems());
+			types = resolved.types();
+		} else {
+			types = EnforcerUtils.resolve(inputs, problems, flags);
+		}
+		return correlate(target, types, snapshot, problems, flags);
+	}
+
+	// For embedding: enforces without writing anything, and returns what was found. Fatal problems are thrown, same as from the command line.
+	// Call write on the result to also get the files.
+	public static EnforcementResult enforce(Inputs inputs, Flags flags) throws Exception {
+		if (inputs.targets().size() > 1) {
+			throw new EnforcerException("multiple targets not supported without outputs, enforce each target separately", Errors.MULTIPLE_TARGETS_NOT_SUPPORTED_WITHOUT_OUTPUTS);
+		}
+		checkFailFast(flags);
+		defaultCacheDirectory(inputs, flags, null);
+		return enforce(inputs, flags, null, null);
+	}
+
+	// Writes what the command line writes for a result. Returns the new correlation snapshot if incremental, else null.
+	static CorrelationSnapshot write(EnforcementResult result, Inputs inputs, Outputs outputs, PrintStream console, Flags flags) throws Exception {
+		debug(result.target(), result.types(), result.rollUp(), console, flags, 100);
+		result.write(outputs, console);
+		if (!incremental(flags)) {
+			return null;
+		}
+		CorrelationSnapshot next = CorrelationSnapshot.of(((RapidIterationInputs)inputs).allReferences(), result.graph(), result.target().components(), result.rollUp());
+		next.write(outputs.correlationSnapshot());
+		return next;
+	}
+
+	// The file's name without its extension, so files that differ only by extension get the same output subdirectory.
+	static String outputName(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	static File outputDirectory(File target, Outputs outputs) {
+		return new File(outputs.outputDirectory(), outputName(target));
+	}
+
+	// Resolves once, then correlates and writes each target in parallel, into its own output subdirectory, from fresh copies of the resolved
+	// types (correlation assigns each type its component, so types can't be shared between targets). Each target's console output, progress
+	// included, is buffered and printed together, in target order. Targets with fatal problems don't stop the others, but fail the run once all
+	// are done.
+	static void enforceTargets(final Inputs inputs, Outputs outputs, PrintStream console, final Flags flags, ResolutionCache cache) throws Exception {
+		final List<File> targets = inputs.targets();
+		final Outputs[] targetOutputs = new Outputs[targets.size()];
+		final CorrelationSnapshot[] snapshots = new CorrelationSnapshot[targets.size()];
+		Set<File> directories = new HashSet<>();
+		boolean resolve = false;
+		for (int i = 0; i < targets.size(); i++) {
+			File directory = outputDirectory(targets.get(i), outputs);
+			if (!directories.add(directory)) {
+				throw new EnforcerException("target " + targets.get(i) + " would overwrite the output of another target with the same name", Errors.NAME_CONFLICTS_WITH_OTHER_FILE);
+			}
+			targetOutputs[i] = new Outputs(directory);
+			snapshots[i] = incremental(flags) ? CorrelationSnapshot.read(targetOutputs[i].correlationSnapshot(), ((RapidIterationInputs)inputs).allReferences()) : null;
+			resolve |= snapshots[i] == null;
+		}
+		final ResolvedTypes resolved;
+		if (!resolve) {
+			resolved = null;
+		} else if (cache != null) {
+			resolved = cache.resolve(inputs, flags);
+		} else {
+			Set<Problem> problems = new LinkedHashSet<>();
+			resolved = new ResolvedTypes(EnforcerUtils.resolve(inputs, problems, flags), problems);
+		}
+		Exception failure = new BufferedTasks(targets.size(), "targets") {
+			@Override
+			String heading(int index) {
+				return "Target " + targets.get(index) + " (outputs in " + targetOutputs[index].outputDirectory() + "):";
+			}
+
+			@Override
+			void task(int index, PrintStream out) throws Exception {
+				Flags targetFlags = flags.reportingProgressTo(out);
+				CorrelationSnapshot snapshot = snapshots[index];
+				Map<String, Type> types = snapshot == null ? resolved.types() : snapshot.types();
+				Set<Problem> problems = snapshot == null ? resolved.problems() : new LinkedHashSet<Problem>();
+				write(correlate(parse(targets.get(index), targetFlags), types, snapshot, problems, targetFlags), inputs, targetOutputs[index], out, targetFlags);
+			}
+		}.run(Math.min(targets.size(), Runtime.getRuntime().availableProcessors()), console);
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	// Writes what's been measured since the last write, if profiling, even if enforcing failed.
+	static void writeProfile(Outputs outputs, Flags flags) throws Exception {
+		if (!flags.profile() || flags.profiler().isEmpty()) {
+			return;
 		}
+		flags.profiler().write(outputs.profile());
 	}
 
 	static void mainImpl(Inputs inputs, Outputs outputs, PrintStream console, Flags flags) throws Exception {
-		Target target = TargetUtils.parse(inputs.target());
-		Set<Problem> problems = new LinkedHashSet<>();
-		Map<String, Type> types = EnforcerUtils.resolve(inputs, problems, flags);
-		RollUp rollUp = new RollUp();
-		Set<Reference> references = new HashSet<>();
-		EnforcerUtils.correlate(types, target.components(), rollUp, references, problems, flags);
-		debug(target, types, rollUp, console, flags, 100);
-		reportProblems(problems, console, outputs, flags);
-		outputReferences(references, true, outputs.allReferences(), outputs.allReferencesGephiNodes(), outputs.allReferencesGephiEdges(), outputs.allReferencesYeD());
-		outputReferences(references, false, outputs.allComponentReferences(), outputs.allComponentReferencesGephiNodes(), outputs.allComponentReferencesGephiEdges(), outputs.allComponentReferencesYeD());
+		mainImpl(inputs, outputs, console, flags, null);
+	}
+
+	// With a cache, types are resolved through it, so they're only resolved once per distinct set of input files (see EnforcerServer).
+	static void mainImpl(Inputs inputs, Outputs outputs, PrintStream console, Flags flags, ResolutionCache cache) throws Exception {
+		try {
+			enforceAndWrite(inputs, outputs, console, flags, cache);
+		} finally {
+			writeProfile(outputs, flags);
+		}
+	}
+
+	// The cache goes in the output directory unless another directory was specified. Without outputs (when embedded), there's nowhere to default to.
+	static void defaultCacheDirectory(Inputs inputs, Flags flags, Outputs outputs) {
+		if (!(flags instanceof AnalyzeBinaryFlags) || !((AnalyzeBinaryFlags)flags).cache() || ((AnalyzeBinaryInputs)inputs).cacheDirectory() != null) {
+			return;
+		}
+		if (outputs == null) {
+			throw new EnforcerException("cache directory must be specified when enforcing without outputs", Errors.CACHE_DIRECTORY_NOT_SPECIFIED);
+		}
+		((AnalyzeBinaryInputs)inputs).setCacheDirectory(outputs.outputDirectory());
+	}
+
+	static void enforceAndWrite(Inputs inputs, Outputs outputs, PrintStream console, Flags flags, ResolutionCache cache) throws Exception {
+		defaultCacheDirectory(inputs, flags, outputs);
+		if (inputs instanceof FleetInputs) {
+			if (flags.watch()) {
+				throw new EnforcerException("watch not supported with fleet", Errors.WATCH_NOT_SUPPORTED_WITH_FLEET);
+			}
+			if (inputs.targets().size() > 1) {
+				throw new EnforcerException("multiple targets not supported with fleet", Errors.MULTIPLE_TARGETS_NOT_SUPPORTED_WITH_FLEET);
+			}
+			Fleet.enforce((FleetInputs)inputs, outputs, console, (AnalyzeBinaryFlags)flags, cache);
+			return;
+		}
+		if (inputs.targets().size() > 1) {
+			if (flags.watch()) {
+				throw new EnforcerException("watch not supported with multiple targets", Errors.WATCH_NOT_SUPPORTED_WITH_MULTIPLE_TARGETS);
+			}
+			enforceTargets(inputs, outputs, console, flags, cache);
+			return;
+		}
+		if (flags.watch()) {
+			if (cache != null) {
+				throw new EnforcerException("watch not supported by server", Errors.WATCH_NOT_SUPPORTED_BY_SERVER);
+			}
+			try (Watcher watcher = new Watcher(inputs, outputs, console, flags)) {
+				watcher.watch();
+			}
+			return;
+		}
+		CorrelationSnapshot snapshot = incremental(flags) ? CorrelationSnapshot.read(outputs.correlationSnapshot(), ((RapidIterationInputs)inputs).allReferences()) : null;
+		write(enforce(inputs, flags, snapshot, cache), inputs, outputs, console, flags);
 	}
 	
 	static boolean isBinary(File data) {
@@ -253,6 +602,10 @@ public class Enforce {
 	}
 
 	public static void mainImpl(String[] args, PrintStream console) throws Exception {
+		mainImpl(args, console, null);
+	}
+
+	static void mainImpl(String[] args, PrintStream console, ResolutionCache cache) throws Exception {
 		Inputs inputs = null;
 		Outputs outputs = null;
 		Flags flags = null;
@@ -260,34 +613,47 @@ public class Enforce {
 			if (args.length < 3) {
 				throw new EnforcerException("not enough args" + ANALYZE_BINARY_USAGE, Errors.NOT_ENOUGH_ARGS);
 			}
-			File target = new File(args[0]);
+			List<File> targets = new ArrayList<>();
+			for (String target : args[0].split(File.pathSeparator)) {
+				targets.add(new File(target));
+			}
 			File data = new File(args[1]);
 			File outputDirectory = new File(args[2]);
 			outputs = new Outputs(outputDirectory);
-			if (isBinary(data)) {
-				if (args.length > 9) {
+			List<File> binaries = FleetInputs.binaries(args[1]);
+			if (binaries != null) {
+				if (args.length > 16) {
+					throw new EnforcerException("too many args" + ANALYZE_BINARY_USAGE, Errors.TOO_MANY_ARGS);
+				}
+				inputs = new FleetInputs(targets, binaries);
+				flags = new AnalyzeBinaryFlags();
+			} else if (isBinary(data)) {
+				if (args.length > 16) {
 					throw new EnforcerException("too many args" + ANALYZE_BINARY_USAGE, Errors.TOO_MANY_ARGS);
 				}
-				inputs = new AnalyzeBinaryInputs(target, data);
+				inputs = new AnalyzeBinaryInputs(targets, data);
 				flags = new AnalyzeBinaryFlags();
 			} else {
-				if (args.length > 5) {
+				if (args.length > 12) {
 					throw new EnforcerException("too many args" + RAPID_ITERATION_USAGE, Errors.TOO_MANY_ARGS);
 				}
-				inputs = new RapidIterationInputs(target, data);
-				if (((RapidIterationInputs)inputs).allReferences().getAbsolutePath().equals(outputs.allReferences().getAbsolutePath())) {
+				inputs = new RapidIterationInputs(targets, data);
+				String allReferences = ((RapidIterationInputs)inputs).allReferences().getAbsolutePath();
+				if (allReferences.equals(outputs.allReferences().getAbsolutePath()) || allReferences.equals(outputs.allReferencesBinary().getAbsolutePath())) {
 					throw new EnforcerException("Rapid-iteration input file " + data.getAbsolutePath() + " would be overwritten, rename or move it, or specify different output directory", Errors.RAPID_ITERATION_INPUT_FILE_WOULD_BE_OVERWRITTEN);
 				}
-				flags = new Flags();
+				flags = new RapidIterationFlags();
 			}
 			for (int i = 3; i < args.length; i++) {
 				parseArg(args[i], inputs, flags);
 			}
+			checkFailFast(flags);
 		} catch (Throwable t) {
 			console.println(t.getMessage());
 			return;
 		}
 		console.println("Analyzing/enforcing architecture with " + inputs.toString() + ", " + outputs.toString() + ", " + flags.toString() + " (may take 60+ seconds...)");
-		mainImpl(inputs, outputs, console, flags);
+		flags.reportProgressTo(console);
+		mainImpl(inputs, outputs, console, flags, cache);
 	}
 }
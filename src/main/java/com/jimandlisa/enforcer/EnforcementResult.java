@@ -0,0 +1,99 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// What one enforcement found, for callers that want it in process instead of (or as well as) in files. The maps, lists, and sets it returns, and
+// each type's references, are read-only. The target (with its layers, domains, and components) is the one enforcement used, not a copy, and isn't
+// protected, so callers shouldn't change it.
+public class EnforcementResult {
+
+	private final Target target;
+	private final Map<String, Type> types;
+	private final TypeGraph graph;
+	private final RollUp rollUp;
+	private final Set<Problem> problems;
+	private final Map<Errors, List<Problem>> problemsByError; // Sorted once, here, and written from, so writing doesn't sort again.
+	private final Flags flags;
+
+	EnforcementResult(final Target target, final Map<String, Type> types, final TypeGraph graph, final RollUp rollUp, final Set<Problem> problems, final Flags flags) {
+		super();
+		this.target = target;
+		this.types = Collections.unmodifiableMap(types);
+		this.graph = graph;
+		this.rollUp = rollUp;
+		this.problems = Collections.unmodifiableSet(new LinkedHashSet<>(problems));
+		this.problemsByError = Enforce.problemsByError(this.problems);
+		this.flags = flags;
+	}
+
+	public Target target() {
+		return target;
+	}
+
+	public Map<String, Component> components() {
+		return Collections.unmodifiableMap(target.components());
+	}
+
+	public Map<String, Type> types() {
+		return types;
+	}
+
+	public TypeGraph graph() {
+		return graph;
+	}
+
+	public Iterable<Reference> references() {
+		return graph.references();
+	}
+
+	RollUp rollUp() {
+		return rollUp;
+	}
+
+	// In the order found.
+	public Set<Problem> problems() {
+		return problems;
+	}
+
+	// Sorted within each error, same as in the files.
+	public Map<Errors, List<Problem>> problemsByError() {
+		return problemsByError;
+	}
+
+	public List<Problem> problems(Errors error) {
+		List<Problem> bucket = problemsByError().get(error);
+		return bucket == null ? Collections.<Problem>emptyList() : bucket;
+	}
+
+	public boolean hasProblems() {
+		return !problems.isEmpty();
+	}
+
+	// Writes the same problem and reference files, and console headings, as the command line.
+	public void write(Outputs outputs, PrintStream console) throws Exception {
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.REPORT_PROBLEMS);
+		Enforce.reportProblems(problemsByError, console, outputs, flags);
+		Profiler.stop(flags, measurement);
+		measurement = Profiler.start(flags, Phases.OUTPUT_REFERENCES);
+		Enforce.outputReferences(graph, outputs, flags);
+		Profiler.stop(flags, measurement);
+	}
+}
@@ -0,0 +1,108 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+// Same args and output as the command line, but enforces in an EnforcerServer on the same machine if one is listening on the port, and in process
+// if not, so CI jobs work the same with or without a server. Paths must be full paths, since the server doesn't share the client's working directory.
+// The server's token is read from the token directory, so the client has to run as the user who started the server.
+public class EnforcerClient {
+
+	static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+	static byte[] body(String[] args) {
+		StringBuilder builder = new StringBuilder();
+		for (String arg : args) {
+			if (arg.contains("\n")) {
+				throw new EnforcerException("arg contains line break: " + arg, Errors.UNRECOGNIZED_COMMAND_LINE_OPTION);
+			}
+			builder.append(arg).append("\n");
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Empty if there's no token file, in which case the server (if any) will reject the request.
+	static String token(File tokenFile) throws IOException {
+		return tokenFile.exists() ? new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim() : "";
+	}
+
+	// The console output comes first in the response, and the header says how long it is, so anything else means the response is broken.
+	static int consoleLength(String header, int responseLength) {
+		try {
+			int length = Integer.parseInt(header);
+			if (length >= 0 && length <= responseLength) {
+				return length;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		throw new EnforcerException("malformed enforcer server response, console length " + header + " for " + responseLength + " bytes", Errors.SERVER_ERROR);
+	}
+
+	public static void mainImpl(String[] args, PrintStream console, int port, File tokenDirectory) throws Exception {
+		byte[] body = body(args);
+		HttpURLConnection connection = (HttpURLConnection)new URL("http", "localhost", port, EnforcerServer.ENFORCE_PATH).openConnection();
+		try {
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", EnforcerServer.CONTENT_TYPE);
+			connection.setRequestProperty(EnforcerServer.TOKEN_HEADER, token(EnforcerServer.tokenFile(tokenDirectory, port)));
+			connection.setFixedLengthStreamingMode(body.length);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+		} catch (ConnectException e) {
+			console.println("No enforcer server on port " + port + ", enforcing in process");
+			Enforce.mainImpl(args, console);
+			return;
+		}
+		try {
+			if (connection.getResponseCode() != 200) {
+				try (InputStream in = connection.getErrorStream()) {
+					throw new EnforcerException("enforcer server error " + connection.getResponseCode() + ": " + (in == null ? "" : new String(EnforcerServer.read(in), StandardCharsets.UTF_8)), Errors.SERVER_ERROR);
+				}
+			}
+			byte[] response;
+			try (InputStream in = connection.getInputStream()) {
+				response = EnforcerServer.read(in);
+			}
+			String error = connection.getHeaderField(EnforcerServer.ERROR_HEADER);
+			if (error == null) {
+				console.write(response);
+				console.flush();
+				return;
+			}
+			int length = consoleLength(connection.getHeaderField(EnforcerServer.CONSOLE_LENGTH_HEADER), response.length);
+			console.write(response, 0, length);
+			console.flush();
+			throw new EnforcerException(new String(Arrays.copyOfRange(response, length, response.length), StandardCharsets.UTF_8), Errors.valueOf(error));
+		} catch (IOException e) {
+			throw new EnforcerException("error talking to enforcer server on port " + port + ": " + e.getMessage(), Errors.SERVER_ERROR, e);
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,252 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+// Enforces on behalf of EnforcerClient, so CI jobs that check the same few binaries over and over share one warmed-up JVM and one cache of resolved
+// types. Each request is a POST of the command-line args, one per line, and each response is what the command line would have printed. Output files are
+// written where the args say, same as the command line, which is why the server only listens on the loopback address, and why it only takes requests
+// from whoever can read its token file (in the home directory of the user who started it, readable only by them). Requests that carry an Origin
+// header, or any content type but CONTENT_TYPE, are rejected too, so a web page can't get a browser to send one. Paths must be full paths, since the
+// server doesn't share the client's working directory.
+//
+// A fatal error comes back with its Errors name in the ERROR_HEADER header, and its message after the console output, which is CONSOLE_LENGTH_HEADER
+// bytes long. Anything else that goes wrong comes back as a 500, with the message as the body.
+public class EnforcerServer implements AutoCloseable {
+
+	public static final int DEFAULT_PORT = 8787;
+	public static final int DEFAULT_CACHE_SIZE = 8;
+	public static final String PORT_PROPERTY = "enforcer.port";
+	public static final String ENFORCE_PATH = "/enforce";
+	static final String ERROR_HEADER = "X-Enforcer-Error";
+	static final String CONSOLE_LENGTH_HEADER = "X-Enforcer-Console-Length";
+	static final String TOKEN_HEADER = "X-Enforcer-Token";
+	static final String CONTENT_TYPE = "application/x-enforcer-args; charset=utf-8";
+
+	private static final String USAGE = ": usage: [port (default " + DEFAULT_PORT + ", 0 for any free port)] [number of resolved binaries to cache (default " + DEFAULT_CACHE_SIZE + ")]";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ResolutionCache cache;
+	private final File tokenFile;
+	private final String token;
+
+	public EnforcerServer(final int port, final int cacheSize, final File tokenDirectory) throws IOException {
+		super();
+		this.cache = new ResolutionCache(cacheSize);
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.tokenFile = tokenFile(tokenDirectory, port());
+		this.token = token();
+		this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		server.setExecutor(executor);
+		server.createContext(ENFORCE_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					EnforcerServer.this.handle(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	// Where the user who starts servers keeps their tokens, one per port.
+	public static File tokenDirectory() {
+		return new File(System.getProperty("user.home"));
+	}
+
+	static File tokenFile(File tokenDirectory, int port) {
+		return new File(tokenDirectory, ".architecture-enforcer-" + port + ".token");
+	}
+
+	static String token() {
+		byte[] bytes = new byte[32];
+		new SecureRandom().nextBytes(bytes);
+		return ClassFileCache.hex(bytes);
+	}
+
+	// Replaces any token left by a server that was killed. The token is only written once the file can't be read by anyone else.
+	public void start() throws IOException {
+		Files.deleteIfExists(tokenFile.toPath());
+		createOwnerOnly(tokenFile, Files.getFileStore(tokenFile.getAbsoluteFile().getParentFile().toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+		Files.write(tokenFile.toPath(), token.getBytes(StandardCharsets.UTF_8));
+		server.start();
+	}
+
+	// With POSIX permissions, the file is created readable and writable only by its owner, so there's no moment when anyone else can open it. Without
+	// them (on Windows, for example), it's created and then restricted, which is the best those file systems allow.
+	static void createOwnerOnly(File file, boolean posix) throws IOException {
+		if (posix) {
+			Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+			return;
+		}
+		Files.createFile(file.toPath());
+		file.setReadable(false, false);
+		file.setWritable(false, false);
+		file.setReadable(true, true);
+		file.setWritable(true, true);
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	public ResolutionCache cache() {
+		return cache;
+	}
+
+	static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 12];
+		for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+			baos.write(buffer, 0, read);
+		}
+		return baos.toByteArray();
+	}
+
+	static String[] args(byte[] body) {
+		List<String> args = new ArrayList<>();
+		for (String line : new String(body, StandardCharsets.UTF_8).split("\n")) {
+			if (!line.isEmpty()) {
+				args.add(line);
+			}
+		}
+		return args.toArray(new String[args.size()]);
+	}
+
+	static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	// Compares in constant time, so the token can't be guessed a character at a time.
+	boolean hasToken(HttpExchange exchange) {
+		String sent = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+		return sent != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), sent.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// The paths in an arg: the whole arg for a positional one (which can be several paths, separated by the path separator), the value of an option
+	// that names a file or directory, or none.
+	static String paths(String arg) {
+		if (!arg.startsWith("-")) {
+			return arg;
+		}
+		for (Optionals optional : new Optionals[] { Optionals.IGNORES, Optionals.REFLECTIONS, Optionals.FIX_UNRESOLVEDS, Optionals.CACHE }) {
+			if (arg.startsWith(optional.indicator())) {
+				return arg.substring(optional.indicator().length());
+			}
+		}
+		return "";
+	}
+
+	// A relative path would be resolved against the server's working directory, not the client's.
+	static void checkPaths(String[] args) {
+		for (String arg : args) {
+			for (String path : paths(arg).split(File.pathSeparator)) {
+				if (!path.isEmpty() && !new File(path).isAbsolute()) {
+					throw new EnforcerException("relative path " + path + " not supported by server, use full paths", Errors.RELATIVE_PATH_NOT_SUPPORTED_BY_SERVER);
+				}
+			}
+		}
+	}
+
+	void handle(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, ("method " + exchange.getRequestMethod() + " not allowed, POST command-line args to " + ENFORCE_PATH).getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		if (exchange.getRequestHeaders().containsKey("Origin")) {
+			respond(exchange, 403, "requests from browsers not allowed".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		if (!CONTENT_TYPE.equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+			respond(exchange, 415, ("content type must be " + CONTENT_TYPE).getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		if (!hasToken(exchange)) {
+			respond(exchange, 403, ("missing or wrong token, send the contents of " + tokenFile + " in the " + TOKEN_HEADER + " header").getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		String[] args = args(read(exchange.getRequestBody()));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			try {
+				checkPaths(args);
+				Enforce.mainImpl(args, console, cache);
+			} catch (EnforcerException e) {
+				byte[] output = baos.toByteArray();
+				exchange.getResponseHeaders().set(ERROR_HEADER, e.error().name());
+				exchange.getResponseHeaders().set(CONSOLE_LENGTH_HEADER, Integer.toString(output.length));
+				console.print(e.getMessage());
+			} catch (Exception e) {
+				respond(exchange, 500, ("error enforcing: " + e).getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+		}
+		respond(exchange, 200, baos.toByteArray());
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+		tokenFile.delete();
+	}
+
+	static int parse(String arg, String name) {
+		try {
+			return Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			throw new EnforcerException("invalid " + name + " " + arg + USAGE, Errors.INVALID_SERVER_ARG);
+		}
+	}
+
+	// Starts a server, and returns it so tests can stop it. The server's threads keep the JVM running until it's killed.
+	public static EnforcerServer mainImpl(String[] args, PrintStream console, File tokenDirectory) throws Exception {
+		if (args.length > 2) {
+			throw new EnforcerException("too many args" + USAGE, Errors.TOO_MANY_ARGS);
+		}
+		int port = args.length > 0 ? parse(args[0], "port") : DEFAULT_PORT;
+		int cacheSize = args.length > 1 ? parse(args[1], "cache size") : DEFAULT_CACHE_SIZE;
+		EnforcerServer server = new EnforcerServer(port, cacheSize, tokenDirectory);
+		server.start();
+		console.println("Enforcer server listening on " + server.server.getAddress() + ", caching up to " + cacheSize + " resolved binaries, token in " + server.tokenFile);
+		return server;
+	}
+}
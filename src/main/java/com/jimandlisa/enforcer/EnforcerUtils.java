@@ -55,14 +55,14 @@ public class EnforcerUtils {
 		return types;
 	}
 
-	static void add(String ignore, Set<String> ignores) {
+	static void add(String ignore, Ignores ignores) {
 		if (!ignores.add(ignore)) {
 			throw new EnforcerException("duplicate ignore " + ignore, Errors.DUPLICATE_IGNORE);
 		}
 	}
 
-	static Set<String> ignores(File ignoresFile) throws Exception {
-		Set<String> ignores = new HashSet<>();
+	static Ignores ignores(File ignoresFile) throws Exception {
+		Ignores ignores = new Ignores();
 		if (ignoresFile == null) {
 			return ignores;
 		}
@@ -87,10 +87,18 @@ public class EnforcerUtils {
 		return ignores;
 	}
 
-	static boolean skip(String typeName, Set<String> ignores) {
+	static boolean skip(String typeName, Ignores ignores) {
 		if (typeName.contains(":")) { // Handles glitches in pf-CDA, for example "evelField:Ljava.lang.Object".
 			return true;
 		}
+		return ignores.matches(typeName);
+	}
+
+	// Linear scan over the ignores, kept as the reference that the trie in Ignores is tested and benchmarked against.
+	static boolean skip(String typeName, Set<String> ignores) {
+		if (typeName.contains(":")) {
+			return true;
+		}
 		for (String ignore : ignores) {
 			if (typeName.startsWith(ignore)) {
 				return true;
@@ -99,7 +107,7 @@ public class EnforcerUtils {
 		return false;
 	}
 
-	static boolean skip(String referringTypeName, String referredToTypeName, Set<String> ignores) {
+	static boolean skip(String referringTypeName, String referredToTypeName, Ignores ignores) {
 		if (referringTypeName.equals(referredToTypeName)) {
 			return true; // Skip self-references.
 		}
@@ -132,7 +140,7 @@ public class EnforcerUtils {
 		return type;
 	}
 
-	static void addSupplementalTypes(File file, Map<String, Type> types, Set<String> ignores, Set<Problem> problems, boolean reflection, AnalyzeBinaryFlags flags) throws Exception {
+	static void addSupplementalTypes(File file, Map<String, Type> types, Ignores ignores, Set<Problem> problems, boolean reflection, Denester denester) throws Exception {
 		if (file == null) {
 			return;
 		}
@@ -158,7 +166,7 @@ public class EnforcerUtils {
 						throw new EnforcerException("invalid " + entryName + " entry in " + file + ": " + line, Errors.MISSING_REFERRED_TO_CLASS);
 					}
 				}
-				String referringClass = denest(segments[0], flags);
+				String referringClass = denester.denest(segments[0]);
 				if (skip(referringClass, ignores)) {
 					problems.add(new Problem(entryName + " class is listed as referring but also listed in ignores: " + referringClass, Errors.CLASS_BOTH_REFERRING_AND_IGNORED));
 					continue;
@@ -166,7 +174,7 @@ public class EnforcerUtils {
 				type = get(referringClass, types, !reflection);
 				String[] segments2 = segments[1].split(Separators.SUPPLEMENTAL_TYPES_TO_LIST_SEPARATOR.value());
 				for (String segment : segments2) {
-					String referredToClass = denest(segment, flags);
+					String referredToClass = denester.denest(segment);
 					if (skip(referredToClass, ignores)) {
 						problems.add(new Problem(entryName + " class is listed as referred-to but also listed in ignores: " + referringClass, Errors.CLASS_BOTH_REFERRED_TO_AND_IGNORED));
 						continue;
@@ -187,6 +195,7 @@ public class EnforcerUtils {
 
 	// See comments on other denest method explaining why this is problematic. At least here we have some structure to work with, although pf-CDA doesn't seem to provide a getEnclosingType method, which would have been useful.
 	// Instead, we have to peel one $ sign off at a time, and see if the result comes back as a class or not. If not, we keep going. If so, we check if the class is no longer nested.
+	// If we run out of $ signs without finding an enclosing class (because it's missing from the workset), we fall back to best-effort string denesting.
 	static String denest(ClassInformation classInfo, Workset workset, AnalyzeBinaryFlags flags) {
 		if (flags.preserveNestedTypes()) {
 			return classInfo.getName();
@@ -196,11 +205,16 @@ public class EnforcerUtils {
 		}
 		ClassInformation current = classInfo;
 		while (current.isInnerClass()) {
+			String peeled = current.getName();
 			ClassInformation probe = null;
-			while (probe == null) {
-				probe = workset.getClassInfo(current.getName().replaceAll("[$][^$]*$", ""));
+			while (probe == null && peeled.contains("$")) {
+				peeled = peeled.replaceAll("[$][^$]*$", "");
+				probe = workset.getClassInfo(peeled);
 			}
-			current = probe;
+			if (probe == null) {
+				return denest(current.getName(), flags);
+			}
+			current = probe; // Always has a shorter name than before, so this loop terminates.
 		}
 		return current.getName();
 	}
@@ -214,6 +228,11 @@ public class EnforcerUtils {
 		return "";
 	}
 
+	// How many problems with this error to find before giving up, which is only ever fewer than all of them if they're fatal and failing fast.
+	static int failFast(Errors error, Flags flags) {
+		return flags.failFast() > 0 && error.isFatal(flags.strict()) ? flags.failFast() : Integer.MAX_VALUE;
+	}
+
 	static void reportFatalErrors(Set<Problem> problems, Flags flags) {
 		StringBuilder builder = null;
 		Errors error = null;
@@ -234,7 +253,7 @@ public class EnforcerUtils {
 			}
 		}
 		if (builder != null) {
-			throw new EnforcerException("FATAL ERROR" + plural(error) + ":" + builder.toString(), error);
+			throw new EnforcerException("FATAL ERROR" + plural(error) + (flags.failFast() > 0 ? " (failing fast at " + flags.failFast() + ")" : "") + ":" + builder.toString(), error);
 		}
 	}
 
@@ -249,7 +268,8 @@ public class EnforcerUtils {
 		}
 	}
 
-	static Map<String, Type> typesFromWar(File war, Set<String> ignores, Set<Problem> problems, AnalyzeBinaryFlags flags) throws Exception {
+	// pf-CDA doesn't say how far it's got initializing the workset, so progress only counts classes once they've all been found.
+	static Map<String, Type> typesFromWar(File war, Ignores ignores, Set<Problem> problems, Denester denester, Progress progress) throws Exception {
 		Map<String, Type> types = new HashMap<>();
 		Workset workset = null;
 		try {
@@ -260,20 +280,23 @@ public class EnforcerUtils {
 			wsInitializer.initializeWorksetAndWait(null);
 			for (ClassInformation classInfo : workset.getAllContainedClasses()) {
 				checkSeparators(classInfo.getName());
-				String referringClass = denest(classInfo, workset, flags);
+				String referringClass = denester.denest(classInfo, workset);
 				if (skip(referringClass, ignores)) {
+					progress.step(0);
 					continue;
 				}
 				Type type = get(referringClass, types);
+				int before = type.referenceNames().size();
 				for (IType dependency : classInfo.getDirectReferredTypes()) {
 					checkSeparators(dependency.getName());
 					ClassInformation dependencyClassInfo = workset.getClassInfo(dependency.getName());
-					String referredToClass = denest(dependencyClassInfo, workset, flags);
+					String referredToClass = denester.denest(dependencyClassInfo, workset);
 					if (skip(type.name(), referredToClass, ignores)) {
 						continue;
 					}
 					type.referenceNames().add(referredToClass);
 				}
+				progress.step(type.referenceNames().size() - before);
 			}
 		} finally {
 			release(workset, problems);
@@ -282,12 +305,20 @@ public class EnforcerUtils {
 	}
 
 	static void resolve(Map<String, Type> types, Set<Problem> problems) {
+		resolve(types, problems, Integer.MAX_VALUE);
+	}
+
+	// Stops at the limit without adding synthetics, because unresolved types are fatal then, so the caller is about to throw.
+	static void resolve(Map<String, Type> types, Set<Problem> problems, int limit) {
 		Set<Type> synthetics = new HashSet<>();
+		int unresolved = 0;
 		for (Type type : types.values()) {
 			for (String referenceName : type.referenceNames()) {
 				Type reference = types.get(referenceName);
 				if (reference == null) {
-					problems.add(new Problem(referenceName, Errors.UNRESOLVED_REFERENCE));
+					if (problems.add(new Problem(referenceName, Errors.UNRESOLVED_REFERENCE)) && ++unresolved == limit) {
+						return;
+					}
 					synthetics.add(new Type(referenceName, true));
 					continue;
 				}
@@ -300,23 +331,59 @@ public class EnforcerUtils {
 	}
 
 	public static Map<String, Type> resolve(RapidIterationInputs inputs, Set<Problem> problems) throws Exception {
-		return typesFromAllReferences(inputs.allReferences());
+		return resolve(inputs, problems, new RapidIterationFlags());
+	}
+
+	public static Map<String, Type> resolve(RapidIterationInputs inputs, Set<Problem> problems, RapidIterationFlags flags) throws Exception {
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.RESOLVE);
+		Map<String, Type> types;
+		if (AllReferencesBinary.isBinary(inputs.allReferences())) {
+			types = AllReferencesBinary.read(inputs.allReferences());
+		} else if (flags.mapped()) {
+			types = AllReferencesParser.typesFromAllReferences(inputs.allReferences());
+		} else {
+			types = typesFromAllReferences(inputs.allReferences());
+		}
+		Profiler.stop(flags, measurement);
+		return types;
 	}
 
 	public static Map<String, Type> resolve(AnalyzeBinaryInputs inputs, Set<Problem> problems, AnalyzeBinaryFlags flags) throws Exception {
-		Set<String> ignores = ignores(inputs.ignores());
-		Map<String, Type> types = typesFromWar(inputs.binary(), ignores, problems, flags);
-		addSupplementalTypes(inputs.reflections(), types, ignores, problems, true, flags); // Add reflection-based referring and referred-to classes from reflections file.
-		addSupplementalTypes(inputs.fixUnresolveds(), types, ignores, problems, false, flags); // Add referring and referred-to classes from fix-unresolveds file.
+		return resolve(inputs, problems, flags, null);
+	}
+
+	// The shared cache, if any, is left for the caller to save.
+	static Map<String, Type> resolve(AnalyzeBinaryInputs inputs, Set<Problem> problems, AnalyzeBinaryFlags flags, ClassFileCache sharedCache) throws Exception {
+		Ignores ignores = ignores(inputs.ignores());
+		if (flags.cache() && !flags.bcel()) {
+			throw new EnforcerException("cache requires bcel", Errors.CACHE_REQUIRES_BCEL); // pf-CDA parses the whole binary at once, so there's nothing to cache per class file.
+		}
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.RESOLVE);
+		Denester denester = new Denester(flags);
+		Map<String, Type> types;
+		if (!flags.bcel()) {
+			try (Progress progress = Progress.start(flags, "Scanning " + inputs.binary().getName(), "classes", 0)) {
+				types = typesFromWar(inputs.binary(), ignores, problems, denester, progress);
+			}
+		} else if (sharedCache != null) {
+			types = ClassFileScanner.scanTypes(inputs.binary(), ignores, flags, sharedCache);
+		} else {
+			types = ClassFileScanner.typesFromBinary(inputs.binary(), ignores, flags, flags.cache() ? new ClassFileCache(inputs.cacheDirectory(), ignores, flags) : null);
+		}
+		Profiler.Measurement supplemental = Profiler.start(flags, Phases.SUPPLEMENTAL_TYPES);
+		addSupplementalTypes(inputs.reflections(), types, ignores, problems, true, denester); // Add reflection-based referring and referred-to classes from reflections file.
+		addSupplementalTypes(inputs.fixUnresolveds(), types, ignores, problems, false, denester); // Add referring and referred-to classes from fix-unresolveds file.
+		Profiler.stop(flags, supplemental);
 		reportFatalErrors(problems, flags);
-		resolve(types, problems);
+		resolve(types, problems, failFast(Errors.UNRESOLVED_REFERENCE, flags));
+		Profiler.stop(flags, measurement);
 		reportFatalErrors(problems, flags);
 		return types;
 	}
 
 	public static Map<String, Type> resolve(Inputs inputs, Set<Problem> problems, Flags flags) throws Exception {
 		if (inputs instanceof RapidIterationInputs) {
-			return resolve((RapidIterationInputs)inputs, problems);
+			return resolve((RapidIterationInputs)inputs, problems, flags instanceof RapidIterationFlags ? (RapidIterationFlags)flags : new RapidIterationFlags());
 		}
 		return resolve((AnalyzeBinaryInputs)inputs, problems, (AnalyzeBinaryFlags)flags);
 	}
@@ -355,26 +422,49 @@ public class EnforcerUtils {
 		rollUp.validate(problems);
 	}
 
-	static void correlateTypesToReferences(Map<String, Type> types, Set<Reference> references, Set<Problem> problems) {
-		for (Type referringType : types.values()) {
-			for (Type referredToType : referringType.references()) {
-				Reference reference = new Reference(referringType, referredToType);
-				references.add(reference);
-				referringType.component().references().add(reference);
-				if (!reference.kind().isLegal()) {
-					problems.add(new Problem(reference.parseableDescription(true, false), Errors.ILLEGAL_REFERENCE, reference.humanReadableDescription(true, false)));
-					problems.add(new Problem(reference.parseableDescription(false, false), Errors.ILLEGAL_COMPONENT_REFERENCE, reference.humanReadableDescription(false, false)));
+	static void addIllegal(Reference reference, Set<Problem> problems) {
+		problems.add(new Problem(reference, true));
+		problems.add(new Problem(reference, false));
+	}
+
+	// Only illegal references are kept (in their problems), so memory doesn't grow with the number of references. Kinds are looked up by component,
+	// so a Reference is only created for an illegal reference. Stops at the limit, because illegal references are fatal then.
+	static void correlateTypesToReferences(TypeGraph graph, Set<Problem> problems, Progress progress, int limit) {
+		int illegal = 0;
+		for (int id = 0; id < graph.size(); id++) {
+			progress.step(graph.endReference(id) - graph.firstReference(id));
+			Component component = graph.type(id).component();
+			for (int reference = graph.firstReference(id); reference < graph.endReference(id); reference++) {
+				Type referredTo = graph.type(graph.target(reference));
+				if (!component.kind(referredTo.component()).isLegal()) {
+					addIllegal(new Reference(graph.type(id), referredTo), problems);
+					if (++illegal == limit) {
+						return;
+					}
 				}
 			}
 		}
 	}
 
-	public static void correlate(Map<String, Type> types, Map<String, Component> components, RollUp rollUp, Set<Reference> references, Set<Problem> problems, Flags flags) {
+	public static TypeGraph correlate(Map<String, Type> types, Map<String, Component> components, RollUp rollUp, Set<Problem> problems, Flags flags) {
 		correlateComponentClassesToTypes(types, components, problems);
 		reportFatalErrors(problems, flags);
 		correlateTypesToComponents(types, components, rollUp, problems);
 		reportFatalErrors(problems, flags);
-		correlateTypesToReferences(types, references, problems);
+		TypeGraph graph = new TypeGraph(types);
+		try (Progress progress = Progress.start(flags, "Correlating references", "types", graph.size())) {
+			correlateTypesToReferences(graph, problems, progress, failFast(Errors.ILLEGAL_REFERENCE, flags));
+		}
 		reportFatalErrors(problems, flags);
+		return graph;
+	}
+
+	// Same as above, but also collects every reference, which costs a lot of memory for large binaries.
+	public static TypeGraph correlate(Map<String, Type> types, Map<String, Component> components, RollUp rollUp, Set<Reference> references, Set<Problem> problems, Flags flags) {
+		TypeGraph graph = correlate(types, components, rollUp, problems, flags);
+		for (Reference reference : graph.references()) {
+			references.add(reference);
+		}
+		return graph;
 	}
 }
@@ -31,16 +31,43 @@ public enum Errors {
 	FIX_UNRESOLVEDS_FILE_ALREADY_SPECIFIED,
 	NAME_CONFLICTS_WITH_OTHER_FILE,
 	COMPONENT_ALREADY_SPECIFIED,
+	TYPE_ALREADY_IN_GRAPH,
 	PRESERVE_NESTED_TYPES_ALREADY_SPECIFIED,
+	BCEL_ALREADY_SPECIFIED,
+	CACHE_ALREADY_SPECIFIED,
+	CACHE_REQUIRES_BCEL,
+	CACHE_DIRECTORY_NOT_SPECIFIED,
+	MAPPED_ALREADY_SPECIFIED,
+	INCREMENTAL_ALREADY_SPECIFIED,
 	STRICT_ALREADY_SPECIFIED,
 	DEBUG_ALREADY_SPECIFIED,
+	WATCH_ALREADY_SPECIFIED,
+	PROFILE_ALREADY_SPECIFIED,
+	QUIET_ALREADY_SPECIFIED,
+	MEMORY_CEILING_ALREADY_SPECIFIED,
+	INVALID_MEMORY_CEILING,
+	FAIL_FAST_ALREADY_SPECIFIED,
+	INVALID_FAIL_FAST,
+	FAIL_FAST_REQUIRES_STRICT,
+	INVALID_SYNTHETIC_CODEBASE,
 	UNRECOGNIZED_COMMAND_LINE_OPTION,
 	NOT_ENOUGH_ARGS,
 	TOO_MANY_ARGS,
+	INVALID_SERVER_ARG,
+	WATCH_NOT_SUPPORTED_BY_SERVER,
+	RELATIVE_PATH_NOT_SUPPORTED_BY_SERVER,
+	WATCH_NOT_SUPPORTED_WITH_MULTIPLE_TARGETS,
+	WATCH_NOT_SUPPORTED_WITH_FLEET,
+	MULTIPLE_TARGETS_NOT_SUPPORTED_WITH_FLEET,
+	MULTIPLE_TARGETS_NOT_SUPPORTED_WITHOUT_OUTPUTS,
+	NO_BINARIES_IN_FLEET,
+	NOT_A_BINARY,
+	SERVER_ERROR,
 	RAPID_ITERATION_INPUT_FILE_WOULD_BE_OVERWRITTEN,
 	FILE_DOES_NOT_EXIST,
 	CANNOT_READ_FILE,
 	CANNOT_WRITE_TO_DIRECTORY,
+	CANNOT_WRITE_FILE,
 	ERROR_VALIDATING_FILE,
 	ERROR_VALIDATING_DIRECTORY,
 	UNRECOGNIZED_LAYER_KEY,
@@ -57,6 +84,10 @@ public enum Errors {
 	DUPLICATE_IGNORE,
 	RESERVED_SEPARATOR_IN_CLASS_NAME,
 	MALFORMED_CLASS_NAME,
+	MALFORMED_CLASS_FILE,
+	UNABLE_TO_READ_BINARY,
+	MALFORMED_ALL_REFERENCES_FILE,
+	UNABLE_TO_READ_ALL_REFERENCES_FILE,
 	MALFORMED_CLASS_TO_CLASS_REFERENCE,
 	MISSING_REFERRED_TO_CLASS,
 	SUPPLEMENTAL_TYPE_NOT_NEEDED,
@@ -13,10 +13,18 @@
 
 package com.jimandlisa.enforcer;
 
-public class Flags {
+import java.io.PrintStream;
+
+public class Flags implements Cloneable {
 
 	protected boolean strict = false;
 	protected boolean debug = false;
+	protected boolean watch = false;
+	protected long memoryCeiling = 0;
+	protected int failFast = 0;
+	protected Profiler profiler = null;
+	protected boolean quiet = false;
+	protected PrintStream progressConsole = null;
 
 	public Flags() {
 		super();
@@ -43,9 +51,95 @@ public class Flags {
 	public boolean debug() {
 		return debug;
 	}
+
+	public void enableWatch() {
+		if (watch) {
+			throw new EnforcerException("watch already set", Errors.WATCH_ALREADY_SPECIFIED);
+		}
+		this.watch = true;
+	}
+
+	public boolean watch() {
+		return watch;
+	}
+
+	public void setMemoryCeiling(long megabytes) {
+		if (memoryCeiling > 0) {
+			throw new EnforcerException("memory ceiling already set", Errors.MEMORY_CEILING_ALREADY_SPECIFIED);
+		}
+		if (megabytes <= 0) {
+			throw new EnforcerException("invalid memory ceiling " + megabytes + ", must be a positive number of megabytes", Errors.INVALID_MEMORY_CEILING);
+		}
+		this.memoryCeiling = megabytes;
+	}
+
+	// In megabytes, 0 if not set.
+	public long memoryCeiling() {
+		return memoryCeiling;
+	}
+
+	public void setFailFast(int count) {
+		if (failFast > 0) {
+			throw new EnforcerException("fail fast already set", Errors.FAIL_FAST_ALREADY_SPECIFIED);
+		}
+		if (count <= 0) {
+			throw new EnforcerException("invalid fail fast " + count + ", must be a positive number of fatal problems", Errors.INVALID_FAIL_FAST);
+		}
+		this.failFast = count;
+	}
+
+	// 0 unless failing fast.
+	public int failFast() {
+		return failFast;
+	}
+
+	public void enableProfile() {
+		if (profiler != null) {
+			throw new EnforcerException("profile already set", Errors.PROFILE_ALREADY_SPECIFIED);
+		}
+		this.profiler = new Profiler();
+	}
+
+	public boolean profile() {
+		return profiler != null;
+	}
+
+	// Null unless profiling.
+	public Profiler profiler() {
+		return profiler;
+	}
+
+	public void enableQuiet() {
+		if (quiet) {
+			throw new EnforcerException("quiet already set", Errors.QUIET_ALREADY_SPECIFIED);
+		}
+		this.quiet = true;
+	}
+
+	public boolean quiet() {
+		return quiet;
+	}
+
+	// Only runs from the command line report progress, and not if quiet.
+	void reportProgressTo(PrintStream console) {
+		this.progressConsole = quiet ? null : console;
+	}
+
+	// Null unless reporting progress.
+	PrintStream progressConsole() {
+		return progressConsole;
+	}
+
+	// A copy that reports progress (if this does) to another console, and shares everything else, the profiler included. For runs that buffer their
+	// own console, so their progress lines go with the rest of their output.
+	Flags reportingProgressTo(PrintStream console) throws CloneNotSupportedException {
+		Flags copy = (Flags)clone();
+		copy.progressConsole = progressConsole == null ? null : console;
+		return copy;
+	}
 	
 	@Override
 	public String toString() {
-		return "strict=" + strict + ", debug=" + debug;
+		return "strict=" + strict + ", debug=" + debug + ", watch=" + watch + ", memoryCeiling=" + memoryCeiling + ", profile=" + profile() + ", quiet=" + quiet + ", failFast=" + failFast;
 	}
 }
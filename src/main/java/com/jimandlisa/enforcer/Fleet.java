@@ -0,0 +1,135 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Enforces one target against each binary of a fleet, several binaries at a time, each into its own output subdirectory named after the binary.
+// With BCEL, class files are parsed at most once across the fleet (so third-party classes shared by many binaries, ignored or not, are only parsed
+// once), through a class file cache that's kept in memory unless caching to disk was requested. Then writes a summary of which component references
+// occur in which binaries.
+public class Fleet {
+
+	public static final String SUMMARY_FILE_NAME = "fleet_component_references.txt";
+
+	// Resolving, correlating, and writing outputs for a binary takes roughly this many times the binary's size, in heap.
+	static final long HEAP_PER_BINARY_BYTE = 32;
+
+	// Workers are bounded by cores, and by how many of the largest binary fit in the heap at once.
+	static int workers(List<File> binaries, int processors, long maxMemory) {
+		long largest = 1;
+		for (File binary : binaries) {
+			largest = Math.max(largest, binary.length());
+		}
+		long fit = Math.max(1, maxMemory / (largest * HEAP_PER_BINARY_BYTE));
+		return (int) Math.max(1, Math.min(binaries.size(), Math.min(processors, fit)));
+	}
+
+	static Set<String> componentReferences(EnforcementResult result) {
+		Set<String> componentReferences = new TreeSet<>();
+		for (Reference reference : result.references()) {
+			componentReferences.add(reference.parseableDescription(false, false));
+		}
+		return componentReferences;
+	}
+
+	// One line per component reference: referringComponent!referringLayer!referringDepth!referredToComponent!referredToLayer!referredToDepth!<binary count>!<binary,binary,...>
+	static List<String> summary(List<File> binaries, List<Set<String>> componentReferences) {
+		Map<String, List<String>> found = new TreeMap<>();
+		for (int i = 0; i < binaries.size(); i++) {
+			if (componentReferences.get(i) == null) {
+				continue; // Failed.
+			}
+			for (String componentReference : componentReferences.get(i)) {
+				List<String> names = found.get(componentReference);
+				if (names == null) {
+					names = new ArrayList<>();
+					found.put(componentReference, names);
+				}
+				names.add(binaries.get(i).getName());
+			}
+		}
+		List<String> lines = new ArrayList<>();
+		for (Map.Entry<String, List<String>> entry : found.entrySet()) {
+			lines.add(entry.getKey() + Separators.REFERENCE_SEPARATOR.value() + entry.getValue().size() + Separators.REFERENCE_SEPARATOR.value()
+					+ String.join(Separators.SUPPLEMENTAL_TYPES_TO_LIST_SEPARATOR.value(), entry.getValue()));
+		}
+		return lines;
+	}
+
+	// Each binary's console output, progress included, is buffered and printed together, in binary order. Binaries with fatal problems don't stop
+	// the others, but fail the run once all are done (after the summary is written, from the binaries that didn't fail).
+	static void enforce(final FleetInputs inputs, Outputs outputs, PrintStream console, final AnalyzeBinaryFlags flags, final ResolutionCache cache) throws Exception {
+		final List<File> binaries = inputs.binaries();
+		final Outputs[] binaryOutputs = new Outputs[binaries.size()];
+		for (int i = 0; i < binaries.size(); i++) {
+			binaryOutputs[i] = new Outputs(Enforce.outputDirectory(binaries.get(i), outputs));
+		}
+		final ClassFileCache shared = flags.bcel() && cache == null ? (flags.cache() ? new ClassFileCache(inputs.cacheDirectory(), EnforcerUtils.ignores(inputs.ignores()), flags)
+				: new ClassFileCache(EnforcerUtils.ignores(inputs.ignores()), flags)) : null;
+		final List<Set<String>> componentReferences = new ArrayList<>();
+		for (int i = 0; i < binaries.size(); i++) {
+			componentReferences.add(null);
+		}
+		Exception failure = new BufferedTasks(binaries.size(), "binaries") {
+			@Override
+			String heading(int index) {
+				return "Binary " + binaries.get(index) + " (outputs in " + binaryOutputs[index].outputDirectory() + "):";
+			}
+
+			@Override
+			void task(int index, PrintStream out) throws Exception {
+				AnalyzeBinaryFlags binaryFlags = (AnalyzeBinaryFlags)flags.reportingProgressTo(out);
+				AnalyzeBinaryInputs binaryInputs = inputs.inputs(binaries.get(index));
+				Set<Problem> problems = new LinkedHashSet<>();
+				Map<String, Type> types;
+				if (cache != null) {
+					ResolvedTypes resolved = cache.resolve(binaryInputs, binaryFlags);
+					problems.addAll(resolved.problems());
+					types = resolved.types();
+				} else {
+					types = EnforcerUtils.resolve(binaryInputs, problems, binaryFlags, shared);
+				}
+				EnforcementResult result = Enforce.correlate(Enforce.parse(inputs.target(), binaryFlags), types, null, problems, binaryFlags);
+				Enforce.write(result, binaryInputs, binaryOutputs[index], out, binaryFlags);
+				componentReferences.set(index, componentReferences(result)); // Each task sets only its own element, and the list never changes size.
+			}
+		}.run(workers(binaries, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory()), console);
+		if (shared != null) {
+			shared.save();
+		}
+		final List<String> summary = summary(binaries, componentReferences);
+		File summaryFile = new File(outputs.outputDirectory(), SUMMARY_FILE_NAME);
+		console.println("Component references across the fleet written to " + summaryFile);
+		new Artifact(summaryFile) {
+			@Override
+			protected void write(PrintStream out) {
+				for (String line : summary) {
+					out.println(line);
+				}
+			}
+		}.call();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Several binaries (say, one per microservice) checked against the same target, with the same ignores, reflections, and fix-unresolveds files.
+// The first binary stands in as the data file, so options are set and checked the same as for one binary.
+public class FleetInputs extends AnalyzeBinaryInputs {
+
+	private final List<File> binaries;
+
+	public FleetInputs(List<File> targets, List<File> binaries) {
+		super(targets, first(binaries));
+		List<File> checked = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		for (File binary : binaries) {
+			if (!Enforce.isBinary(binary)) {
+				throw new EnforcerException(binary + " is not a .jar, .war, or .ear", Errors.NOT_A_BINARY);
+			}
+			checked.add(FileUtils.check(FileUtils.checkReadFile(binary), checked.toArray(new File[checked.size()])));
+			// Each binary's outputs go in a subdirectory named for it, so svc.jar and svc.war would be enforced concurrently into the same one.
+			if (!names.add(Enforce.outputName(binary))) {
+				throw new EnforcerException("binary " + binary + " would overwrite the output of another binary with the same name", Errors.NAME_CONFLICTS_WITH_OTHER_FILE);
+			}
+		}
+		this.binaries = Collections.unmodifiableList(checked);
+	}
+
+	static File first(List<File> binaries) {
+		if (binaries.isEmpty()) {
+			throw new EnforcerException("no binaries in fleet", Errors.NO_BINARIES_IN_FLEET);
+		}
+		return binaries.get(0);
+	}
+
+	// Returns null unless the arg is a directory, or several binaries separated by the path separator, in which case returns the binaries (sorted by
+	// name, for a directory).
+	static List<File> binaries(String arg) {
+		if (arg.contains(File.pathSeparator)) {
+			List<File> binaries = new ArrayList<>();
+			for (String binary : arg.split(File.pathSeparator)) {
+				binaries.add(new File(binary));
+			}
+			return binaries;
+		}
+		File directory = new File(arg);
+		if (!directory.isDirectory()) {
+			return null;
+		}
+		return binaries(directory, directory.listFiles());
+	}
+
+	// The directory's listing is null if it couldn't be read.
+	static List<File> binaries(File directory, File[] files) {
+		if (files == null) {
+			throw new EnforcerException("cannot read " + directory, Errors.CANNOT_READ_FILE);
+		}
+		Arrays.sort(files);
+		List<File> binaries = new ArrayList<>();
+		for (File file : files) {
+			if (file.isFile() && Enforce.isBinary(file)) {
+				binaries.add(file);
+			}
+		}
+		if (binaries.isEmpty()) {
+			throw new EnforcerException("no binaries in " + directory, Errors.NO_BINARIES_IN_FLEET);
+		}
+		return binaries;
+	}
+
+	public List<File> binaries() {
+		return binaries;
+	}
+
+	// One binary's inputs, with the fleet's options.
+	public AnalyzeBinaryInputs inputs(File binary) {
+		AnalyzeBinaryInputs inputs = new AnalyzeBinaryInputs(targets, binary);
+		if (ignores() != null) {
+			inputs.setIgnores(ignores());
+		}
+		if (reflections() != null) {
+			inputs.setReflections(reflections());
+		}
+		if (fixUnresolveds() != null) {
+			inputs.setFixUnresolveds(fixUnresolveds());
+		}
+		if (cacheDirectory() != null) {
+			inputs.setCacheDirectory(cacheDirectory());
+		}
+		return inputs;
+	}
+
+	@Override
+	public List<File> dataFiles() {
+		List<File> files = new ArrayList<>(binaries);
+		List<File> options = super.dataFiles();
+		files.addAll(options.subList(1, options.size()));
+		return files;
+	}
+
+	@Override
+	String binaryToString() {
+		return "binaries=" + binaries;
+	}
+}
@@ -0,0 +1,106 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// The packages and classes to ignore, compiled into a trie of name segments so checking a type name costs time proportional to the length of the name,
+// instead of to the number of ignores (which can run to hundreds, checked against every class and every reference).
+// Each ignore is a raw prefix (see EnforcerUtils.ignores): the part up to the last dot is matched segment by segment, and whatever follows the last dot
+// (empty for packages, or a partial name for verbatim ignores like com.foo.Bar!) only has to be a prefix of the next segment.
+public class Ignores {
+
+	static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+		private final Set<String> tails = new HashSet<>();
+		private int longestTail = -1;
+
+		Node child(String segment) {
+			Node child = children.get(segment);
+			if (child == null) {
+				child = new Node();
+				children.put(segment, child);
+			}
+			return child;
+		}
+
+		void addTail(String tail) {
+			tails.add(tail);
+			longestTail = Math.max(longestTail, tail.length());
+		}
+
+		boolean matchesTail(String name, int start, int end) {
+			for (int length = 0; length <= Math.min(longestTail, end - start); length++) {
+				if (tails.contains(name.substring(start, start + length))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final Set<String> prefixes = new HashSet<>();
+	private final Node root = new Node();
+
+	public Ignores() {
+		super();
+	}
+
+	public boolean add(String prefix) {
+		if (!prefixes.add(prefix)) {
+			return false;
+		}
+		Node node = root;
+		int start = 0;
+		int dot = 0;
+		while ((dot = prefix.indexOf('.', start)) != -1) {
+			node = node.child(prefix.substring(start, dot));
+			start = dot + 1;
+		}
+		node.addTail(prefix.substring(start));
+		return true;
+	}
+
+	// Equivalent to checking if the name starts with any of the prefixes.
+	public boolean matches(String typeName) {
+		Node node = root;
+		int start = 0;
+		while (node != null) {
+			int dot = typeName.indexOf('.', start);
+			int end = dot == -1 ? typeName.length() : dot;
+			if (node.matchesTail(typeName, start, end)) {
+				return true;
+			}
+			if (dot == -1) {
+				return false;
+			}
+			node = node.children.get(typeName.substring(start, dot));
+			start = dot + 1;
+		}
+		return false;
+	}
+
+	public Set<String> prefixes() {
+		return Collections.unmodifiableSet(prefixes);
+	}
+
+	public int size() {
+		return prefixes.size();
+	}
+}
@@ -14,19 +14,51 @@
 package com.jimandlisa.enforcer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class Inputs {
 
 	protected final File target;
+	protected final List<File> targets;
 	protected final File data;
 	
 	public Inputs(final File target, final File data) {
+		this(Arrays.asList(target), data);
+	}
+
+	// Several targets are enforced against the same data, each into its own output subdirectory, named after the target file.
+	public Inputs(final List<File> targets, final File data) {
 		super();
-		this.target = FileUtils.check(FileUtils.checkReadFile(target), data);
-		this.data = FileUtils.check(FileUtils.checkReadFile(data), target);
+		if (targets.isEmpty()) {
+			throw new EnforcerException("no target", Errors.NOT_ENOUGH_ARGS);
+		}
+		List<File> checked = new ArrayList<>();
+		for (File target : targets) {
+			File[] others = checked.toArray(new File[checked.size() + 1]);
+			others[checked.size()] = data;
+			checked.add(FileUtils.check(FileUtils.checkReadFile(target), others));
+		}
+		this.target = checked.get(0);
+		this.targets = Collections.unmodifiableList(checked);
+		this.data = FileUtils.check(FileUtils.checkReadFile(data), checked.toArray(new File[checked.size()]));
 	}
 
+	// The first target, and the only one unless several were specified.
 	public final File target() {
 		return target;
 	}
+
+	public final List<File> targets() {
+		return targets;
+	}
+
+	protected final String targetsToString() {
+		return targets.size() == 1 ? "target=" + target : "targets=" + targets;
+	}
+
+	// Everything but the target, which is to say the files that types are resolved from.
+	public abstract List<File> dataFiles();
 }
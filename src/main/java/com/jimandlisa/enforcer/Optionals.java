@@ -19,6 +19,15 @@ enum Optionals {
 	REFLECTIONS("r"),
 	FIX_UNRESOLVEDS("f"),
 	PRESERVE_NESTED_TYPES("p"),
+	BCEL("b"),
+	CACHE("c"),
+	MAPPED("m"),
+	INCREMENTAL("n"),
+	MEMORY_CEILING("x"),
+	WATCH("w"),
+	PROFILE("t"),
+	QUIET("q"),
+	FAIL_FAST("e"),
 	STRICT("s"),
 	DEBUG("d");
 	
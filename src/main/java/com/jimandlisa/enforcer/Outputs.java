@@ -27,6 +27,9 @@ public class Outputs {
 	public static final String GEPHI_NODES_SUFFIX = "_GephiNodes.csv";
 	public static final String GEPHI_EDGES_SUFFIX = "_GephiEdges.csv";
 	public static final String YED_SUFFIX = "_yed.tgf";
+	public static final String BINARY_SUFFIX = ".bin";
+	public static final String CORRELATION_SNAPSHOT_FILE_NAME = "correlation_snapshot.dat";
+	public static final String PROFILE_FILE_NAME = "profile.txt";
 
 	private final File outputDirectory;
 	private final File warnings;
@@ -34,6 +37,7 @@ public class Outputs {
 	private final File illegalReferences;
 	private final File illegalComponentReferences;
 	private final File allReferences;
+	private final File allReferencesBinary;
 	private final File allReferencesGephiNodes;
 	private final File allReferencesGephiEdges;
 	private final File allReferencesYeD;
@@ -41,6 +45,8 @@ public class Outputs {
 	private final File allComponentReferencesGephiNodes;
 	private final File allComponentReferencesGephiEdges;
 	private final File allComponentReferencesYeD;
+	private final File correlationSnapshot;
+	private final File profile;
 
 	public Outputs(final File outputDirectory) {
 		super();
@@ -50,6 +56,7 @@ public class Outputs {
 		illegalReferences = Paths.get(outputDirectory.getAbsolutePath(), ILLEGAL_REFERENCES_BASE_NAME + ".txt").toFile();
 		illegalComponentReferences = Paths.get(outputDirectory.getAbsolutePath(), ILLEGAL_COMPONENT_REFERENCES_BASE_NAME + ".txt").toFile();
 		allReferences = Paths.get(outputDirectory.getAbsolutePath(), ALL_REFERENCES_BASE_NAME + ".txt").toFile();
+		allReferencesBinary = Paths.get(outputDirectory.getAbsolutePath(), ALL_REFERENCES_BASE_NAME + BINARY_SUFFIX).toFile();
 		allReferencesGephiNodes = Paths.get(outputDirectory.getAbsolutePath(), ALL_REFERENCES_BASE_NAME + GEPHI_NODES_SUFFIX).toFile();
 		allReferencesGephiEdges = Paths.get(outputDirectory.getAbsolutePath(), ALL_REFERENCES_BASE_NAME + GEPHI_EDGES_SUFFIX).toFile();
 		allReferencesYeD = Paths.get(outputDirectory.getAbsolutePath(), ALL_REFERENCES_BASE_NAME + YED_SUFFIX).toFile();
@@ -57,6 +64,8 @@ public class Outputs {
 		allComponentReferencesGephiNodes = Paths.get(outputDirectory.getAbsolutePath(), ALL_COMPONENT_REFERENCES_BASE_NAME + GEPHI_NODES_SUFFIX).toFile();
 		allComponentReferencesGephiEdges = Paths.get(outputDirectory.getAbsolutePath(), ALL_COMPONENT_REFERENCES_BASE_NAME + GEPHI_EDGES_SUFFIX).toFile();
 		allComponentReferencesYeD = Paths.get(outputDirectory.getAbsolutePath(), ALL_COMPONENT_REFERENCES_BASE_NAME + YED_SUFFIX).toFile();
+		correlationSnapshot = Paths.get(outputDirectory.getAbsolutePath(), CORRELATION_SNAPSHOT_FILE_NAME).toFile();
+		profile = Paths.get(outputDirectory.getAbsolutePath(), PROFILE_FILE_NAME).toFile();
 	}
 
 	public File outputDirectory() {
@@ -83,6 +92,10 @@ public class Outputs {
 		return allReferences;
 	}
 
+	public File allReferencesBinary() {
+		return allReferencesBinary;
+	}
+
 	public File allReferencesGephiNodes() {
 		return allReferencesGephiNodes;
 	}
@@ -111,10 +124,19 @@ public class Outputs {
 		return allComponentReferencesYeD;
 	}
 
+	public File correlationSnapshot() {
+		return correlationSnapshot;
+	}
+
+	public File profile() {
+		return profile;
+	}
+
 	@Override
 	public String toString() {
-		return "warnings=" + warnings + ", unresolvedTypes=" + unresolvedTypes + ", illegalReferences=" + illegalReferences + ", illegalComponentReferences=" + illegalComponentReferences + ", allReferences=" + allReferences
+		return "warnings=" + warnings + ", unresolvedTypes=" + unresolvedTypes + ", illegalReferences=" + illegalReferences + ", illegalComponentReferences=" + illegalComponentReferences + ", allReferences=" + allReferences + ", allReferencesBinary=" + allReferencesBinary
 				+ ", allReferencesGephiNodes=" + allReferencesGephiNodes + ", allReferencesGephiEdges=" + allReferencesGephiEdges + ", allReferencesYeD=" + allReferencesYeD + ", allComponentReferences=" + allComponentReferences
-				+ ", allComponentReferencesGephiNodes=" + allComponentReferencesGephiNodes + ", allComponentReferencesGephiEdges=" + allComponentReferencesGephiEdges + ", allComponentReferencesYeD=" + allComponentReferencesYeD;
+				+ ", allComponentReferencesGephiNodes=" + allComponentReferencesGephiNodes + ", allComponentReferencesGephiEdges=" + allComponentReferencesGephiEdges + ", allComponentReferencesYeD=" + allComponentReferencesYeD
+				+ ", correlationSnapshot=" + correlationSnapshot + ", profile=" + profile;
 	}
 }
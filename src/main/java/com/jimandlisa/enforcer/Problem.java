@@ -17,28 +17,82 @@ package com.jimandlisa.enforcer;
 // This avoids antagonizing the developer early in a decomposition project, when there can be hundreds or thousands of errors.
 public class Problem implements Comparable<Problem> {
 
-	private final String description;
 	private final Errors error;
-	private final String detail;
+	private final Reference reference; // Only for illegal references, whose descriptions are rendered from it when first asked for.
+	private final boolean includeClasses;
 	private final int hashCode;
-	private final String toString;
-	private final String humanReadableToString;
+	private volatile String description;
+	private volatile String detail;
+	private volatile String toString;
 
 	public Problem(final String description, final Errors error, final String detail) {
 		super();
 		this.description = ArgUtils.check(description, "description");
 		this.error = ArgUtils.check(error, "error");
+		this.reference = null;
+		this.includeClasses = false;
 		this.detail = detail;
 		this.hashCode = error.hashCode() + description.hashCode();
-		this.toString = error + ": " + description;
-		this.humanReadableToString = error + ": " + (isWarning() ? description : detail);
 	}
 
 	Problem(final String description, final Errors error) {
 		this(description, error, null);
 	}
 
+	// An illegal reference (with classes) or illegal component reference (without), equal to and with the same hash code as the problem made from the
+	// reference's descriptions, but without building any strings until they're needed, since most are never printed.
+	Problem(final Reference reference, final boolean includeClasses) {
+		super();
+		this.error = includeClasses ? Errors.ILLEGAL_REFERENCE : Errors.ILLEGAL_COMPONENT_REFERENCE;
+		this.reference = reference;
+		this.includeClasses = includeClasses;
+		this.hashCode = error.hashCode() + descriptionHashCode(reference, includeClasses);
+	}
+
+	// Same as String.hashCode, continued over another string.
+	static int hash(int hash, String string) {
+		for (int i = 0; i < string.length(); i++) {
+			hash = 31 * hash + string.charAt(i);
+		}
+		return hash;
+	}
+
+	// Same as reference.parseableDescription(includeClasses, false).hashCode().
+	static int descriptionHashCode(Reference reference, boolean includeClasses) {
+		int hash = 0;
+		if (includeClasses) {
+			hash = hash(hash(hash, reference.referringType().name()), Reference.SEPARATOR);
+		}
+		Component referring = reference.referringType().component();
+		hash = hash(hash(hash(hash(hash(hash, referring.name()), Reference.SEPARATOR), referring.layer().name()), Reference.SEPARATOR), Integer.toString(referring.layer().depth()));
+		hash = hash(hash, Reference.SEPARATOR);
+		if (includeClasses) {
+			hash = hash(hash(hash, reference.referredToType().name()), Reference.SEPARATOR);
+		}
+		Component referredTo = reference.referredToType().component();
+		return hash(hash(hash(hash(hash(hash, referredTo.name()), Reference.SEPARATOR), referredTo.layer().name()), Reference.SEPARATOR), Integer.toString(referredTo.layer().depth()));
+	}
+
+	static boolean sameComponent(Component component, Component other) {
+		return component.name().equals(other.name()) && component.layer().name().equals(other.layer().name()) && component.layer().depth() == other.layer().depth();
+	}
+
+	// Same as comparing the descriptions.
+	boolean sameReference(Problem other) {
+		if (includeClasses != other.includeClasses) {
+			return false;
+		}
+		if (includeClasses && (!reference.referringType().name().equals(other.reference.referringType().name()) || !reference.referredToType().name().equals(other.reference.referredToType().name()))) {
+			return false;
+		}
+		return sameComponent(reference.referringType().component(), other.reference.referringType().component())
+				&& sameComponent(reference.referredToType().component(), other.reference.referredToType().component());
+	}
+
 	public String description() {
+		if (description == null) {
+			description = reference.parseableDescription(includeClasses, false);
+		}
 		return description;
 	}
 
@@ -47,6 +101,9 @@ public class Problem implements Comparable<Problem> {
 	}
 
 	public String detail() {
+		if (detail == null && reference != null) {
+			detail = reference.humanReadableDescription(includeClasses, false);
+		}
 		return detail;
 	}
 	
@@ -74,20 +131,28 @@ public class Problem implements Comparable<Problem> {
 		if (!(obj instanceof Problem)) {
 			return false;
 		}
-		return description.equals(((Problem)obj).description);
+		Problem other = (Problem)obj;
+		if (reference != null && other.reference != null) {
+			return sameReference(other);
+		}
+		return description().equals(other.description());
 	}
 
+	// Renders both descriptions, which is fine because problems are only sorted to be written.
 	@Override
 	public int compareTo(Problem other) {
-		return toString.compareTo(other.toString);
+		return toString().compareTo(other.toString());
 	}
 
 	@Override
 	public String toString() {
+		if (toString == null) {
+			toString = error + ": " + description();
+		}
 		return toString;
 	}
 
 	public String humanReadableToString() {
-		return humanReadableToString;
+		return error + ": " + (isWarning() ? description() : detail());
 	}
 }
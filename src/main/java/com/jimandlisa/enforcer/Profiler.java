@@ -0,0 +1,218 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-phase measurements, for the profile option. Each phase records its wall time, the CPU time and bytes allocated by the thread running it, the
+// process's CPU time (which includes work the phase hands to other threads, like writing output files concurrently), and the heap's high-water mark
+// when it ends (so the phase that raised the peak is the one where it jumps). Phases that run more than once (per target, per binary, or nested, like
+// supplemental types within resolve) are totaled. Start and end are wall-clock times, for lining phases up with GC logs or a flight recording.
+// Measurements the JVM doesn't support are -1.
+public class Profiler {
+
+	static final String HEADER = "phase!count!wall_ns!cpu_ns!process_cpu_ns!allocated_bytes!peak_heap_bytes!start_ms!end_ms";
+
+	// A phase in progress.
+	static class Measurement {
+
+		private final Phases phase;
+		private final long startMillis = System.currentTimeMillis();
+		private final long startNanos = System.nanoTime();
+		private final long startCpu = cpu();
+		private final long startProcessCpu = processCpu();
+		private final long startAllocated = allocated();
+
+		Measurement(final Phases phase) {
+			super();
+			this.phase = phase;
+		}
+	}
+
+	static class Totals {
+
+		private int count = 0;
+		private long wall = 0;
+		private long cpu = 0;
+		private long processCpu = 0;
+		private long allocated = 0;
+		private long peakHeap = 0;
+		private long start = Long.MAX_VALUE;
+		private long end = 0;
+	}
+
+	private final Map<Phases, Totals> totals = new EnumMap<>(Phases.class);
+
+	public Profiler() {
+		super();
+		resetPeakHeap();
+	}
+
+	// Each measurement takes the bean it reads, so tests can substitute one that doesn't support it.
+	static long cpu() {
+		return cpu(ManagementFactory.getThreadMXBean());
+	}
+
+	static long cpu(ThreadMXBean threads) {
+		if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) {
+			return -1;
+		}
+		return threads.getCurrentThreadCpuTime();
+	}
+
+	static long processCpu() {
+		return processCpu(ManagementFactory.getOperatingSystemMXBean());
+	}
+
+	static long processCpu(OperatingSystemMXBean os) {
+		if (!(os instanceof com.sun.management.OperatingSystemMXBean)) {
+			return -1;
+		}
+		return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+	}
+
+	static long allocated() {
+		return allocated(ManagementFactory.getThreadMXBean());
+	}
+
+	static long allocated(ThreadMXBean threads) {
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean hotSpotThreads = (com.sun.management.ThreadMXBean)threads;
+		if (!hotSpotThreads.isThreadAllocatedMemorySupported() || !hotSpotThreads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return hotSpotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	static long peakHeap() {
+		return peakHeap(ManagementFactory.getMemoryPoolMXBeans());
+	}
+
+	// Sum of the heap pools' peaks, which can be a little more than the heap ever held at once.
+	static long peakHeap(List<MemoryPoolMXBean> pools) {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	static void resetPeakHeap() {
+		resetPeakHeap(ManagementFactory.getMemoryPoolMXBeans());
+	}
+
+	static void resetPeakHeap(List<MemoryPoolMXBean> pools) {
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	// Unsupported stays unsupported.
+	static long add(long total, long start, long end) {
+		if (total < 0 || start < 0 || end < 0) {
+			return -1;
+		}
+		return total + end - start;
+	}
+
+	Measurement start(Phases phase) {
+		return new Measurement(phase);
+	}
+
+	void stop(Measurement measurement) {
+		long endNanos = System.nanoTime();
+		long endCpu = cpu();
+		long endProcessCpu = processCpu();
+		long endAllocated = allocated();
+		long peakHeap = peakHeap();
+		long endMillis = System.currentTimeMillis();
+		synchronized (this) {
+			Totals phase = totals.get(measurement.phase);
+			if (phase == null) {
+				phase = new Totals();
+				totals.put(measurement.phase, phase);
+			}
+			phase.count++;
+			phase.wall += endNanos - measurement.startNanos;
+			phase.cpu = add(phase.cpu, measurement.startCpu, endCpu);
+			phase.processCpu = add(phase.processCpu, measurement.startProcessCpu, endProcessCpu);
+			phase.allocated = add(phase.allocated, measurement.startAllocated, endAllocated);
+			phase.peakHeap = Math.max(phase.peakHeap, peakHeap);
+			phase.start = Math.min(phase.start, measurement.startMillis);
+			phase.end = Math.max(phase.end, endMillis);
+		}
+	}
+
+	// Null when not profiling, so callers don't have to check.
+	static Measurement start(Flags flags, Phases phase) {
+		return flags.profile() ? flags.profiler().start(phase) : null;
+	}
+
+	static void stop(Flags flags, Measurement measurement) {
+		if (measurement != null) {
+			flags.profiler().stop(measurement);
+		}
+	}
+
+	public synchronized boolean isEmpty() {
+		return totals.isEmpty();
+	}
+
+	// A header, then one line per phase measured so far, in phase order.
+	public synchronized List<String> lines() {
+		List<String> lines = new ArrayList<>();
+		lines.add(HEADER);
+		String separator = Separators.REFERENCE_SEPARATOR.value();
+		for (Map.Entry<Phases, Totals> entry : totals.entrySet()) {
+			Totals phase = entry.getValue();
+			lines.add(entry.getKey() + separator + phase.count + separator + phase.wall + separator + phase.cpu + separator + phase.processCpu + separator + phase.allocated + separator + phase.peakHeap
+					+ separator + phase.start + separator + phase.end);
+		}
+		return lines;
+	}
+
+	// Writes the measurements so far, then starts over (for example, for the next run when watching).
+	public void write(File file) throws Exception {
+		final List<String> lines;
+		synchronized (this) {
+			lines = lines();
+			totals.clear();
+			resetPeakHeap();
+		}
+		new Artifact(file) {
+			@Override
+			protected void write(PrintStream out) {
+				for (String line : lines) {
+					out.println(line);
+				}
+			}
+		}.call();
+	}
+}
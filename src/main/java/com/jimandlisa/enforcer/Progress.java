@@ -0,0 +1,99 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.PrintStream;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Reports how far a long-running loop has got, so the console (and CI watching it) can see the run is alive. Loops just count, which costs about as
+// much as an uncontended atomic increment, and a timer thread prints a line once per interval: how many items are done (of how many, if known), how
+// many references have been found, throughput, and time left. Nothing is printed for loops that finish within the first interval, or when there's no
+// console to print to (quiet, or embedded). Loops that run inside a library (pf-CDA's) print with nothing counted yet, which still shows it's alive.
+public class Progress implements AutoCloseable {
+
+	static final long INTERVAL_MILLIS = 10000;
+
+	private final PrintStream console;
+	private final String phase;
+	private final String unit;
+	private final long start = System.nanoTime();
+	private final AtomicLong total;
+	private final AtomicLong done = new AtomicLong();
+	private final AtomicLong references = new AtomicLong();
+	private final Timer timer;
+
+	Progress(final PrintStream console, final String phase, final String unit, final long total, final long intervalMillis) {
+		super();
+		this.console = console;
+		this.phase = phase;
+		this.unit = unit;
+		this.total = new AtomicLong(total);
+		if (console == null) {
+			this.timer = null;
+			return;
+		}
+		this.timer = new Timer("progress", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				report();
+			}
+		}, intervalMillis, intervalMillis);
+	}
+
+	// A total of 0 means unknown, at least so far (see grow).
+	static Progress start(Flags flags, String phase, String unit, long total) {
+		return new Progress(flags.progressConsole(), phase, unit, total, INTERVAL_MILLIS);
+	}
+
+	// For loops that find out how much there is to do as they go.
+	void grow(long more) {
+		total.addAndGet(more);
+	}
+
+	void step(long found) {
+		done.incrementAndGet();
+		references.addAndGet(found);
+	}
+
+	static String line(String phase, String unit, long done, long total, long references, long elapsedNanos) {
+		long seconds = TimeUnit.NANOSECONDS.toSeconds(elapsedNanos);
+		long perSecond = seconds == 0 ? done : done / seconds;
+		StringBuilder line = new StringBuilder(phase).append(": ").append(done);
+		if (total > 0) {
+			line.append(" of ").append(total).append(" ").append(unit).append(" (").append(done * 100 / total).append("%)");
+		} else {
+			line.append(" ").append(unit);
+		}
+		line.append(", ").append(references).append(" references, ").append(perSecond).append(" ").append(unit).append("/s, ").append(seconds).append("s elapsed");
+		if (total > done && perSecond > 0) {
+			line.append(", about ").append((total - done) / perSecond).append("s left");
+		}
+		return line.toString();
+	}
+
+	void report() {
+		console.println(line(phase, unit, done.get(), total.get(), references.get(), System.nanoTime() - start));
+	}
+
+	@Override
+	public void close() {
+		if (timer != null) {
+			timer.cancel();
+		}
+	}
+}
@@ -14,6 +14,8 @@
 package com.jimandlisa.enforcer;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 public class RapidIterationInputs extends Inputs {
 
@@ -21,12 +23,21 @@ public class RapidIterationInputs extends Inputs {
 		super(target, allReferences);
 	}
 
+	public RapidIterationInputs(List<File> targets, File allReferences) {
+		super(targets, allReferences);
+	}
+
 	public File allReferences() {
 		return data;
 	}
 
+	@Override
+	public List<File> dataFiles() {
+		return Arrays.asList(data);
+	}
+
 	@Override
 	public String toString() {
-		return "target=" + target + ", allReferences=" + data;
+		return targetsToString() + ", allReferences=" + data;
 	}
 }
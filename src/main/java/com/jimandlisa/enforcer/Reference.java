@@ -20,30 +20,16 @@ public class Reference implements Comparable<Reference> {
 	private final Type referringType;
 	private final Type referredToType;
 	private final ReferenceKinds kind;
-	private final int hashCode;
-	private final String baseToString;
 
 	static ReferenceKinds kind(final Type referringType, final Type referredToType) {
-		if (referringType.component().equals(referredToType.component())) {
-			return ReferenceKinds.INTRA_COMPONENT;
-		}
-		int referringDepth = referringType.component().layer().depth();
-		int referredToDepth = referredToType.component().layer().depth();
-		if (referringDepth == referredToDepth) {
-			return ReferenceKinds.INTER_COMPONENT_SAME_LAYER;
-		}
-		if (referringDepth < referredToDepth) {
-			return ReferenceKinds.INTER_COMPONENT_LOWER_TO_HIGHER;
-		}
-		return ReferenceKinds.INTER_COMPONENT_HIGHER_TO_LOWER;
+		return referringType.component().kind(referredToType.component());
 	}
 
+	// Created for every edge on every pass over the references, so holds nothing but the types and the kind. Strings are only built when asked for.
 	public Reference(final Type referringType, final Type referredToType) {
 		super();
 		this.referringType = ArgUtils.check(referringType, "referringType");
 		this.referredToType = ArgUtils.check(referredToType, "referredToType");
-		this.hashCode = referringType.hashCode() + referredToType.hashCode();
-		this.baseToString = referringType.name() + " -> " + referredToType.name();
 		this.kind = kind(referringType, referredToType);
 	}
 
@@ -61,7 +47,7 @@ public class Reference implements Comparable<Reference> {
 
 	@Override
 	public int hashCode() {
-		return hashCode;
+		return referringType.hashCode() + referredToType.hashCode();
 	}
 
 	@Override
@@ -75,17 +61,19 @@ public class Reference implements Comparable<Reference> {
 		if (!(obj instanceof Reference)) {
 			return false;
 		}
-		return baseToString.equals(((Reference)obj).baseToString);
+		return referringType.name().equals(((Reference)obj).referringType.name()) && referredToType.name().equals(((Reference)obj).referredToType.name());
 	}
 
+	// Same order as comparing "referringType -> referredToType" strings, since type names never contain characters that sort before the space.
 	@Override
 	public int compareTo(Reference other) {
-		return baseToString.compareTo(other.baseToString);
+		int comparison = referringType.name().compareTo(other.referringType.name());
+		return comparison != 0 ? comparison : referredToType.name().compareTo(other.referredToType.name());
 	}
 
 	@Override
 	public String toString() {
-		return baseToString + " [" + kind + "]";
+		return referringType.name() + " -> " + referredToType.name() + " [" + kind + "]";
 	}
 
 	public String parseableDescription(boolean includeClasses, boolean includeKind) {
@@ -20,6 +20,8 @@ public enum ReferenceKinds {
 	INTER_COMPONENT_SAME_LAYER(false), // Illegal inter-component reference in same layer.
 	INTER_COMPONENT_LOWER_TO_HIGHER(false); // Illegal inter-component reference from lower layer to higher layer.
 	
+	static final ReferenceKinds[] KINDS = values(); // By ordinal, without copying the array every time.
+
 	private final boolean isLegal;
 	
 	private ReferenceKinds(final boolean isLegal) {
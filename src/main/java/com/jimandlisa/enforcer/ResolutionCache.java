@@ -0,0 +1,129 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Resolved types for the most recently used inputs, keyed by a hash of the contents of the files they were resolved from and the flags that change
+// resolution, so resolving a binary that was already resolved is free, whatever it's named or wherever it lives. Concurrent requests for the same key
+// wait for one resolution instead of each doing their own. Failed resolutions aren't kept.
+public class ResolutionCache {
+
+	private final int capacity;
+	private final Map<String, FutureTask<ResolvedTypes>> entries;
+	private int hits = 0;
+	private int misses = 0;
+
+	public ResolutionCache(final int capacity) {
+		super();
+		if (capacity < 1) {
+			throw new EnforcerException("invalid cache size " + capacity + ", must be at least 1", Errors.INVALID_SERVER_ARG);
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, FutureTask<ResolvedTypes>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FutureTask<ResolvedTypes>> eldest) {
+				return size() > ResolutionCache.this.capacity;
+			}
+		};
+	}
+
+	static String key(Inputs inputs, Flags flags) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		digest.update(inputs.getClass().getSimpleName().getBytes(StandardCharsets.UTF_8));
+		if (flags instanceof AnalyzeBinaryFlags) {
+			AnalyzeBinaryFlags analyzeBinaryFlags = (AnalyzeBinaryFlags)flags;
+			digest.update(("preserveNestedTypes=" + analyzeBinaryFlags.preserveNestedTypes() + ", bcel=" + analyzeBinaryFlags.bcel()).getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] buffer = new byte[1 << 16];
+		for (File file : inputs.dataFiles()) {
+			digest.update(("\n" + file.length() + "\n").getBytes(StandardCharsets.UTF_8)); // So content can't shift from one file to the next.
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+					digest.update(buffer, 0, read);
+				}
+			}
+		}
+		return ClassFileCache.hex(digest.digest());
+	}
+
+	ResolvedTypes uncached(Inputs inputs, Flags flags) throws Exception {
+		Set<Problem> problems = new LinkedHashSet<>();
+		return new ResolvedTypes(EnforcerUtils.resolve(inputs, problems, flags), problems);
+	}
+
+	public ResolvedTypes resolve(final Inputs inputs, final Flags flags) throws Exception {
+		String key = key(inputs, flags);
+		FutureTask<ResolvedTypes> task;
+		boolean resolve = false;
+		synchronized (this) {
+			task = entries.get(key);
+			if (task == null) {
+				task = new FutureTask<>(new Callable<ResolvedTypes>() {
+					@Override
+					public ResolvedTypes call() throws Exception {
+						return uncached(inputs, flags);
+					}
+				});
+				entries.put(key, task);
+				resolve = true;
+				misses++;
+			} else {
+				hits++;
+			}
+		}
+		if (resolve) {
+			task.run();
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				if (entries.get(key) == task) {
+					entries.remove(key);
+				}
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw new EnforcerException("error resolving types: " + e.getCause(), Errors.SERVER_ERROR, e.getCause());
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized int hits() {
+		return hits;
+	}
+
+	public synchronized int misses() {
+		return misses;
+	}
+}
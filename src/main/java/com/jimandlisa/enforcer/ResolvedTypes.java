@@ -0,0 +1,88 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Resolved types and the problems found resolving them, kept between runs so each run can correlate fresh types without resolving again.
+// Correlation attaches types to components and to a graph, so types can't be reused as is.
+public class ResolvedTypes {
+
+	private final String[] names;
+	private final boolean[] synthesized;
+	private final int[][] references;
+	private final Set<Problem> problems;
+
+	public ResolvedTypes(final Map<String, Type> types, final Set<Problem> problems) {
+		super();
+		Map<String, Type> byName = new TreeMap<>(types);
+		for (Type type : types.values()) {
+			for (Type reference : type.references()) {
+				if (!byName.containsKey(reference.name())) {
+					byName.put(reference.name(), reference); // Same as TypeGraph.
+				}
+			}
+		}
+		List<Type> sorted = new ArrayList<>(byName.values());
+		Map<String, Integer> ids = new HashMap<>();
+		this.names = new String[sorted.size()];
+		this.synthesized = new boolean[sorted.size()];
+		for (int id = 0; id < names.length; id++) {
+			names[id] = sorted.get(id).name();
+			synthesized[id] = sorted.get(id).isSynthesized();
+			ids.put(names[id], id);
+		}
+		this.references = new int[names.length][];
+		for (int id = 0; id < names.length; id++) {
+			Set<Type> referredTo = sorted.get(id).references();
+			references[id] = new int[referredTo.size()];
+			int i = 0;
+			for (Type reference : referredTo) {
+				references[id][i++] = ids.get(reference.name());
+			}
+		}
+		this.problems = new LinkedHashSet<>(problems);
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public Map<String, Type> types() {
+		Map<String, Type> types = new HashMap<>();
+		Type[] byId = new Type[names.length];
+		for (int id = 0; id < names.length; id++) {
+			byId[id] = new Type(names[id], synthesized[id]);
+			types.put(names[id], byId[id]);
+		}
+		for (int id = 0; id < names.length; id++) {
+			for (int reference : references[id]) {
+				byId[id].addReferenceName(names[reference]);
+				byId[id].addReference(byId[reference]);
+			}
+		}
+		return types;
+	}
+
+	// A copy, since each run adds its own problems.
+	public Set<Problem> problems() {
+		return new LinkedHashSet<>(problems);
+	}
+}
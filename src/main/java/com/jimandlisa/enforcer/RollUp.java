@@ -24,35 +24,92 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+// Maps type names to components by longest matching package. Packages are kept in a trie of name segments, so a lookup costs time proportional to the
+// depth of the name, not the number of packages. Packages only match on segment boundaries, so com.foo matches com.foo.Bar but not com.foobar.Baz.
+// A package can also be the name of an outermost class, which then matches the class's nested types (com.foo.Bar matches com.foo.Bar$Baz).
 public class RollUp {
 
+	static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+		private String pkg = null;
+	}
+
 	private final List<String> packages = new ArrayList<>();
 	private final Map<String, Component> packagesToComponents = new HashMap<>();
 	private final Set<String> matchedPackages = new HashSet<>();
+	private final Node root = new Node();
+
+	static boolean isBoundary(char c) {
+		return c == '.' || c == '$';
+	}
+
+	void index(String pkg) {
+		Node node = root;
+		int start = 0;
+		for (int i = 0; i <= pkg.length(); i++) {
+			if (i == pkg.length() || isBoundary(pkg.charAt(i))) {
+				String segment = pkg.substring(start, i);
+				Node child = node.children.get(segment);
+				if (child == null) {
+					child = new Node();
+					node.children.put(segment, child);
+				}
+				node = child;
+				start = i + 1;
+			}
+		}
+		node.pkg = pkg;
+	}
 
 	public void add(Collection<Component> components) {
 		for (Component component : components) {
 			for (String pkg : component.packages()) {
 				packages.add(pkg);
 				packagesToComponents.put(pkg, component);
+				index(pkg);
 			}
 		}
 		Collections.sort(packages, new Comparator<String>() {
 			@Override
 			public int compare(String s1, String s2) {
-				return s2.compareTo(s1); // Reverse sort so longest matches are found first.
+				return s2.compareTo(s1); // Reverse sort, so dumps list more-specific packages first.
 			}
 		});
 	}
 
-	public Component get(String packageName) {
-		for (String pkg : packages) {
-			if (packageName.startsWith(pkg)) {
-				matchedPackages.add(pkg);
-				return packagesToComponents.get(pkg);
+	// Returns the longest package that matches, without recording it as used.
+	String match(String packageName) {
+		Node node = root;
+		String longest = null;
+		int start = 0;
+		for (int i = 0; i <= packageName.length(); i++) {
+			if (i == packageName.length() || isBoundary(packageName.charAt(i))) {
+				node = node.children.get(packageName.substring(start, i));
+				if (node == null) {
+					break;
+				}
+				if (node.pkg != null) {
+					longest = node.pkg;
+				}
+				start = i + 1;
 			}
 		}
-		return null;
+		return longest;
+	}
+
+	public Component get(String packageName) {
+		String longest = match(packageName);
+		if (longest == null) {
+			return null;
+		}
+		matchedPackages.add(longest);
+		return packagesToComponents.get(longest);
+	}
+
+	// For callers that already know which package a type matches, and only need validate to count it as used.
+	void markMatched(String pkg) {
+		matchedPackages.add(pkg);
 	}
 
 	public void validate(Set<Problem> problems) {
@@ -0,0 +1,151 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Collects lines and prints them sorted and without duplicates, same as Enforce.output. With a ceiling, at most about that many bytes of lines are
+// held in memory: when the ceiling is reached, the lines are sorted and spilled to a temporary file in the spill directory, and printing k-way
+// merges the spilled runs, dropping lines that appear in more than one run. A ceiling of 0 means no ceiling.
+public class SortedLines implements AutoCloseable {
+
+	// Rough heap cost of a String in a hash set: object header and fields, array header, UTF-16 chars, hash map entry.
+	static long cost(String line) {
+		return 96 + 2L * line.length();
+	}
+
+	// The head of one spilled run.
+	static class Run implements Comparable<Run> {
+
+		private final BufferedReader reader;
+		private String line;
+
+		Run(BufferedReader reader) throws Exception {
+			this.reader = reader;
+			this.line = reader.readLine();
+		}
+
+		boolean advance() throws Exception {
+			line = reader.readLine();
+			return line != null;
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			return line.compareTo(other.line);
+		}
+	}
+
+	private final File spillDirectory;
+	private final long ceiling;
+	private final Set<String> lines = new HashSet<>();
+	private final List<Path> runs = new ArrayList<>();
+	private long size = 0;
+
+	public SortedLines(final File spillDirectory, final long ceiling) {
+		super();
+		this.spillDirectory = spillDirectory;
+		this.ceiling = ceiling;
+	}
+
+	public void add(String line) throws Exception {
+		if (!lines.add(line)) {
+			return;
+		}
+		size += cost(line);
+		if (ceiling > 0 && size >= ceiling) {
+			spill();
+		}
+	}
+
+	public int runs() {
+		return runs.size();
+	}
+
+	void spill() throws Exception {
+		Path run = Files.createTempFile(spillDirectory.toPath(), "spill", ".tmp");
+		runs.add(run);
+		try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+			for (String line : sortedLines()) {
+				writer.write(line);
+				writer.newLine();
+			}
+		}
+		lines.clear();
+		size = 0;
+	}
+
+	List<String> sortedLines() {
+		return CollectionUtils.sort(new ArrayList<>(lines));
+	}
+
+	public void print(PrintStream out) throws Exception {
+		if (runs.isEmpty()) {
+			for (String line : sortedLines()) {
+				out.println(line);
+			}
+			lines.clear();
+			size = 0;
+			return;
+		}
+		if (!lines.isEmpty()) {
+			spill();
+		}
+		List<BufferedReader> readers = new ArrayList<>();
+		try {
+			PriorityQueue<Run> heads = new PriorityQueue<>();
+			for (Path run : runs) {
+				BufferedReader reader = Files.newBufferedReader(run, StandardCharsets.UTF_8);
+				readers.add(reader);
+				heads.add(new Run(reader));
+			}
+			String previous = null;
+			while (!heads.isEmpty()) {
+				Run head = heads.poll();
+				if (previous == null || !previous.equals(head.line)) {
+					out.println(head.line);
+					previous = head.line;
+				}
+				if (head.advance()) {
+					heads.add(head);
+				}
+			}
+		} finally {
+			for (BufferedReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+		lines.clear();
+	}
+}
@@ -0,0 +1,357 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.FieldGen;
+import org.apache.bcel.generic.ObjectType;
+
+// Generates a synthetic codebase of any size, for benchmarks and scale tests: a target (layers, domains, and components with packages and classes), the
+// all_references.txt the tool would write for it, and optionally a jar of class files whose references are the same. Components are spread across the
+// layers (and domains) round-robin, each package gets at least one type, and each component gets its classes in a package shared by all components.
+// Generation is seeded, so the same settings always produce the same codebase.
+//
+// Referring types are picked with probability skewed toward the first types by the fan-out skew: 1 is uniform, and larger values give a few types many
+// references and most types few, as in real code. Each reference is illegal with probability equal to the illegal rate (an illegal reference is to
+// another component in the same or a higher layer, and a legal one is within the component or to a lower layer), except that components with nothing
+// to refer to illegally only get legal references. Types that are in no reference don't appear in all_references.txt, so with too few references
+// for the number of types, enforcing the all_references.txt can report unused packages.
+public class SyntheticCodebase {
+
+	static final long SORT_CEILING = 256 * Enforce.MEGABYTE;
+	static final int MAX_ROUNDS_WITHOUT_PROGRESS = 10;
+
+	private final int types;
+	private final int references;
+	private final int components;
+	private int layers = 4;
+	private int domains = 0;
+	private int packagesPerComponent = 1;
+	private int classesPerComponent = 0;
+	private double fanOutSkew = 1.0;
+	private double illegalRate = 0.0;
+	private long seed = 42;
+
+	// Generated on first use, and regenerated if a setting changes.
+	private String[] typeNames = null;
+	private Component[] typeComponents = null;
+	private long[] edges = null; // Referring type times number of types, plus referred-to type, sorted.
+	private int illegalReferences = 0;
+
+	static void check(boolean valid, String message) {
+		if (!valid) {
+			throw new EnforcerException("invalid synthetic codebase: " + message, Errors.INVALID_SYNTHETIC_CODEBASE);
+		}
+	}
+
+	public SyntheticCodebase(final int types, final int references, final int components) {
+		super();
+		check(types > 0, "types must be positive");
+		check(components > 0, "components must be positive");
+		check(references >= 0 && references <= (long)types * (types - 1), "references must be between 0 and types * (types - 1)");
+		check(types >= components, "types must be at least one per package");
+		this.types = types;
+		this.references = references;
+		this.components = components;
+	}
+
+	void changed() {
+		check(types >= components * (packagesPerComponent + classesPerComponent), "types must be at least one per package and class");
+		typeNames = null;
+		typeComponents = null;
+		edges = null;
+		illegalReferences = 0;
+	}
+
+	public void setLayers(int layers) {
+		check(layers > 0, "layers must be positive");
+		this.layers = layers;
+		changed();
+	}
+
+	public void setDomains(int domains) {
+		check(domains >= 0, "domains must not be negative");
+		this.domains = domains;
+		changed();
+	}
+
+	public void setPackagesPerComponent(int packagesPerComponent) {
+		check(packagesPerComponent > 0, "packages per component must be positive");
+		this.packagesPerComponent = packagesPerComponent;
+		changed();
+	}
+
+	public void setClassesPerComponent(int classesPerComponent) {
+		check(classesPerComponent >= 0, "classes per component must not be negative");
+		this.classesPerComponent = classesPerComponent;
+		changed();
+	}
+
+	public void setFanOutSkew(double fanOutSkew) {
+		check(fanOutSkew >= 1.0, "fan-out skew must be at least 1");
+		this.fanOutSkew = fanOutSkew;
+		changed();
+	}
+
+	public void setIllegalRate(double illegalRate) {
+		check(illegalRate >= 0.0 && illegalRate <= 1.0, "illegal rate must be between 0 and 1");
+		this.illegalRate = illegalRate;
+		changed();
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+		changed();
+	}
+
+	static String packageName(int component, int pkg) {
+		return "com.synthetic.component" + component + ".package" + pkg;
+	}
+
+	static String className(int component, int clazz) {
+		return "com.synthetic.shared.Component" + component + "Class" + clazz;
+	}
+
+	Component[] components() {
+		Layer[] allLayers = new Layer[layers];
+		for (int i = 0; i < layers; i++) {
+			allLayers[i] = new Layer("Layer" + i, i, null);
+		}
+		Domain[] allDomains = new Domain[domains];
+		for (int i = 0; i < domains; i++) {
+			allDomains[i] = new Domain("Domain" + i, null);
+		}
+		Component[] all = new Component[components];
+		for (int i = 0; i < components; i++) {
+			all[i] = new Component("Component" + i, allLayers[i % layers], (domains == 0 ? null : allDomains[i % domains]), null);
+			for (int pkg = 0; pkg < packagesPerComponent; pkg++) {
+				all[i].packages().add(packageName(i, pkg));
+			}
+			for (int clazz = 0; clazz < classesPerComponent; clazz++) {
+				all[i].classes().add(className(i, clazz));
+			}
+		}
+		return all;
+	}
+
+	static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	void generate() {
+		if (edges != null) {
+			return;
+		}
+		Component[] all = components();
+		typeNames = new String[types];
+		typeComponents = new Component[types];
+		Map<Component, Integer> ids = new HashMap<>();
+		List<List<Integer>> componentTypes = new ArrayList<>();
+		for (int i = 0; i < components; i++) {
+			ids.put(all[i], i);
+			componentTypes.add(new ArrayList<Integer>());
+		}
+		int classTypes = components * classesPerComponent;
+		int packages = components * packagesPerComponent;
+		for (int type = 0; type < types; type++) {
+			int component;
+			if (type < types - classTypes) {
+				int pkg = type % packages;
+				component = pkg % components;
+				typeNames[type] = packageName(component, pkg / components) + ".Type" + type;
+			} else {
+				int clazz = type - (types - classTypes);
+				component = clazz % components;
+				typeNames[type] = className(component, clazz / components);
+			}
+			typeComponents[type] = all[component];
+			componentTypes.get(component).add(type);
+		}
+		int[][] typesByComponent = new int[components][];
+		int[][] legalTargets = new int[components][];
+		int[][] illegalTargets = new int[components][];
+		for (int i = 0; i < components; i++) {
+			typesByComponent[i] = toArray(componentTypes.get(i));
+			List<Integer> legal = new ArrayList<>();
+			List<Integer> illegal = new ArrayList<>();
+			for (int j = 0; j < components; j++) {
+				(Component.kind(all[i], all[j]).isLegal() ? legal : illegal).add(j);
+			}
+			legalTargets[i] = toArray(legal);
+			illegalTargets[i] = toArray(illegal);
+		}
+		Random random = new Random(seed);
+		long[] distinct = new long[0];
+		int roundsWithoutProgress = 0;
+		while (distinct.length < references && roundsWithoutProgress < MAX_ROUNDS_WITHOUT_PROGRESS) {
+			long[] round = Arrays.copyOf(distinct, references);
+			int size = distinct.length;
+			while (size < references) {
+				int referring = Math.min(types - 1, (int)(types * Math.pow(random.nextDouble(), fanOutSkew)));
+				int component = ids.get(typeComponents[referring]);
+				int[] targets = (random.nextDouble() < illegalRate && illegalTargets[component].length > 0) ? illegalTargets[component] : legalTargets[component];
+				int[] candidates = typesByComponent[targets[random.nextInt(targets.length)]];
+				int referredTo = candidates[random.nextInt(candidates.length)];
+				if (referredTo != referring) {
+					round[size] = (long)referring * types + referredTo;
+				}
+				size++;
+			}
+			Arrays.sort(round);
+			int unique = 0;
+			for (int i = 0; i < round.length; i++) {
+				if ((i == 0 || round[i] != round[i - 1]) && round[i] / types != round[i] % types) { // Zeroes fill in for self-references.
+					round[unique++] = round[i];
+				}
+			}
+			roundsWithoutProgress = (unique == distinct.length ? roundsWithoutProgress + 1 : 0);
+			distinct = Arrays.copyOf(round, unique);
+		}
+		edges = distinct;
+		for (long edge : edges) {
+			if (!Component.kind(typeComponents[referring(edge)], typeComponents[referredTo(edge)]).isLegal()) {
+				illegalReferences++;
+			}
+		}
+	}
+
+	int referring(long edge) {
+		return (int)(edge / types);
+	}
+
+	int referredTo(long edge) {
+		return (int)(edge % types);
+	}
+
+	// Can be fewer than asked for, if the components can't hold that many distinct references.
+	public int referenceCount() {
+		generate();
+		return edges.length;
+	}
+
+	public int illegalReferenceCount() {
+		generate();
+		return illegalReferences;
+	}
+
+	// New types every time, same as reading all_references.txt, because correlating types changes them.
+	public Map<String, Type> types() {
+		generate();
+		Map<String, Type> result = new HashMap<>();
+		for (long edge : edges) {
+			Type referringType = EnforcerUtils.get(typeNames[referring(edge)], result);
+			Type referredToType = EnforcerUtils.get(typeNames[referredTo(edge)], result);
+			referringType.addReferenceName(referredToType.name());
+			referringType.addReference(referredToType);
+		}
+		return result;
+	}
+
+	public void writeTarget(File file) throws Exception {
+		final Component[] all = components();
+		new Artifact(file) {
+			@Override
+			protected void write(PrintStream out) throws Exception {
+				out.println("# Synthetic target-state specification.");
+				out.println("layers:");
+				for (int i = 0; i < layers; i++) {
+					out.println("  - name: Layer" + i);
+					out.println("    depth: " + i);
+				}
+				if (domains > 0) {
+					out.println("domains:");
+					for (int i = 0; i < domains; i++) {
+						out.println("  - name: Domain" + i);
+					}
+				}
+				out.println("components:");
+				for (Component component : all) {
+					out.println("  - name: " + component.name());
+					out.println("    layer: " + component.layer().name());
+					if (component.domain() != null) {
+						out.println("    domain: " + component.domain().name());
+					}
+					out.println("    packages:");
+					for (String pkg : component.packages()) {
+						out.println("      - " + pkg);
+					}
+					if (!component.classes().isEmpty()) {
+						out.println("    classes:");
+						for (String clazz : component.classes()) {
+							out.println("      - " + clazz);
+						}
+					}
+				}
+			}
+		}.call();
+	}
+
+	static String half(String typeName, Component component) {
+		return typeName + Reference.SEPARATOR + component.name() + Reference.SEPARATOR + component.layer().name() + Reference.SEPARATOR + component.layer().depth() + Reference.SEPARATOR;
+	}
+
+	// Same lines, in the same order, as the all_references.txt the tool writes.
+	public void writeAllReferences(final File file) throws Exception {
+		generate();
+		try (final SortedLines lines = new SortedLines(file.getAbsoluteFile().getParentFile(), SORT_CEILING)) {
+			for (long edge : edges) {
+				Component referring = typeComponents[referring(edge)];
+				Component referredTo = typeComponents[referredTo(edge)];
+				ReferenceKinds kind = Component.kind(referring, referredTo);
+				String line = half(typeNames[referring(edge)], referring) + half(typeNames[referredTo(edge)], referredTo);
+				lines.add(line + kind + Reference.SEPARATOR + (kind.isLegal() ? "LEGAL" : "ILLEGAL"));
+			}
+			new Artifact(file) {
+				@Override
+				protected void write(PrintStream out) throws Exception {
+					lines.print(out);
+				}
+			}.call();
+		}
+	}
+
+	// One class per type, referring to the types it refers to with fields. Types in no reference are included, same as in a real binary.
+	public void writeJar(File file) throws Exception {
+		generate();
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			int edge = 0;
+			for (int type = 0; type < types; type++) {
+				ClassGen classGen = new ClassGen(typeNames[type], "java.lang.Object", "<generated>", Const.ACC_PUBLIC | Const.ACC_SUPER, null);
+				for (; edge < edges.length && referring(edges[edge]) == type; edge++) {
+					classGen.addField(new FieldGen(Const.ACC_PRIVATE, new ObjectType(typeNames[referredTo(edges[edge])]), "field" + edge, classGen.getConstantPool()).getField());
+				}
+				out.putNextEntry(new JarEntry(typeNames[type].replace('.', '/') + ".class"));
+				out.write(classGen.getJavaClass().getBytes());
+				out.closeEntry();
+			}
+		}
+	}
+}
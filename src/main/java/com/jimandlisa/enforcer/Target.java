@@ -13,8 +13,11 @@
 
 package com.jimandlisa.enforcer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class Target {
 
@@ -49,4 +52,19 @@ public class Target {
 	public void add(Component component) {
 		components().put(component.name(), component);
 	}
+
+	// Numbers the components densely, in name order, and works out the kind of reference between every pair of them once, so correlation
+	// looks kinds up instead of comparing components and layer depths for every reference.
+	void numberComponents() {
+		List<Component> sorted = new ArrayList<>(new TreeMap<>(components).values());
+		byte[][] kinds = new byte[sorted.size()][sorted.size()];
+		for (int referring = 0; referring < sorted.size(); referring++) {
+			for (int referredTo = 0; referredTo < sorted.size(); referredTo++) {
+				kinds[referring][referredTo] = (byte) Component.kind(sorted.get(referring), sorted.get(referredTo)).ordinal();
+			}
+		}
+		for (int id = 0; id < sorted.size(); id++) {
+			sorted.get(id).number(id, kinds);
+		}
+	}
 }
@@ -190,6 +190,7 @@ public class TargetUtils {
 			}
 			target.add(component);
 		}
+		target.numberComponents();
 		return target;
 	}
 	
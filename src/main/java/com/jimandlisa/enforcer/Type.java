@@ -20,9 +20,11 @@ public class Type implements Comparable<Type> {
 
 	private final String name;
 	private final boolean isSynthesized;
-	private final Set<String> referenceNames = new HashSet<>();
-	private final Set<Type> references = new HashSet<>();
+	private Set<String> referenceNames = new HashSet<>();
+	private Set<Type> references = new HashSet<>();
 	private Component component = null;
+	private TypeGraph graph = null;
+	private int id = -1;
 
 	public Type(final String name, final boolean isSynthesized) {
 		super();
@@ -43,20 +45,34 @@ public class Type implements Comparable<Type> {
 	}
 
 	public Set<String> referenceNames() {
+		if (graph != null) {
+			return graph.referenceNames(id);
+		}
 		return referenceNames;
 	}
 
+	void checkNotInGraph() {
+		if (graph != null) {
+			throw new EnforcerException("type " + name + " is already in graph, references can't be added", Errors.TYPE_ALREADY_IN_GRAPH);
+		}
+	}
+
 	public void addReferenceName(String referenceName) {
+		checkNotInGraph();
 		if (!referenceNames.add(referenceName)) {
 			throw new EnforcerException("duplicate reference name " + referenceName, Errors.DUPLICATE_REFERENCE_NAME);
 		}
 	}
 
 	public Set<Type> references() {
+		if (graph != null) {
+			return graph.references(id);
+		}
 		return references;
 	}
 	
 	public void addReference(Type reference) {
+		checkNotInGraph();
 		if (!references.add(reference)) {
 			throw new EnforcerException("duplicate reference " + reference.name(), Errors.DUPLICATE_REFERENCE);
 		}
@@ -73,6 +89,22 @@ public class Type implements Comparable<Type> {
 		return component;
 	}
 
+	// Numbered before any type is attached, so the graph can copy in references by id rather than by name.
+	void number(int id) {
+		this.id = id;
+	}
+
+	// From here on, references are read from the graph, and are no longer held here.
+	void attach(TypeGraph graph) {
+		this.graph = graph;
+		this.referenceNames = null;
+		this.references = null;
+	}
+
+	int id() {
+		return id;
+	}
+
 	@Override
 	public int hashCode() {
 		return name.hashCode();
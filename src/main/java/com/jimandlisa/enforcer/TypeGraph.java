@@ -0,0 +1,246 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Compact representation of the references among types, for binaries with tens of thousands of types and millions of references. Each type is
+// numbered once with an int id, in name order, and the references are held in compressed-sparse-row arrays: the ids referred to by type i are
+// targets[offsets[i]] through targets[offsets[i + 1] - 1], sorted. Once a graph is built, types and components read their references from it.
+// Each type's own reference sets are released as soon as they're copied in, and the targets grow as they are, so the graph never holds the sets
+// and the arrays in full at the same time.
+// Iterating references creates them on the fly, in the same order as sorting them, so nothing per reference has to be kept.
+public class TypeGraph {
+
+	private final Type[] types;
+	private final int[] offsets;
+	private final int[] targets;
+
+	public TypeGraph(final Map<String, Type> typesByName) {
+		super();
+		List<Type> all = new ArrayList<>(typesByName.values());
+		Set<String> outside = new HashSet<>();
+		for (Type type : typesByName.values()) {
+			for (Type reference : type.references()) {
+				if (!typesByName.containsKey(reference.name()) && outside.add(reference.name())) {
+					all.add(reference); // Shouldn't happen after resolution, but better to include it than to lose the reference.
+				}
+			}
+		}
+		this.types = all.toArray(new Type[all.size()]);
+		Arrays.sort(types);
+		this.offsets = new int[types.length + 1];
+		int count = 0;
+		for (int id = 0; id < types.length; id++) {
+			types[id].number(id);
+			offsets[id] = count;
+			count += types[id].references().size();
+		}
+		offsets[types.length] = count;
+		int[] grown = new int[Math.min(count, types.length)];
+		for (int id = 0; id < types.length; id++) {
+			if (offsets[id + 1] > grown.length) {
+				grown = Arrays.copyOf(grown, Math.min(count, Math.max(offsets[id + 1], grown.length * 2)));
+			}
+			int edge = offsets[id];
+			for (Type reference : types[id].references()) {
+				grown[edge++] = reference.id();
+			}
+			Arrays.sort(grown, offsets[id], offsets[id + 1]);
+			types[id].attach(this);
+		}
+		this.targets = grown; // Capped at count as it grows, so it ends up exactly full.
+		for (Type type : types) {
+			if (type.component() != null) {
+				type.component().attach(this);
+			}
+		}
+	}
+
+	public int size() {
+		return types.length;
+	}
+
+	public int referenceCount() {
+		return targets.length;
+	}
+
+	public Type type(int id) {
+		return types[id];
+	}
+
+	// Returns -1 if there's no such type. Types are in name order, so this is a binary search rather than a map kept alongside them.
+	public int id(String name) {
+		int low = 0;
+		int high = types.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = types[middle].name().compareTo(name);
+			if (comparison == 0) {
+				return middle;
+			}
+			if (comparison < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return -1;
+	}
+
+	int firstReference(int id) {
+		return offsets[id];
+	}
+
+	int endReference(int id) {
+		return offsets[id + 1];
+	}
+
+	int target(int reference) {
+		return targets[reference];
+	}
+
+	// Views over the type's range of targets, rather than copies, so reading a type's references doesn't allocate a set each time.
+	Set<Type> references(final int id) {
+		return new AbstractSet<Type>() {
+			@Override
+			public int size() {
+				return offsets[id + 1] - offsets[id];
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof Type && refers(id, ((Type)o).name());
+			}
+
+			@Override
+			public Iterator<Type> iterator() {
+				return new RangeIterator<Type>(id) {
+					@Override
+					Type get(int target) {
+						return types[target];
+					}
+				};
+			}
+		};
+	}
+
+	Set<String> referenceNames(final int id) {
+		return new AbstractSet<String>() {
+			@Override
+			public int size() {
+				return offsets[id + 1] - offsets[id];
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && refers(id, (String)o);
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new RangeIterator<String>(id) {
+					@Override
+					String get(int target) {
+						return types[target].name();
+					}
+				};
+			}
+		};
+	}
+
+	// Each type's targets are sorted, so membership is a binary search of its range.
+	private boolean refers(int id, String name) {
+		int target = id(name);
+		return target >= 0 && Arrays.binarySearch(targets, offsets[id], offsets[id + 1], target) >= 0;
+	}
+
+	private abstract class RangeIterator<T> implements Iterator<T> {
+
+		private int reference;
+		private final int end;
+
+		RangeIterator(final int id) {
+			this.reference = offsets[id];
+			this.end = offsets[id + 1];
+		}
+
+		abstract T get(int target);
+
+		@Override
+		public boolean hasNext() {
+			return reference < end;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return get(targets[reference++]);
+		}
+	}
+
+	Set<Reference> references(Component component) {
+		Set<Reference> references = new LinkedHashSet<>();
+		for (Type type : component.types().values()) {
+			int id = type.id();
+			for (int reference = offsets[id]; reference < offsets[id + 1]; reference++) {
+				references.add(new Reference(type, types[targets[reference]]));
+			}
+		}
+		return Collections.unmodifiableSet(references);
+	}
+
+	// All references, sorted by referring type name and then referred-to type name, which is the same order as sorting Reference objects.
+	// Every type must already be correlated to a component.
+	public Iterable<Reference> references() {
+		return new Iterable<Reference>() {
+			@Override
+			public Iterator<Reference> iterator() {
+				return new Iterator<Reference>() {
+
+					private int id = 0;
+					private int reference = 0;
+
+					@Override
+					public boolean hasNext() {
+						return reference < targets.length;
+					}
+
+					@Override
+					public Reference next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						while (reference >= offsets[id + 1]) {
+							id++;
+						}
+						return new Reference(types[id], types[targets[reference++]]);
+					}
+				};
+			}
+		};
+	}
+}
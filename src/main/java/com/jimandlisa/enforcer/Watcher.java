@@ -0,0 +1,164 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Keeps enforcing until closed (or killed): enforces once, then again whenever the target or another input file changes. References are resolved once
+// and kept, so a change to just the target costs only correlation and output, in a JVM that's already warmed up. A change to any other input file
+// resolves again. Fatal errors are reported instead of thrown, so the watch keeps going until the target is fixed.
+public class Watcher implements AutoCloseable {
+
+	static final long SETTLE_MILLIS = 100; // Editors often save in several steps, so changes are collected until they settle.
+
+	private final Inputs inputs;
+	private final Outputs outputs;
+	private final PrintStream console;
+	private final Flags flags;
+	private final WatchService service;
+	private final Map<Path, Set<Path>> directories = new HashMap<>();
+	private final Path target;
+	private ResolvedTypes resolved = null;
+	private CorrelationSnapshot snapshot = null;
+
+	public Watcher(final Inputs inputs, final Outputs outputs, final PrintStream console, final Flags flags) throws IOException {
+		super();
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.console = console;
+		this.flags = flags;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.target = inputs.target().getAbsoluteFile().toPath();
+		// Directories are watched, not files, because editors often replace a file instead of changing it.
+		for (File file : files(inputs)) {
+			Path path = file.getAbsoluteFile().toPath();
+			Set<Path> names = directories.get(path.getParent());
+			if (names == null) {
+				names = new HashSet<>();
+				directories.put(path.getParent(), names);
+				path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+			names.add(path.getFileName());
+		}
+	}
+
+	static List<File> files(Inputs inputs) {
+		List<File> files = new ArrayList<>();
+		files.add(inputs.target());
+		files.addAll(inputs.dataFiles());
+		return files;
+	}
+
+	boolean enforce(boolean resolve) {
+		long start = System.nanoTime();
+		try {
+			if (resolve) {
+				resolved = null;
+				snapshot = null;
+			}
+			Target parsed = Enforce.parse(inputs.target(), flags);
+			if (resolved == null && Enforce.incremental(flags)) {
+				snapshot = CorrelationSnapshot.read(outputs.correlationSnapshot(), ((RapidIterationInputs)inputs).allReferences());
+				if (snapshot != null) {
+					resolved = new ResolvedTypes(snapshot.types(), new LinkedHashSet<Problem>());
+				}
+			}
+			if (resolved == null) {
+				Set<Problem> problems = new LinkedHashSet<>();
+				resolved = new ResolvedTypes(EnforcerUtils.resolve(inputs, problems, flags), problems);
+			}
+			snapshot = Enforce.write(Enforce.correlate(parsed, resolved.types(), snapshot, resolved.problems(), flags), inputs, outputs, console, flags);
+			console.println("Enforced in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+			return true;
+		} catch (Exception e) {
+			console.println(e.getMessage()); // The previous resolution and snapshot are still good, so the next change starts from them.
+			return false;
+		} finally {
+			writeProfile();
+		}
+	}
+
+	// Each run gets its own profile.
+	void writeProfile() {
+		try {
+			Enforce.writeProfile(outputs, flags);
+		} catch (Exception e) {
+			console.println(e.getMessage());
+		}
+	}
+
+	// Returns when closed.
+	public void watch() throws Exception {
+		enforce(false);
+		boolean announce = true;
+		try {
+			while (true) {
+				if (announce) {
+					console.println("Watching " + files(inputs) + " for changes...");
+					announce = false;
+				}
+				boolean changed = false;
+				boolean resolve = false;
+				WatchKey key = service.take();
+				while (key != null) {
+					Path directory = (Path)key.watchable();
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							changed = true;
+							resolve = true; // Don't know what changed.
+							continue;
+						}
+						Path name = (Path)event.context();
+						if (directories.get(directory).contains(name)) {
+							changed = true;
+							resolve = resolve || !directory.resolve(name).equals(target);
+						}
+					}
+					key.reset();
+					key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if (changed) {
+					enforce(resolve);
+					announce = true;
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+}
@@ -0,0 +1,69 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Map;
+
+// Compares the line-by-line reader with the memory-mapped parallel parser. Usage: /output/directory [references] [rounds].
+public class AllReferencesBenchmark {
+
+	// Like real output, each type's references are on consecutive lines. Every type refers to the next few types, so there are no duplicates.
+	static File allReferences(File directory, int count) throws Exception {
+		File file = new File(FileUtils.checkWriteDir(directory), "benchmark_" + count + "_" + Outputs.ALL_REFERENCES_BASE_NAME + ".txt");
+		int perType = 8;
+		int typeCount = Math.max(perType + 1, count / perType + 1);
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+			int written = 0;
+			for (int referring = 0; written < count; referring++) {
+				for (int i = 1; i <= perType && written < count; i++) {
+					int referredTo = (referring + i) % typeCount;
+					String line = "com.example.app" + referring % 50 + ".Type" + referring + "!Component" + referring % 20 + "!Layer" + referring % 4 + "!" + referring % 4 + "!com.example.app" + referredTo % 50
+							+ ".Type" + referredTo + "!Component" + referredTo % 20 + "!Layer" + referredTo % 4 + "!" + referredTo % 4 + "!INTER_COMPONENT_SAME_LAYER!LEGAL";
+					out.write(line);
+					out.newLine();
+					written++;
+				}
+			}
+		}
+		return file;
+	}
+
+	static long timeReader(File file) throws Exception {
+		long start = System.nanoTime();
+		Map<String, Type> types = EnforcerUtils.typesFromAllReferences(file);
+		return (System.nanoTime() - start) + (types.size() < 0 ? 1 : 0); // Use the result so the call can't be optimized away.
+	}
+
+	static long timeMapped(File file) throws Exception {
+		long start = System.nanoTime();
+		Map<String, Type> types = AllReferencesParser.typesFromAllReferences(file);
+		return (System.nanoTime() - start) + (types.size() < 0 ? 1 : 0);
+	}
+
+	public static void main(String[] args) throws Exception {
+		File directory = new File(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		File file = allReferences(directory, count);
+		System.out.println("references=" + count + ", bytes=" + file.length());
+		for (int round = 1; round <= rounds; round++) {
+			long reader = timeReader(file);
+			long mapped = timeMapped(file);
+			System.out.println("round " + round + ": reader=" + reader / 1000000 + "ms, mapped=" + mapped / 1000000 + "ms");
+		}
+	}
+}
@@ -0,0 +1,131 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllReferencesBinaryTest {
+
+	private static void assertSame(Map<String, Type> expected, Map<String, Type> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Type type : expected.values()) {
+			assertEquals(type.referenceNames(), actual.get(type.name()).referenceNames());
+		}
+	}
+
+	private static void assertMalformed(File file, byte[] bytes, String detail) throws Exception {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(bytes);
+		}
+		try {
+			AllReferencesBinary.read(file);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(detail));
+			assertEquals(Errors.MALFORMED_ALL_REFERENCES_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testMisc() {
+		new AllReferencesBinary();
+		assertTrue(AllReferencesBinary.isBinary(new File("all_references.bin")));
+		assertTrue(!AllReferencesBinary.isBinary(new File("all_references.txt")));
+	}
+
+	@Test
+	public void testVarint() throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int value : new int[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE }) {
+			AllReferencesBinary.writeVarint(value, baos);
+		}
+		assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5, baos.size());
+		File file = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), "varints.bin");
+		file.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			baos.writeTo(out);
+		}
+		try (java.io.InputStream in = new java.io.FileInputStream(file)) {
+			AllReferencesBinary.Reader reader = new AllReferencesBinary.Reader(file, in);
+			for (int value : new int[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE }) {
+				assertEquals(value, reader.readVarint());
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Map<String, Type> fromText = EnforcerUtils.typesFromAllReferences(TestUtils.sampleAllReferences());
+		Map<String, Type> copy = EnforcerUtils.typesFromAllReferences(TestUtils.sampleAllReferences());
+		EnforcerUtils.get("com.jimandlisa.Unreferenced", copy); // Not in any reference, so not written.
+		File file = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), "all_references.bin");
+		file.getParentFile().mkdirs();
+		AllReferencesBinary.write(new TypeGraph(copy), file);
+		assertSame(fromText, AllReferencesBinary.read(file));
+		assertTrue(file.length() < TestUtils.sampleAllReferences().length());
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		File file = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), "bad.bin");
+		file.getParentFile().mkdirs();
+		assertMalformed(file, new byte[0], "unexpected end of file");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'X' }, "not an all-references file");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 2 }, "unsupported version 2");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 1, 3, 'a' }, "unexpected end of file");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 1, 1, 'a', 1, 0, 1, 1 }, "type id out of range");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 2, 1, 'a', 1, 'b', 1, 0, 2, 1, 0 }, "type id not increasing");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 2, 1, 'a', 1, 'b', 1, 0, 2, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }, "type id out of range"); // Delta overflows.
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 2, 1, 'a', 1, 'b', 2, 0, 1, 1, 0, 1, 1 }, "type id not increasing");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF }, "varint too long");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F }, "negative value");
+		assertMalformed(file, new byte[] { 'A', 'E', 'R', 'F', 1, 0, 0, 0 }, "unexpected data after references");
+	}
+
+	@Test
+	public void testRapidIteration() throws Exception {
+		String subdir = TestUtils.uniqueSubdir();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleAllReferences().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath() }, console);
+		}
+		Outputs fromText = TestUtils.outputs(subdir);
+		assertTrue(fromText.allReferencesBinary().exists());
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), fromText.allReferencesBinary().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath() }, console);
+			assertTrue(baos.toString(StandardCharsets.UTF_8.name()).contains("would be overwritten"));
+		}
+		String binarySubdir = TestUtils.uniqueSubdir();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), fromText.allReferencesBinary().getAbsolutePath(), TestUtils.targetDir(binarySubdir).getAbsolutePath() }, console);
+		}
+		Outputs fromBinary = TestUtils.outputs(binarySubdir);
+		for (File[] pair : new File[][] { { fromText.allReferences(), fromBinary.allReferences() }, { fromText.allReferencesBinary(), fromBinary.allReferencesBinary() },
+				{ fromText.allComponentReferences(), fromBinary.allComponentReferences() }, { fromText.illegalReferences(), fromBinary.illegalReferences() } }) {
+			assertTrue(pair[0].getName(), Arrays.equals(Files.readAllBytes(pair[0].toPath()), Files.readAllBytes(pair[1].toPath())));
+		}
+	}
+}
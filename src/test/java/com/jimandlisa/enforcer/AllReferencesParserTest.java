@@ -0,0 +1,114 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllReferencesParserTest {
+
+	private static void assertSame(Map<String, Type> expected, Map<String, Type> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Type type : expected.values()) {
+			assertEquals(type.name(), type.referenceNames(), actual.get(type.name()).referenceNames());
+			assertEquals(type.name(), type.references().size(), actual.get(type.name()).references().size());
+		}
+	}
+
+	private static File write(String name, byte[] content) throws Exception {
+		File file = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), name);
+		file.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+		return file;
+	}
+
+	private static void assertMalformed(File file, int chunkSize, String detail) throws Exception {
+		try {
+			AllReferencesParser.typesFromAllReferences(file, chunkSize);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(detail));
+			assertEquals(Errors.MALFORMED_ALL_REFERENCES_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testMisc() {
+		new AllReferencesParser();
+	}
+
+	@Test
+	public void testMatchesReader() throws Exception {
+		File sample = TestUtils.sampleAllReferences();
+		Map<String, Type> expected = EnforcerUtils.typesFromAllReferences(sample);
+		assertSame(expected, AllReferencesParser.typesFromAllReferences(sample));
+		for (int chunkSize : new int[] { 1, 2, 7, 64, 100, 1000 }) {
+			assertSame(expected, AllReferencesParser.typesFromAllReferences(sample, chunkSize));
+		}
+		File generated = AllReferencesBenchmark.allReferences(TestUtils.targetDir(TestUtils.uniqueSubdir()), 5000);
+		expected = EnforcerUtils.typesFromAllReferences(generated);
+		assertSame(expected, AllReferencesParser.typesFromAllReferences(generated));
+		assertSame(expected, AllReferencesParser.typesFromAllReferences(generated, 4096));
+	}
+
+	@Test
+	public void testLineEndings() throws Exception {
+		String lines = "a.A!C!L!0!b.B!C!L!0!LEGAL\r\nb.B!C!L!0!c.C\r\nc.C!C!L!0!a.A!C!L!0";
+		Map<String, Type> types = AllReferencesParser.typesFromAllReferences(write("endings.txt", lines.getBytes(StandardCharsets.UTF_8)), 5);
+		assertEquals(3, types.size());
+		assertEquals(Arrays.asList("b.B"), Arrays.asList(types.get("a.A").referenceNames().toArray()));
+		assertEquals(Arrays.asList("c.C"), Arrays.asList(types.get("b.B").referenceNames().toArray()));
+		assertEquals(Arrays.asList("a.A"), Arrays.asList(types.get("c.C").referenceNames().toArray()));
+		assertTrue(AllReferencesParser.typesFromAllReferences(write("empty.txt", new byte[0])).isEmpty());
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		assertMalformed(write("short.txt", "a.A!C!L!0!b.B\na.A!C!L\n".getBytes(StandardCharsets.UTF_8)), 100, "at byte 14: expected at least 5 segments");
+		assertMalformed(write("blank.txt", "\n".getBytes(StandardCharsets.UTF_8)), 100, "at byte 0");
+		byte[] longLine = new byte[AllReferencesParser.MAX_LINE_LENGTH + (2 << 16)];
+		Arrays.fill(longLine, (byte) 'x');
+		longLine[longLine.length - 1] = '\n';
+		assertMalformed(write("long.txt", longLine), 1 << 16, "line longer than");
+		try {
+			AllReferencesParser.typesFromAllReferences(write("duplicate.txt", "a.A!C!L!0!b.B\na.A!C!L!0!b.B\n".getBytes(StandardCharsets.UTF_8)), 3);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.DUPLICATE_REFERENCE_NAME, e.error());
+		}
+	}
+
+	@Test
+	public void testLongLastLine() throws Exception {
+		StringBuilder name = new StringBuilder("b.");
+		while (name.length() <= AllReferencesParser.MAX_LINE_LENGTH) {
+			name.append('B');
+		}
+		String lines = "a.A!C!L!0!c.C\na.A!C!L!0!" + name + "\n";
+		Map<String, Type> types = AllReferencesParser.typesFromAllReferences(write("longlast.txt", lines.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(3, types.size());
+		assertTrue(types.get("a.A").referenceNames().contains(name.toString()));
+	}
+}
@@ -0,0 +1,146 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArtifactTest {
+
+	private static Artifact artifact(File file, final String content) {
+		return new Artifact(file) {
+			@Override
+			protected void write(PrintStream out) {
+				out.print(content);
+			}
+		};
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		Artifact.write(new ArrayList<Artifact>());
+		File dir = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		dir.mkdirs();
+		List<Artifact> artifacts = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			artifacts.add(artifact(new File(dir, "artifact" + i + ".txt"), "content " + i + "\n"));
+		}
+		Artifact.write(artifacts);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(new File(dir, "artifact" + i + ".txt"), artifacts.get(i).file());
+			assertEquals("content " + i + "\n", new String(Files.readAllBytes(artifacts.get(i).file().toPath()), StandardCharsets.UTF_8));
+		}
+		Artifact.write(Arrays.asList(artifact(artifacts.get(0).file(), "x"))); // Overwrites, and truncates.
+		assertEquals("x", new String(Files.readAllBytes(artifacts.get(0).file().toPath()), StandardCharsets.UTF_8));
+		assertTrue(!Artifact.temporary(artifacts.get(0).file()).exists());
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		File dir = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		dir.mkdirs();
+		try {
+			Artifact.write(Arrays.asList(artifact(new File(dir, "ok.txt"), "ok"), artifact(new File(new File(dir, "nosuchdir"), "bad.txt"), "bad")));
+			Assert.fail();
+		} catch (NoSuchFileException e) {
+			assertTrue(e.getMessage().contains("nosuchdir"));
+		}
+		try {
+			Artifact.write(Arrays.<Artifact>asList(new Artifact(new File(dir, "enforcer.txt")) {
+				@Override
+				protected void write(PrintStream out) {
+					throw new EnforcerException("failed", Errors.CANNOT_WRITE_FILE);
+				}
+			}));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		File previous = new File(dir, "previous.txt");
+		Artifact.write(Arrays.asList(artifact(previous, "previous")));
+		try {
+			Artifact.write(Arrays.<Artifact>asList(new Artifact(previous) {
+				@Override
+				protected void write(PrintStream out) {
+					out.print("partial");
+					out.flush();
+					throw new EnforcerException("failed", Errors.CANNOT_WRITE_FILE);
+				}
+			}));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertEquals("previous", new String(Files.readAllBytes(previous.toPath()), StandardCharsets.UTF_8)); // Failed writes leave the previous output alone.
+		assertTrue(!Artifact.temporary(previous).exists());
+		try {
+			Artifact.write(Arrays.<Artifact>asList(new Artifact(new File(dir, "error.txt")) {
+				@Override
+				protected void write(PrintStream out) {
+					throw new StackOverflowError();
+				}
+			}));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("error writing outputs"));
+			assertEquals(Errors.CANNOT_WRITE_FILE, e.error());
+		}
+		try {
+			Artifact.write(Arrays.<Artifact>asList(new Artifact(new File(dir, "checkError.txt")) {
+				@Override
+				protected void write(PrintStream out) {
+					out.close();
+					out.print("closed");
+				}
+			}));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("error writing"));
+			assertEquals(Errors.CANNOT_WRITE_FILE, e.error());
+		}
+	}
+
+	// Moving across file systems can't be atomic, so it falls back to a plain replace. Only exercised where there's a second file system to move
+	// from, which on Linux there usually is (/dev/shm).
+	@Test
+	public void testMoveAcrossFileSystems() throws Exception {
+		File dir = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		dir.mkdirs();
+		for (String candidate : new String[] { System.getProperty("java.io.tmpdir"), "/dev/shm" }) {
+			File other = new File(candidate);
+			if (!other.isDirectory() || Files.getFileStore(other.toPath()).equals(Files.getFileStore(dir.toPath()))) {
+				continue;
+			}
+			File from = File.createTempFile("artifact", ".tmp", other);
+			Files.write(from.toPath(), "moved".getBytes(StandardCharsets.UTF_8));
+			File to = new File(dir, "moved.txt");
+			Files.write(to.toPath(), "previous".getBytes(StandardCharsets.UTF_8));
+			Artifact.move(from, to);
+			assertEquals("moved", new String(Files.readAllBytes(to.toPath()), StandardCharsets.UTF_8));
+			assertTrue(!from.exists());
+		}
+	}
+}
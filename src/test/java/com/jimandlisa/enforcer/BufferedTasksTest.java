@@ -0,0 +1,88 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferedTasksTest {
+
+	private static BufferedTasks tasks(final Exception... failures) {
+		return new BufferedTasks(failures.length, "items") {
+			@Override
+			String heading(int index) {
+				return "Item " + index + ":";
+			}
+
+			@Override
+			void task(int index, PrintStream out) throws Exception {
+				out.println("output " + index);
+				if (failures[index] != null) {
+					throw failures[index];
+				}
+			}
+		};
+	}
+
+	private static String run(BufferedTasks tasks, Exception expected) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Exception failure = tasks.run(2, console);
+			if (expected == null) {
+				assertNull(failure);
+			} else {
+				assertTrue(failure == expected || failure.getCause() == expected);
+			}
+			return baos.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	@Test
+	public void doTest() throws Exception {
+		String nl = System.lineSeparator();
+		assertEquals("Item 0:" + nl + "output 0" + nl + "Item 1:" + nl + "output 1" + nl + "Item 2:" + nl + "output 2" + nl, run(tasks(null, null, null), null));
+		// Failures don't stop the other items, and are printed after their item's output.
+		EnforcerException first = new EnforcerException("first", Errors.ILLEGAL_REFERENCE);
+		BufferedTasks tasks = tasks(null, first, new EnforcerException("second", Errors.CANNOT_READ_FILE));
+		String console = run(tasks, first);
+		assertEquals("Item 0:" + nl + "output 0" + nl + "Item 1:" + nl + "output 1" + nl + "first" + nl + "Item 2:" + nl + "output 2" + nl + "second" + nl, console);
+		Exception failure = tasks.run(1, new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()));
+		assertEquals("2 of 3 items failed, first with: first", failure.getMessage());
+		assertEquals(Errors.ILLEGAL_REFERENCE, ((EnforcerException)failure).error());
+		assertEquals(first, failure.getCause());
+		// Failures other than the enforcer's are returned as is.
+		IOException io = new IOException("io");
+		run(tasks(io, new EnforcerException("second", Errors.CANNOT_READ_FILE)), io);
+		assertNull(BufferedTasks.failure(null, 0, 1, "items"));
+	}
+
+	@Test
+	public void testInterrupted() throws Exception {
+		Thread.currentThread().interrupt();
+		try {
+			run(tasks(null, null), null);
+			Assert.fail();
+		} catch (InterruptedException e) {
+			assertTrue(!Thread.currentThread().isInterrupted());
+		}
+	}
+}
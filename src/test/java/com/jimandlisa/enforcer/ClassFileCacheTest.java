@@ -0,0 +1,222 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jimandlisa.enforcer.ClassFileScanner.ScannedClass;
+
+public class ClassFileCacheTest {
+
+	@Test
+	public void testHash() throws Exception {
+		assertEquals("00ff10", ClassFileCache.hex(new byte[] { 0, (byte) 0xFF, 16 }));
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ClassFileCache.hash(new byte[0]));
+	}
+
+	static Ignores ignores(String... prefixes) {
+		Ignores ignores = new Ignores();
+		for (String prefix : prefixes) {
+			ignores.add(prefix);
+		}
+		return ignores;
+	}
+
+	@Test
+	public void testFingerprint() throws Exception {
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		String fingerprint = ClassFileCache.fingerprint(ignores("org", "com.foo"), flags);
+		assertTrue(fingerprint.startsWith("v" + ClassFileCache.FORMAT_VERSION + "!"));
+		assertEquals(fingerprint, ClassFileCache.fingerprint(ignores("com.foo", "org"), flags));
+		assertFalse(fingerprint.equals(ClassFileCache.fingerprint(ignores("org"), flags)));
+		flags.enablePreserveNestedTypes();
+		assertFalse(fingerprint.equals(ClassFileCache.fingerprint(ignores("org", "com.foo"), flags)));
+	}
+
+	@Test
+	public void testFormatAndParse() {
+		Map<String, ScannedClass> entries = new HashMap<>();
+		String line = ClassFileCache.format("abc", new ScannedClass("com.foo.Bar", new LinkedHashSet<>(Arrays.asList("com.foo.Baz", "com.foo.Qux"))));
+		assertEquals("abc!com.foo.Bar!com.foo.Baz,com.foo.Qux", line);
+		assertTrue(ClassFileCache.parse(line, entries));
+		assertEquals("com.foo.Bar", entries.get("abc").name());
+		assertEquals(new LinkedHashSet<>(Arrays.asList("com.foo.Baz", "com.foo.Qux")), entries.get("abc").referredTo());
+		line = ClassFileCache.format("def", new ScannedClass("com.foo.Bar", new LinkedHashSet<>()));
+		assertEquals("def!com.foo.Bar!", line);
+		assertTrue(ClassFileCache.parse(line, entries));
+		assertTrue(entries.get("def").referredTo().isEmpty());
+		line = ClassFileCache.format("ghi", new ScannedClass(null, new LinkedHashSet<>()));
+		assertEquals("ghi!!", line);
+		assertTrue(ClassFileCache.parse(line, entries));
+		assertNull(entries.get("ghi").name());
+		assertFalse(ClassFileCache.parse("abc", entries));
+		assertFalse(ClassFileCache.parse("abc!com.foo.Bar!com.foo.Baz!", entries));
+		assertFalse(ClassFileCache.parse("!com.foo.Bar!", entries));
+		assertFalse(ClassFileCache.parse("abc!!com.foo.Baz", entries));
+		assertEquals(3, entries.size());
+	}
+
+	static File cacheDirectory() {
+		File cacheDirectory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		cacheDirectory.mkdirs();
+		return cacheDirectory;
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		Ignores ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		File cacheDirectory = cacheDirectory();
+		Map<String, Type> expected = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags());
+		ClassFileCache cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		assertEquals(new File(cacheDirectory, ClassFileCache.CACHE_FILE_NAME).getAbsoluteFile(), cache.file());
+		assertFalse(cache.file().exists());
+		Map<String, Type> types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache);
+		assertEquals(0, cache.hits());
+		int classFiles = cache.misses();
+		assertTrue(classFiles > expected.size());
+		assertTrue(cache.file().exists());
+		compare(expected, types);
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache);
+		assertEquals(classFiles, cache.hits());
+		assertEquals(0, cache.misses());
+		compare(expected, types);
+		// Changing the ignores invalidates everything.
+		cache = new ClassFileCache(cacheDirectory, new Ignores(), new AnalyzeBinaryFlags());
+		types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), new Ignores(), new AnalyzeBinaryFlags(), cache);
+		assertEquals(0, cache.hits());
+		compare(ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), new Ignores(), new AnalyzeBinaryFlags()), types);
+		// So does changing whether nested types are preserved.
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enablePreserveNestedTypes();
+		cache = new ClassFileCache(cacheDirectory, new Ignores(), flags);
+		types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), new Ignores(), flags, cache);
+		assertEquals(0, cache.hits());
+		compare(ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), new Ignores(), flags), types);
+	}
+
+	@Test
+	public void testInMemory() throws Exception {
+		Ignores ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		ClassFileCache cache = new ClassFileCache(ignores, new AnalyzeBinaryFlags());
+		assertEquals(null, cache.file());
+		cache.load();
+		Map<String, Type> expected = ClassFileScanner.scanTypes(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache);
+		int classFiles = cache.misses();
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(classFiles, cache.hits());
+		assertEquals(classFiles, cache.misses());
+	}
+
+	@Test
+	public void testCorrupted() throws Exception {
+		Ignores ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		File cacheDirectory = cacheDirectory();
+		ClassFileCache cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		Map<String, Type> expected = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache);
+		List<String> lines = Files.readAllLines(cache.file().toPath(), StandardCharsets.UTF_8);
+		lines.add(2, "garbage");
+		Files.write(cache.file().toPath(), lines, StandardCharsets.UTF_8);
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(0, cache.hits());
+		Files.write(cache.file().toPath(), new byte[0]);
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(0, cache.hits());
+		// A malformed line partway through discards the entries before it too.
+		lines = Files.readAllLines(cache.file().toPath(), StandardCharsets.UTF_8);
+		lines.add(lines.size() - 1, "garbage");
+		Files.write(cache.file().toPath(), lines, StandardCharsets.UTF_8);
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(0, cache.hits());
+		// So does anything that isn't UTF-8.
+		lines = Files.readAllLines(cache.file().toPath(), StandardCharsets.UTF_8);
+		try (java.io.OutputStream out = Files.newOutputStream(cache.file().toPath())) {
+			out.write((lines.get(0) + "\n" + lines.get(1) + "\n").getBytes(StandardCharsets.UTF_8));
+			out.write(new byte[] { (byte)0xC3, (byte)0x28, '\n' });
+		}
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(0, cache.hits());
+		// A missing file, with a path to save to, just means nothing's cached yet.
+		assertTrue(cache.file().delete());
+		cache = new ClassFileCache(cacheDirectory, ignores, new AnalyzeBinaryFlags());
+		assertFalse(cache.file().exists());
+		compare(expected, ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags(), cache));
+		assertEquals(0, cache.hits());
+		assertTrue(cache.file().exists());
+	}
+
+	static void compare(Map<String, Type> expected, Map<String, Type> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (String name : expected.keySet()) {
+			assertEquals(expected.get(name).referenceNames(), actual.get(name).referenceNames());
+		}
+	}
+
+	@Test
+	public void testRequiresBcel() throws Exception {
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableCache();
+		try {
+			EnforcerUtils.resolve(TestUtils.analyzeWarInputs(true, false, false), new LinkedHashSet<>(), flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("cache requires bcel"));
+			assertEquals(Errors.CACHE_REQUIRES_BCEL, e.error());
+		}
+	}
+
+	@Test
+	public void testEnforce() throws Exception {
+		String subdir = TestUtils.uniqueSubdir();
+		for (int i = 0; i < 2; i++) {
+			try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+				Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleWar().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath(),
+						Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath(), Optionals.BCEL.indicator(), Optionals.CACHE.indicator() }, console);
+			}
+			assertTrue(new File(TestUtils.targetDir(subdir), ClassFileCache.CACHE_FILE_NAME).exists());
+			TestUtils.compareTargetFile(subdir, Outputs.ALL_REFERENCES_BASE_NAME + ".txt", "TestAllReferencesOutputCanned1.txt");
+		}
+		subdir = TestUtils.uniqueSubdir();
+		File cacheDirectory = cacheDirectory();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleWar().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath(),
+					Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath(), Optionals.BCEL.indicator(), Optionals.CACHE.indicator() + cacheDirectory.getAbsolutePath() }, console);
+		}
+		assertTrue(new File(cacheDirectory, ClassFileCache.CACHE_FILE_NAME).exists());
+		assertFalse(new File(TestUtils.targetDir(subdir), ClassFileCache.CACHE_FILE_NAME).exists());
+		TestUtils.compareTargetFile(subdir, Outputs.ALL_REFERENCES_BASE_NAME + ".txt", "TestAllReferencesOutputCanned1.txt");
+	}
+}
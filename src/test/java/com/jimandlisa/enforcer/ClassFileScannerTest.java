@@ -0,0 +1,272 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantMethodType;
+import org.apache.bcel.classfile.JavaClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassFileScannerTest {
+
+	@Test
+	public void testMisc() {
+		new ClassFileScanner();
+	}
+
+	@Test
+	public void testDescriptor() {
+		Set<String> names = new LinkedHashSet<>();
+		ClassFileScanner.descriptor("(IJ[Ljava/lang/String;Lcom/foo/Bar$Baz;)V", names);
+		assertEquals(2, names.size());
+		assertTrue(names.contains("java.lang.String"));
+		assertTrue(names.contains("com.foo.Bar$Baz"));
+		names.clear();
+		ClassFileScanner.descriptor("[[I", names);
+		assertTrue(names.isEmpty());
+		ClassFileScanner.descriptor("Lcom/foo/Truncated", names);
+		assertTrue(names.isEmpty());
+	}
+
+	@Test
+	public void testDenest() {
+		Map<String, String> enclosing = new HashMap<>();
+		assertEquals("com.foo.Bar", ClassFileScanner.denest("com.foo.Bar", null, enclosing));
+		enclosing.put("com.foo.Bar$Baz", "com.foo.Bar");
+		enclosing.put("com.foo.Bar$Baz$Qux", "com.foo.Bar$Baz");
+		assertEquals("com.foo.Bar", ClassFileScanner.denest("com.foo.Bar$Baz$Qux", null, enclosing));
+		enclosing.put("com.foo.Bar$1", null);
+		assertEquals("com.foo.Other", ClassFileScanner.denest("com.foo.Bar$1", "com.foo.Other", enclosing));
+		assertEquals("com.foo.Bar", ClassFileScanner.denest("com.foo.Bar$1", null, enclosing));
+		enclosing.put("com.foo.Cycle1", "com.foo.Cycle2");
+		enclosing.put("com.foo.Cycle2", "com.foo.Cycle1");
+		ClassFileScanner.denest("com.foo.Cycle1", null, enclosing);
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		try {
+			ClassFileScanner.scan(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 }, "Bad.class", new AnalyzeBinaryFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("malformed class file Bad.class"));
+			assertEquals(Errors.MALFORMED_CLASS_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testTypesFromBinary() throws Exception {
+		Ignores ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		Map<String, Type> types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, new AnalyzeBinaryFlags());
+		assertEquals(8, types.size());
+		assertEquals(new HashSet<>(java.util.Arrays.asList("com.jimandlisa.app.two.App2", "com.jimandlisa.data.Data", "com.jimandlisa.utils.Utils")), types.get("com.jimandlisa.app.one.App1").referenceNames());
+		assertTrue(types.get("com.jimandlisa.utils.Utils").referenceNames().isEmpty());
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enablePreserveNestedTypes();
+		types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), ignores, flags);
+		assertEquals(9, types.size());
+		assertTrue(types.get("com.jimandlisa.utils.Utils").referenceNames().contains("com.jimandlisa.utils.Utils$Nested"));
+	}
+
+	@Test
+	public void testIsClassAndIsArchive() {
+		assertTrue(ClassFileScanner.isClass("com/foo/Bar.class"));
+		assertTrue(!ClassFileScanner.isClass("module-info.class"));
+		assertTrue(!ClassFileScanner.isClass("META-INF/versions/9/module-info.class"));
+		assertTrue(!ClassFileScanner.isClass("com/foo/Bar.txt"));
+		assertTrue(ClassFileScanner.isArchive("WEB-INF/lib/foo.jar"));
+		assertTrue(ClassFileScanner.isArchive("foo.war"));
+		assertTrue(ClassFileScanner.isArchive("foo.ear"));
+		assertTrue(!ClassFileScanner.isArchive("foo.zip"));
+	}
+
+	@Test
+	public void testNestedLibs() throws Exception {
+		Map<String, Type> types = ClassFileScanner.typesFromBinary(TestUtils.sampleWar(), new Ignores(), new AnalyzeBinaryFlags());
+		assertTrue(types.containsKey("com.jimandlisa.app.one.App1"));
+		assertTrue(types.containsKey("org.json.JSONObject"));
+		assertTrue(types.containsKey("org.yaml.snakeyaml.Yaml"));
+	}
+
+	static byte[] zip(Map<String, byte[]> entries) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); ZipOutputStream out = new ZipOutputStream(baos)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+			out.finish();
+			return baos.toByteArray();
+		}
+	}
+
+	@Test
+	public void testDeeplyNested() throws Exception {
+		Map<String, byte[]> classes = new java.util.TreeMap<>();
+		try (ZipFile war = new ZipFile(TestUtils.sampleWar())) {
+			for (String name : new String[] { "com/jimandlisa/app/one/App1.class", "com/jimandlisa/utils/Utils.class", "com/jimandlisa/utils/Utils$Nested.class" }) {
+				try (InputStream in = war.getInputStream(war.getEntry("WEB-INF/classes/" + name))) {
+					classes.put(name, ClassFileScanner.read(in));
+				}
+			}
+		}
+		Map<String, byte[]> jar = new java.util.TreeMap<>();
+		jar.put("com/jimandlisa/utils/Utils.class", classes.get("com/jimandlisa/utils/Utils.class"));
+		jar.put("com/jimandlisa/utils/Utils$Nested.class", classes.get("com/jimandlisa/utils/Utils$Nested.class"));
+		jar.put("module-info.class", new byte[] { 0 });
+		Map<String, byte[]> war = new java.util.TreeMap<>();
+		war.put("WEB-INF/classes/com/jimandlisa/app/one/App1.class", classes.get("com/jimandlisa/app/one/App1.class"));
+		war.put("WEB-INF/lib/utils.jar", zip(jar));
+		war.put("WEB-INF/web.xml", new byte[] { 0 });
+		Map<String, byte[]> ear = new java.util.TreeMap<>();
+		ear.put("META-INF/", new byte[0]);
+		ear.put("lib/empty.jar", zip(new HashMap<>()));
+		ear.put("sample.war", zip(war));
+		File binary = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), "nested.ear");
+		binary.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(binary)) {
+			out.write(zip(ear));
+		}
+		Map<String, Type> types = ClassFileScanner.typesFromBinary(binary, new Ignores(), new AnalyzeBinaryFlags());
+		assertEquals(2, types.size());
+		assertTrue(types.get("com.jimandlisa.app.one.App1").referenceNames().contains("com.jimandlisa.utils.Utils"));
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enablePreserveNestedTypes();
+		types = ClassFileScanner.typesFromBinary(binary, new Ignores(), flags);
+		assertEquals(3, types.size());
+		assertTrue(types.containsKey("com.jimandlisa.utils.Utils$Nested"));
+		Map<String, byte[]> broken = new HashMap<>();
+		broken.put("A.class", classes.get("com/jimandlisa/utils/Utils.class"));
+		byte[] corrupted = zip(broken);
+		for (int i = 30 + "A.class".length(); i < 40 + "A.class".length(); i++) {
+			corrupted[i] = (byte) 0xFF; // Invalid deflate block type.
+		}
+		ear.put("broken.jar", corrupted);
+		try (FileOutputStream out = new FileOutputStream(binary)) {
+			out.write(zip(ear));
+		}
+		try {
+			ClassFileScanner.typesFromBinary(binary, new Ignores(), new AnalyzeBinaryFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("nested.ear!/broken.jar"));
+			assertEquals(Errors.UNABLE_TO_READ_BINARY, e.error());
+		}
+		ear.remove("broken.jar");
+		Map<String, byte[]> malformed = new java.util.TreeMap<>();
+		for (int i = 0; i < ClassFileScanner.THRESHOLD * 2 + 1; i++) {
+			malformed.put("com/foo/Copy" + i + ".class", classes.get("com/jimandlisa/utils/Utils.class"));
+		}
+		malformed.put("com/foo/Zzz.class", new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 });
+		war.put("WEB-INF/lib/malformed.jar", zip(malformed));
+		ear.put("sample.war", zip(war));
+		try (FileOutputStream out = new FileOutputStream(binary)) {
+			out.write(zip(ear));
+		}
+		try {
+			ClassFileScanner.typesFromBinary(binary, new Ignores(), new AnalyzeBinaryFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("nested.ear!/sample.war!/WEB-INF/lib/malformed.jar!/com/foo/Zzz.class"));
+			assertEquals(Errors.MALFORMED_CLASS_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testMatchesPfCda() throws Exception {
+		String subdir = TestUtils.uniqueSubdir();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleWar().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath(),
+					Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath(), Optionals.BCEL.indicator() }, console);
+		}
+		TestUtils.compareTargetFile(subdir, Outputs.ALL_REFERENCES_BASE_NAME + ".txt", "TestAllReferencesOutputCanned1.txt");
+		subdir = TestUtils.uniqueSubdir();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleWar().getAbsolutePath(), TestUtils.targetDir(subdir).getAbsolutePath(),
+					Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath(), Optionals.BCEL.indicator(), Optionals.PRESERVE_NESTED_TYPES.indicator() }, console);
+		}
+		TestUtils.compareTargetFile(subdir, Outputs.ALL_REFERENCES_BASE_NAME + ".txt", "TestAllReferencesOutputCanned2.txt");
+	}
+
+	// Compiled with a lambda and a method reference, so its constant pool has the MethodHandle and MethodType constants their bootstrap methods take.
+	static class LambdaFixture {
+
+		static Object convert(java.util.List<java.math.BigDecimal> values) {
+			java.util.function.Function<java.math.BigDecimal, java.math.BigInteger> toInteger = java.math.BigDecimal::toBigInteger;
+			java.util.function.Supplier<java.util.concurrent.atomic.AtomicLong> counter = () -> new java.util.concurrent.atomic.AtomicLong(values.size());
+			return toInteger.apply(values.get(0)).add(java.math.BigInteger.valueOf(counter.get().get()));
+		}
+	}
+
+	@Test
+	public void testLambdas() throws Exception {
+		byte[] bytes;
+		try (InputStream in = ClassFileScannerTest.class.getResourceAsStream("ClassFileScannerTest$LambdaFixture.class")) {
+			bytes = ClassFileScanner.read(in);
+		}
+		JavaClass javaClass = new ClassParser(new ByteArrayInputStream(bytes), "LambdaFixture.class").parse();
+		boolean hasMethodType = false;
+		for (Constant constant : javaClass.getConstantPool().getConstantPool()) {
+			hasMethodType |= constant instanceof ConstantMethodType;
+		}
+		assertTrue(hasMethodType);
+		Set<String> referredTo = ClassFileScanner.rawReferredTo(javaClass);
+		for (String name : new String[] { "java.lang.invoke.LambdaMetafactory", "java.math.BigDecimal", "java.math.BigInteger", "java.util.function.Function", "java.util.function.Supplier",
+				"java.util.concurrent.atomic.AtomicLong" }) {
+			assertTrue(name, referredTo.contains(name));
+		}
+		ClassFileScanner.ScannedClass scanned = ClassFileScanner.scan(bytes, "LambdaFixture.class", new AnalyzeBinaryFlags());
+		assertEquals(ClassFileScannerTest.class.getName(), scanned.name());
+		assertTrue(scanned.referredTo().contains("java.math.BigInteger"));
+	}
+
+	@Test
+	public void testTruncated() throws Exception {
+		byte[] bytes;
+		try (InputStream in = ClassFileScannerTest.class.getResourceAsStream("ClassFileScannerTest$LambdaFixture.class")) {
+			bytes = ClassFileScanner.read(in);
+		}
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		try (Progress progress = Progress.start(flags, "Scanning", "classes", 0)) {
+			ClassFileScanner.ScanTask task = new ClassFileScanner.ScanTask(java.util.Arrays.asList(new ClassFileScanner.ClassEntry("Truncated.class", java.util.Arrays.copyOf(bytes, 12))),
+					new ClassFileScanner.ScanSettings(new Ignores(), flags, null, progress));
+			task.compute();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("unable to read Truncated.class: "));
+			assertEquals(Errors.UNABLE_TO_READ_BINARY, e.error());
+		}
+	}
+}
@@ -0,0 +1,227 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationSnapshotTest {
+
+	private static File target(File directory, String name, String... replacements) throws Exception {
+		String yaml = TestUtils.readTestClassesFile("SampleTarget2.yaml");
+		for (int i = 0; i < replacements.length; i += 2) {
+			assertTrue(replacements[i], yaml.contains(replacements[i]));
+			yaml = yaml.replace(replacements[i], replacements[i + 1]);
+		}
+		File file = new File(directory, name);
+		Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	// Returns the fatal error, if any.
+	private static String run(File target, File allReferences, File outputDirectory, boolean incremental) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			String[] args = new String[] { target.getAbsolutePath(), allReferences.getAbsolutePath(), outputDirectory.getAbsolutePath() };
+			if (incremental) {
+				args = Arrays.copyOf(args, 4);
+				args[3] = Optionals.INCREMENTAL.indicator();
+			}
+			Enforce.mainImpl(args, console);
+			return null;
+		} catch (EnforcerException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static void assertSameOutputs(Outputs expected, Outputs actual) throws Exception {
+		for (File[] pair : new File[][] { { expected.warnings(), actual.warnings() }, { expected.illegalReferences(), actual.illegalReferences() },
+				{ expected.illegalComponentReferences(), actual.illegalComponentReferences() }, { expected.allReferences(), actual.allReferences() },
+				{ expected.allComponentReferences(), actual.allComponentReferences() }, { expected.allReferencesYeD(), actual.allReferencesYeD() } }) {
+			assertEquals(pair[0].getName(), pair[0].exists(), pair[1].exists());
+			if (pair[0].exists()) {
+				assertTrue(pair[0].getName(), Arrays.equals(Files.readAllBytes(pair[0].toPath()), Files.readAllBytes(pair[1].toPath())));
+			}
+		}
+	}
+
+	@Test
+	public void testIsUnder() {
+		java.util.Set<String> packages = new java.util.HashSet<>(Arrays.asList("com.foo", "com.bar.Baz"));
+		assertTrue(CorrelationSnapshot.isUnder("com.foo", packages));
+		assertTrue(CorrelationSnapshot.isUnder("com.foo.Qux", packages));
+		assertTrue(CorrelationSnapshot.isUnder("com.bar.Baz$Nested", packages));
+		assertTrue(!CorrelationSnapshot.isUnder("com.foobar.Qux", packages));
+		assertTrue(!CorrelationSnapshot.isUnder("com.bar.Qux", packages));
+	}
+
+	@Test
+	public void testMatchesFullRuns() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + "_input.txt");
+		Files.copy(TestUtils.sampleAllReferences().toPath(), allReferences.toPath());
+		File fullDirectory = new File(directory, "full");
+		File incrementalDirectory = new File(directory, "incremental");
+		Outputs incremental = new Outputs(incrementalDirectory);
+		assertNull(run(target(directory, "target0.yaml"), allReferences, fullDirectory, false));
+		assertNull(run(target(directory, "target0.yaml"), allReferences, incrementalDirectory, true));
+		assertTrue(incremental.correlationSnapshot().exists());
+		String[][] variants = new String[][] {
+			{}, // Nothing changed.
+			{ "      - com.jimandlisa.service.one\n", "" }, // Service1 moves from App One to App Two.
+			{ "    depth: 2\n", "    depth: -2\n" }, // UI drops below everything else.
+			{ "  - name: UI Two\n", "  - name: UI 2\n" }, // Renamed component.
+			{ "      - com.jimandlisa.app.two\n", "", "      - com.jimandlisa.data\n", "      - com.jimandlisa.data\n    classes:\n      - com.jimandlisa.app.two.App2\n" }, // Class assigned to another component.
+			{ "  - name: Utils\n    layer: Utils\n    domain: Utils\n    packages:\n      - com.jimandlisa.utils\n", "", "      - com.jimandlisa.ui.one\n", "      - com.jimandlisa.ui.one\n      - com.jimandlisa.utils\n" }, // Utils merged into UI One.
+			{ "      - com.jimandlisa.utils\n", "      - com.jimandlisa.utils\n      - com.nosuchpackage\n" }, // Fatal, so the previous snapshot stays.
+			{ "      - com.jimandlisa.app.one\n", "" }, // App One loses the only package covering App1, which is fatal.
+			{ "    depth: 2\n", "    depth: 3\n" } // UI moves up a layer.
+		};
+		StringBuilder errors = new StringBuilder();
+		for (int i = 0; i < variants.length; i++) {
+			File target = target(directory, "target" + (i + 1) + ".yaml", variants[i]);
+			String fullError = run(target, allReferences, fullDirectory, false);
+			String incrementalError = run(target, allReferences, incrementalDirectory, true);
+			assertNotNull(CorrelationSnapshot.read(incremental.correlationSnapshot(), allReferences));
+			if (fullError != null) {
+				assertEquals(fullError, incrementalError);
+				errors.append(fullError);
+				continue;
+			}
+			assertNull(incrementalError);
+			assertSameOutputs(new Outputs(fullDirectory), incremental);
+		}
+		assertTrue(errors.toString().contains("unable to resolve type com.jimandlisa.app.one.App1 to component"));
+	}
+
+	// One component with one package, and one type in it that refers to nothing.
+	private static byte[] snapshot(int version, String depth, int componentOf, int packageOf, int trailing) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(CorrelationSnapshot.MAGIC);
+		out.write(version);
+		AllReferencesBinary.writeString("fingerprint", out);
+		AllReferencesBinary.writeVarint(1, out);
+		AllReferencesBinary.writeString("Component", out);
+		AllReferencesBinary.writeString(depth, out);
+		CorrelationSnapshot.writeStrings(Collections.singleton("a"), out);
+		CorrelationSnapshot.writeStrings(Collections.<String>emptySet(), out);
+		AllReferencesBinary.writeVarint(1, out);
+		AllReferencesBinary.writeString("a.A", out);
+		AllReferencesBinary.writeVarint(0, out);
+		AllReferencesBinary.writeVarint(componentOf + 1, out);
+		AllReferencesBinary.writeVarint(packageOf + 1, out);
+		AllReferencesBinary.writeVarint(0, out);
+		for (int i = 0; i < trailing; i++) {
+			out.write(0);
+		}
+		return out.toByteArray();
+	}
+
+	private static void assertMalformed(byte[] bytes, String detail) throws Exception {
+		File file = new File("snapshot.dat");
+		try {
+			CorrelationSnapshot.read(file, new ByteArrayInputStream(bytes));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("malformed correlation snapshot file " + file.getAbsolutePath() + ": " + detail));
+			assertEquals(Errors.MALFORMED_ALL_REFERENCES_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		assertEquals(1, CorrelationSnapshot.read(new File("snapshot.dat"), new ByteArrayInputStream(snapshot(CorrelationSnapshot.VERSION, "1", 0, 0, 0))).size());
+		assertEquals(1, CorrelationSnapshot.read(new File("snapshot.dat"), new ByteArrayInputStream(snapshot(CorrelationSnapshot.VERSION, "1", 0, -1, 0))).size());
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION + 1, "1", 0, 0, 0), "unsupported version " + (CorrelationSnapshot.VERSION + 1));
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION, "one", 0, 0, 0), "invalid layer depth");
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION, "1", 1, 0, 0), "index out of range");
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION, "1", 0, 1, 0), "index out of range");
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION, "1", -1, 0, 0), "type without component");
+		assertMalformed(snapshot(CorrelationSnapshot.VERSION, "1", 0, 0, 1), "unexpected data after snapshot");
+		// Falls back to a full run, rather than failing.
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File file = new File(directory, "snapshot.dat");
+		Files.write(file.toPath(), snapshot(CorrelationSnapshot.VERSION + 1, "1", 0, 0, 0));
+		assertNull(CorrelationSnapshot.read(file, TestUtils.sampleAllReferences()));
+	}
+
+	@Test
+	public void testStaleOrMalformed() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + "_input.txt");
+		Files.copy(TestUtils.sampleAllReferences().toPath(), allReferences.toPath());
+		File outputDirectory = new File(directory, "outputs");
+		Outputs outputs = new Outputs(outputDirectory);
+		assertNull(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences));
+		assertNull(run(TestUtils.testClassesFile("SampleTarget2.yaml"), allReferences, outputDirectory, true));
+		CorrelationSnapshot snapshot = CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences);
+		assertNotNull(snapshot);
+		assertEquals(8, snapshot.size());
+		assertTrue(allReferences.setLastModified(allReferences.lastModified() - 10000));
+		assertNull(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences));
+		byte[] bytes = Files.readAllBytes(outputs.correlationSnapshot().toPath());
+		try (FileOutputStream out = new FileOutputStream(outputs.correlationSnapshot())) {
+			out.write(bytes, 0, bytes.length / 2);
+		}
+		assertNull(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences));
+		assertNull(run(TestUtils.testClassesFile("SampleTarget2.yaml"), allReferences, outputDirectory, true));
+		assertNotNull(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences));
+		Files.write(outputs.correlationSnapshot().toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+		assertNull(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences));
+	}
+
+	@Test
+	public void testFailFast() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		SyntheticCodebase codebase = new SyntheticCodebase(200, 1000, 10);
+		codebase.setIllegalRate(0.2);
+		File target = new File(directory, "Target.yaml");
+		File allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + "_input.txt");
+		codebase.writeTarget(target);
+		codebase.writeAllReferences(allReferences);
+		File outputDirectory = new File(directory, "outputs");
+		assertNull(run(target, allReferences, outputDirectory, true));
+		assertNotNull(CorrelationSnapshot.read(new Outputs(outputDirectory).correlationSnapshot(), allReferences));
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { target.getAbsolutePath(), allReferences.getAbsolutePath(), outputDirectory.getAbsolutePath(), Optionals.INCREMENTAL.indicator(),
+					Optionals.STRICT.indicator(), Optionals.FAIL_FAST.indicator() + "1" }, console);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().startsWith("FATAL ERRORS (failing fast at 1):"));
+			int illegal = 0;
+			for (String line : e.getMessage().split(System.lineSeparator())) {
+				illegal += line.startsWith(Errors.ILLEGAL_REFERENCE.toString()) ? 1 : 0;
+			}
+			assertEquals(1, illegal);
+		}
+	}
+}
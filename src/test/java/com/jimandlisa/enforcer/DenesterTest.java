@@ -0,0 +1,57 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.pfsw.tools.cda.base.model.ClassInformation;
+import org.pfsw.tools.cda.base.model.Workset;
+
+public class DenesterTest {
+
+	@Test
+	public void testDenestString() {
+		Denester denester = new Denester(new AnalyzeBinaryFlags());
+		assertEquals("com.foo.Bar", denester.denest("com.foo.Bar$Baz"));
+		assertEquals("com.foo.Bar", denester.denest("com.foo.Bar$Baz"));
+		assertEquals("com.foo.Bar", denester.denest("com.foo.Bar"));
+		assertEquals(2, denester.size());
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enablePreserveNestedTypes();
+		assertEquals("com.foo.Bar$Baz", new Denester(flags).denest("com.foo.Bar$Baz"));
+	}
+
+	@Test
+	public void testDenestClassInfo() {
+		ClassInformation outer = EnforcerUtilsTest.classInfo("com.foo.Bar", false);
+		ClassInformation inner = EnforcerUtilsTest.classInfo("com.foo.Bar$Baz", true);
+		Workset mockWorkset = Mockito.mock(Workset.class);
+		when(mockWorkset.getClassInfo("com.foo.Bar")).thenReturn(outer);
+		Denester denester = new Denester(new AnalyzeBinaryFlags());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("com.foo.Bar", denester.denest(inner, mockWorkset));
+			assertEquals("com.foo.Bar", denester.denest(outer, mockWorkset));
+		}
+		verify(mockWorkset, times(1)).getClassInfo("com.foo.Bar");
+		assertEquals(2, denester.size());
+		// Denesting by string and by class info are remembered separately.
+		assertEquals("com.foo.Bar", denester.denest("com.foo.Bar$Baz"));
+		assertEquals(3, denester.size());
+	}
+}
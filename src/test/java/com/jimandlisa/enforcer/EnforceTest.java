@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -92,6 +93,18 @@ public class EnforceTest {
 		} catch (EnforcerException e) {
 			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
 		}
+		try {
+			Enforce.parseArg(Optionals.BCEL.indicator(), inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
+		}
+		try {
+			Enforce.parseArg(Optionals.CACHE.indicator(), inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
+		}
 		inputs = TestUtils.rapidIterationInputs();
 		flags = new Flags();
 		Enforce.parseArg(Optionals.STRICT.indicator(), inputs, flags);
@@ -104,6 +117,16 @@ public class EnforceTest {
 		}
 		inputs = TestUtils.rapidIterationInputs();
 		flags = new Flags();
+		Enforce.parseArg(Optionals.WATCH.indicator(), inputs, flags);
+		assertTrue(flags.watch());
+		try {
+			Enforce.parseArg(Optionals.WATCH.indicator(), inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.WATCH_ALREADY_SPECIFIED, e.error());
+		}
+		inputs = TestUtils.rapidIterationInputs();
+		flags = new Flags();
 		Enforce.parseArg(Optionals.DEBUG.indicator(), inputs, flags);
 		assertTrue(flags.debug());
 		try {
@@ -112,6 +135,55 @@ public class EnforceTest {
 		} catch (EnforcerException e) {
 			assertEquals(Errors.DEBUG_ALREADY_SPECIFIED, e.error());
 		}
+		inputs = TestUtils.rapidIterationInputs();
+		RapidIterationFlags rapidIterationFlags = new RapidIterationFlags();
+		Enforce.parseArg(Optionals.MAPPED.indicator(), inputs, rapidIterationFlags);
+		assertTrue(rapidIterationFlags.mapped());
+		try {
+			Enforce.parseArg(Optionals.MAPPED.indicator(), inputs, rapidIterationFlags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.MAPPED_ALREADY_SPECIFIED, e.error());
+		}
+		try {
+			Enforce.parseArg(Optionals.MAPPED.indicator(), TestUtils.analyzeWarInputs(false, false, false), new AnalyzeBinaryFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
+		}
+		Enforce.parseArg(Optionals.INCREMENTAL.indicator(), inputs, rapidIterationFlags);
+		assertTrue(rapidIterationFlags.incremental());
+		try {
+			Enforce.parseArg(Optionals.INCREMENTAL.indicator(), inputs, rapidIterationFlags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.INCREMENTAL_ALREADY_SPECIFIED, e.error());
+		}
+		try {
+			Enforce.parseArg(Optionals.INCREMENTAL.indicator(), TestUtils.analyzeWarInputs(false, false, false), new AnalyzeBinaryFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
+		}
+		inputs = TestUtils.rapidIterationInputs();
+		flags = new Flags();
+		Enforce.parseArg(Optionals.MEMORY_CEILING.indicator() + "256", inputs, flags);
+		assertEquals(256, flags.memoryCeiling());
+		try {
+			Enforce.parseArg(Optionals.MEMORY_CEILING.indicator() + "256", inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.MEMORY_CEILING_ALREADY_SPECIFIED, e.error());
+		}
+		for (String bad : new String[] { "", "lots", "-1" }) {
+			try {
+				Enforce.parseArg(Optionals.MEMORY_CEILING.indicator() + bad, TestUtils.analyzeWarInputs(false, false, false), new AnalyzeBinaryFlags());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().contains("invalid memory ceiling " + bad));
+				assertEquals(Errors.INVALID_MEMORY_CEILING, e.error());
+			}
+		}
 		try {
 			Enforce.parseArg("foo", TestUtils.rapidIterationInputs(), flags);
 			Assert.fail();
@@ -164,6 +236,33 @@ public class EnforceTest {
 		}
 		inputs = TestUtils.analyzeWarInputs(false, false, false);
 		flags = new AnalyzeBinaryFlags();
+		Enforce.parseArg(Optionals.BCEL.indicator(), inputs, flags);
+		assertTrue(flags.bcel());
+		try {
+			Enforce.parseArg(Optionals.BCEL.indicator(), inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.BCEL_ALREADY_SPECIFIED, e.error());
+		}
+		inputs = TestUtils.analyzeWarInputs(false, false, false);
+		flags = new AnalyzeBinaryFlags();
+		Enforce.parseArg(Optionals.CACHE.indicator(), inputs, flags);
+		assertTrue(flags.cache());
+		assertEquals(null, inputs.cacheDirectory());
+		try {
+			Enforce.parseArg(Optionals.CACHE.indicator(), inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.CACHE_ALREADY_SPECIFIED, e.error());
+		}
+		inputs = TestUtils.analyzeWarInputs(false, false, false);
+		flags = new AnalyzeBinaryFlags();
+		File cacheDirectory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		Enforce.parseArg(Optionals.CACHE.indicator() + cacheDirectory.getAbsolutePath(), inputs, flags);
+		assertTrue(flags.cache());
+		assertEquals(cacheDirectory, inputs.cacheDirectory());
+		inputs = TestUtils.analyzeWarInputs(false, false, false);
+		flags = new AnalyzeBinaryFlags();
 		Enforce.parseArg(Optionals.STRICT.indicator(), inputs, flags);
 		assertTrue(flags.strict());
 		try {
@@ -240,6 +339,11 @@ public class EnforceTest {
 			Enforce.reportProblems(problems, console, outputs, new Flags());
 			assertTrue(outputs.unresolvedTypes().exists());
 			assertFalse(outputs.illegalReferences().exists());
+			problems.clear();
+			problems.add(new Problem("foo", Errors.ILLEGAL_REFERENCE));
+			Enforce.reportProblems(problems, console, outputs, new Flags());
+			assertFalse(outputs.unresolvedTypes().exists()); // Reporting again into the same outputs deletes files that no longer have problems.
+			assertTrue(outputs.illegalReferences().exists());
 		}
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
 			Set<Problem> problems = new LinkedHashSet<Problem>();
@@ -293,6 +397,54 @@ public class EnforceTest {
 		}
 	}
 
+	// What reporting did before bucketing: sort everything, then filter per file.
+	private static byte[] sortThenFilter(Set<Problem> problems, Errors error) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(baos)) {
+			for (Problem problem : CollectionUtils.sort(new ArrayList<>(problems))) {
+				if (error == null ? problem.isWarning() : problem.error() == error) {
+					out.println(problem.isWarning() ? problem.humanReadableToString() : problem.description());
+				}
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void testReportProblemsMatchesSortThenFilter() throws Exception {
+		Errors[] errors = new Errors[] { Errors.ILLEGAL_REFERENCE, Errors.UNRESOLVED_REFERENCE, Errors.ILLEGAL_COMPONENT_REFERENCE, Errors.UNABLE_TO_RELEASE_WORKSET, Errors.CANNOT_READ_FILE };
+		java.util.Random random = new java.util.Random(20191);
+		Set<Problem> problems = new LinkedHashSet<Problem>();
+		for (int i = 0; i < 3 * Enforce.PARALLEL_SORT_THRESHOLD; i++) {
+			String description = "com.foo.Type" + random.nextInt(5000) + " -> com.bar.Type" + random.nextInt(5000);
+			problems.add(new Problem(description, errors[random.nextInt(errors.length)], "detail " + i));
+		}
+		String subdir = TestUtils.uniqueSubdir();
+		Outputs outputs = new Outputs(Paths.get(TestUtils.targetDir(subdir).toString()).toFile());
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.reportProblems(problems, console, outputs, new Flags());
+		}
+		assertTrue(Arrays.equals(sortThenFilter(problems, null), java.nio.file.Files.readAllBytes(outputs.warnings().toPath())));
+		assertTrue(Arrays.equals(sortThenFilter(problems, Errors.UNRESOLVED_REFERENCE), java.nio.file.Files.readAllBytes(outputs.unresolvedTypes().toPath())));
+		assertTrue(Arrays.equals(sortThenFilter(problems, Errors.ILLEGAL_REFERENCE), java.nio.file.Files.readAllBytes(outputs.illegalReferences().toPath())));
+		assertTrue(Arrays.equals(sortThenFilter(problems, Errors.ILLEGAL_COMPONENT_REFERENCE), java.nio.file.Files.readAllBytes(outputs.illegalComponentReferences().toPath())));
+	}
+
+	// Buckets at or over the threshold are sorted in parallel, which has to give the same order as sorting them sequentially.
+	@Test
+	public void testSort() {
+		java.util.Random random = new java.util.Random(20191);
+		for (int size : new int[] { Enforce.PARALLEL_SORT_THRESHOLD - 1, Enforce.PARALLEL_SORT_THRESHOLD }) {
+			List<Problem> bucket = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				bucket.add(new Problem("com.foo.Type" + random.nextInt(5000) + " -> com.bar.Type" + random.nextInt(5000), Errors.ILLEGAL_REFERENCE, "detail " + i));
+			}
+			Problem[] expected = bucket.toArray(new Problem[bucket.size()]);
+			Arrays.sort(expected);
+			assertTrue(Arrays.equals(expected, Enforce.sort(bucket)));
+		}
+	}
+
 	@Test
 	public void testNodes() {
 		Layer layer1 = new Layer("One", 1, null);
@@ -430,12 +582,12 @@ public class EnforceTest {
 		}
 		String subdir = TestUtils.uniqueSubdir();
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
-			Enforce.mainImpl(new String[] { "a", "b.war", TestUtils.targetDir(subdir).getAbsolutePath(), "d", "e", "f", "g", "h", "i", "j" }, console);
+			Enforce.mainImpl(new String[] { "a", "b.war", TestUtils.targetDir(subdir).getAbsolutePath(), "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n", "o", "p", "q" }, console);
 			TestUtils.compareTestClassesFile(baos, "TestEnforceCanned3.txt");
 		}
 		subdir = TestUtils.uniqueSubdir();
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
-			Enforce.mainImpl(new String[] { "a", "b", TestUtils.targetDir(subdir).getAbsolutePath(), "d", "e", "f", "g", "h", "i", "j" }, console);
+			Enforce.mainImpl(new String[] { "a", "b", TestUtils.targetDir(subdir).getAbsolutePath(), "d", "e", "f", "g", "h", "i", "j", "k", "l", "m" }, console);
 			TestUtils.compareTestClassesFile(baos, "TestEnforceCanned4.txt");
 		}
 		subdir = TestUtils.uniqueSubdir();
@@ -482,4 +634,200 @@ public class EnforceTest {
 		}
 		TestUtils.compareTargetFile(subdir, ALL_REFERENCES_NAME, "TestRapidIterationCanned2.txt");
 	}
+
+	private static String multipleTargets(String... args) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(args, console);
+			return baos.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	@Test
+	public void testMultipleTargets() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		String allReferences = TestUtils.sampleAllReferences().getAbsolutePath();
+		String targets = TestUtils.testClassesFile("SampleTarget1.yaml").getAbsolutePath() + File.pathSeparator + TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath();
+		String console = multipleTargets(targets, allReferences, new File(directory, "multiple").getAbsolutePath());
+		assertTrue(console, console.indexOf("Target " + TestUtils.testClassesFile("SampleTarget1.yaml")) < console.indexOf("Target " + TestUtils.testClassesFile("SampleTarget2.yaml")));
+		for (String name : new String[] { "SampleTarget1", "SampleTarget2" }) {
+			multipleTargets(TestUtils.testClassesFile(name + ".yaml").getAbsolutePath(), allReferences, new File(directory, name).getAbsolutePath());
+			String[] files = new File(directory, name).list();
+			Arrays.sort(files);
+			String[] multipleFiles = new File(new File(directory, "multiple"), name).list();
+			Arrays.sort(multipleFiles);
+			assertTrue(Arrays.equals(files, multipleFiles));
+			for (String file : files) {
+				assertTrue(file, Arrays.equals(Files.readAllBytes(new File(new File(directory, name), file).toPath()), Files.readAllBytes(new File(new File(new File(directory, "multiple"), name), file).toPath())));
+			}
+		}
+		try {
+			multipleTargets(targets + File.pathSeparator + TestUtils.testClassesFile("BadTarget1.yaml").getAbsolutePath(), allReferences, new File(directory, "failed").getAbsolutePath());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("1 of 3 targets failed, first with: "));
+			assertEquals(Errors.DUPLICATE_LAYER_DEPTH, e.error());
+		}
+		assertTrue(new Outputs(new File(new File(directory, "failed"), "SampleTarget2")).allReferences().exists());
+		try {
+			multipleTargets(targets + File.pathSeparator + TestUtils.testClassesFile("BadTarget1.yaml").getAbsolutePath() + File.pathSeparator + TestUtils.testClassesFile("BadTarget2.yaml").getAbsolutePath(), allReferences,
+					new File(directory, "failures").getAbsolutePath());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("2 of 4 targets failed, first with: "));
+			assertEquals(Errors.DUPLICATE_LAYER_DEPTH, e.error());
+		}
+		// Incrementally, targets with snapshots aren't resolved again, and if none need resolving, nothing is.
+		multipleTargets(targets, allReferences, new File(directory, "incremental").getAbsolutePath(), Optionals.INCREMENTAL.indicator());
+		console = multipleTargets(targets, allReferences, new File(directory, "incremental").getAbsolutePath(), Optionals.INCREMENTAL.indicator());
+		assertTrue(console, console.indexOf("Target " + TestUtils.testClassesFile("SampleTarget1.yaml")) < console.indexOf("Target " + TestUtils.testClassesFile("SampleTarget2.yaml")));
+		// Served, targets are resolved through the server's cache.
+		RapidIterationInputs inputs = new RapidIterationInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget1.yaml"), TestUtils.testClassesFile("SampleTarget2.yaml")), TestUtils.sampleAllReferences());
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.enforceTargets(inputs, new Outputs(new File(directory, "served")), out, new RapidIterationFlags(), new ResolutionCache(1));
+		}
+		assertTrue(new Outputs(new File(new File(directory, "served"), "SampleTarget2")).allReferences().exists());
+		// Interrupted while waiting for the targets.
+		Thread.currentThread().interrupt();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.enforceTargets(inputs, new Outputs(new File(directory, "interrupted")), out, new RapidIterationFlags(), null);
+			Assert.fail();
+		} catch (InterruptedException e) {
+			assertFalse(Thread.currentThread().isInterrupted());
+		}
+		try {
+			multipleTargets(targets, allReferences, new File(directory, "watch").getAbsolutePath(), Optionals.WATCH.indicator());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("watch not supported with multiple targets"));
+			assertEquals(Errors.WATCH_NOT_SUPPORTED_WITH_MULTIPLE_TARGETS, e.error());
+		}
+		File renamed = new File(directory, "SampleTarget2.yml");
+		Files.copy(TestUtils.testClassesFile("SampleTarget2.yaml").toPath(), renamed.toPath());
+		try {
+			multipleTargets(targets + File.pathSeparator + renamed.getAbsolutePath(), allReferences, new File(directory, "conflict").getAbsolutePath());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("would overwrite the output of another target with the same name"));
+			assertEquals(Errors.NAME_CONFLICTS_WITH_OTHER_FILE, e.error());
+		}
+	}
+
+	private static String phases(File profile) throws Exception {
+		List<String> lines = Files.readAllLines(profile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(Profiler.HEADER, lines.get(0));
+		StringBuilder phases = new StringBuilder();
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(Separators.REFERENCE_SEPARATOR.value());
+			assertEquals(Profiler.HEADER.split(Separators.REFERENCE_SEPARATOR.value()).length, fields.length);
+			phases.append(phases.length() == 0 ? "" : ",").append(fields[0]).append("x").append(fields[1]);
+		}
+		return phases.toString();
+	}
+
+	@Test
+	public void testProfile() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		String allReferences = TestUtils.sampleAllReferences().getAbsolutePath();
+		String target = TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath();
+		multipleTargets(target, allReferences, new File(directory, "rapid").getAbsolutePath(), Optionals.PROFILE.indicator());
+		assertEquals("PARSE_TARGETx1,RESOLVEx1,CORRELATEx1,REPORT_PROBLEMSx1,OUTPUT_REFERENCESx1", phases(new Outputs(new File(directory, "rapid")).profile()));
+		multipleTargets(target, allReferences, new File(directory, "unprofiled").getAbsolutePath());
+		assertFalse(new Outputs(new File(directory, "unprofiled")).profile().exists());
+		multipleTargets(target, TestUtils.sampleWar().getAbsolutePath(), new File(directory, "binary").getAbsolutePath(), Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath(),
+				Optionals.BCEL.indicator(), Optionals.PROFILE.indicator());
+		assertEquals("PARSE_TARGETx1,RESOLVEx1,SUPPLEMENTAL_TYPESx1,CORRELATEx1,REPORT_PROBLEMSx1,OUTPUT_REFERENCESx1", phases(new Outputs(new File(directory, "binary")).profile()));
+		multipleTargets(TestUtils.testClassesFile("SampleTarget1.yaml").getAbsolutePath() + File.pathSeparator + target, allReferences, new File(directory, "multiple").getAbsolutePath(), Optionals.PROFILE.indicator());
+		assertEquals("PARSE_TARGETx2,RESOLVEx1,CORRELATEx2,REPORT_PROBLEMSx2,OUTPUT_REFERENCESx2", phases(new Outputs(new File(directory, "multiple")).profile()));
+		try {
+			multipleTargets(TestUtils.testClassesFile("BadTarget8.yaml").getAbsolutePath(), allReferences, new File(directory, "failed").getAbsolutePath(), Optionals.PROFILE.indicator());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("UNUSED_PACKAGE"));
+		}
+		assertEquals("PARSE_TARGETx1,RESOLVEx1", phases(new Outputs(new File(directory, "failed")).profile()));
+		Flags flags = new RapidIterationFlags();
+		Enforce.parseArg(Optionals.PROFILE.indicator(), TestUtils.rapidIterationInputs(), flags);
+		assertTrue(flags.profile());
+		try {
+			Enforce.parseArg(Optionals.PROFILE.indicator(), TestUtils.rapidIterationInputs(), flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.PROFILE_ALREADY_SPECIFIED, e.error());
+		}
+		Enforce.parseArg(Optionals.QUIET.indicator(), TestUtils.rapidIterationInputs(), flags);
+		assertTrue(flags.quiet());
+		try {
+			Enforce.parseArg(Optionals.QUIET.indicator(), TestUtils.rapidIterationInputs(), flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.QUIET_ALREADY_SPECIFIED, e.error());
+		}
+	}
+
+	private static int count(String message, String prefix) {
+		int count = 0;
+		for (String line : message.split(System.lineSeparator())) {
+			count += line.startsWith(prefix) ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Test
+	public void testFailFast() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		SyntheticCodebase codebase = new SyntheticCodebase(200, 1000, 10);
+		codebase.setIllegalRate(0.2);
+		File synthetic = new File(directory, "synthetic");
+		synthetic.mkdirs();
+		codebase.writeTarget(new File(synthetic, "Target.yaml"));
+		codebase.writeAllReferences(new File(synthetic, Outputs.ALL_REFERENCES_BASE_NAME + ".txt"));
+		String allReferences = new File(synthetic, Outputs.ALL_REFERENCES_BASE_NAME + ".txt").getAbsolutePath();
+		String target = new File(synthetic, "Target.yaml").getAbsolutePath();
+		assertTrue(multipleTargets(target, allReferences, new File(directory, "lenient").getAbsolutePath(), Optionals.FAIL_FAST.indicator() + "1").contains("fail fast requires strict"));
+		for (String mode : new String[] { "rapid", "incremental" }) {
+			File outputDirectory = new File(directory, mode);
+			try {
+				if (mode.equals("incremental")) {
+					multipleTargets(target, allReferences, outputDirectory.getAbsolutePath(), Optionals.INCREMENTAL.indicator());
+				}
+				multipleTargets(target, allReferences, outputDirectory.getAbsolutePath(), Optionals.STRICT.indicator(), Optionals.FAIL_FAST.indicator() + "3", mode.equals("incremental") ? Optionals.INCREMENTAL.indicator() : Optionals.DEBUG.indicator());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().startsWith("FATAL ERRORS (failing fast at 3):"));
+				assertEquals(3, count(e.getMessage(), Errors.ILLEGAL_REFERENCE.toString()));
+			}
+			assertEquals(mode.equals("incremental"), new Outputs(outputDirectory).allReferences().exists());
+		}
+		try {
+			multipleTargets(target, allReferences, new File(directory, "strict").getAbsolutePath(), Optionals.STRICT.indicator());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(codebase.illegalReferenceCount(), count(e.getMessage(), Errors.ILLEGAL_REFERENCE.toString()));
+		}
+		Flags flags = new RapidIterationFlags();
+		Enforce.parseArg(Optionals.FAIL_FAST.indicator() + "5", TestUtils.rapidIterationInputs(), flags);
+		assertEquals(5, flags.failFast());
+		try {
+			Enforce.parseArg(Optionals.FAIL_FAST.indicator() + "5", TestUtils.rapidIterationInputs(), flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.FAIL_FAST_ALREADY_SPECIFIED, e.error());
+		}
+		for (String bad : new String[] { "", "x", "0", "-1" }) {
+			try {
+				Enforce.parseArg(Optionals.FAIL_FAST.indicator() + bad, TestUtils.rapidIterationInputs(), new RapidIterationFlags());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().contains("invalid fail fast " + bad));
+				assertEquals(Errors.INVALID_FAIL_FAST, e.error());
+			}
+		}
+		try {
+			Enforce.enforce(TestUtils.rapidIterationInputs(), flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.FAIL_FAST_REQUIRES_STRICT, e.error());
+		}
+	}
 }
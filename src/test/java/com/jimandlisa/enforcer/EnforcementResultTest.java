@@ -0,0 +1,199 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EnforcementResultTest {
+
+	private static String write(EnforcementResult result, File directory) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			result.write(new Outputs(directory), console);
+			return baos.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	@Test
+	public void testEnforce() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		EnforcementResult result = Enforce.enforce(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget2.yaml"), TestUtils.sampleAllReferences()), new RapidIterationFlags());
+		assertEquals(0, directory.list().length);
+		assertEquals(8, result.types().size());
+		assertEquals(result.target().components().size(), result.components().size());
+		assertEquals(result.graph().size(), result.types().size());
+		int references = 0;
+		for (Reference reference : result.references()) {
+			assertTrue(reference.toString(), result.types().containsKey(reference.referringType().name()));
+			references++;
+		}
+		assertEquals(result.graph().referenceCount(), references);
+		assertTrue(result.hasProblems());
+		assertSame(result.problemsByError(), result.problemsByError());
+		assertTrue(result.types().get("com.jimandlisa.app.one.App1").references().size() > 0);
+		int problems = 0;
+		for (Errors error : result.problemsByError().keySet()) {
+			List<Problem> bucket = result.problems(error);
+			for (int i = 0; i < bucket.size(); i++) {
+				assertEquals(error, bucket.get(i).error());
+				assertTrue(i == 0 || bucket.get(i - 1).compareTo(bucket.get(i)) <= 0);
+			}
+			problems += bucket.size();
+		}
+		assertEquals(result.problems().size(), problems);
+		assertTrue(!result.problems(Errors.ILLEGAL_REFERENCE).isEmpty());
+		assertTrue(result.problems(Errors.UNRESOLVED_REFERENCE).isEmpty());
+		for (Runnable change : new Runnable[] { new Runnable() {
+			@Override
+			public void run() {
+				result.types().clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.components().clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.problems().clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.problemsByError().clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.problems(Errors.ILLEGAL_REFERENCE).clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.problems(Errors.UNRESOLVED_REFERENCE).add(null);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.types().get("com.jimandlisa.app.one.App1").references().clear();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				result.types().get("com.jimandlisa.app.one.App1").referenceNames().add("com.jimandlisa.Other");
+			}
+		} }) {
+			try {
+				change.run();
+				Assert.fail();
+			} catch (UnsupportedOperationException e) {
+				// Expected.
+			}
+		}
+	}
+
+	@Test
+	public void testWriteMatchesCommandLine() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		File commandLineDirectory = new File(directory, "commandLine");
+		File embeddedDirectory = new File(directory, "embedded");
+		commandLineDirectory.mkdirs();
+		embeddedDirectory.mkdirs();
+		String commandLineConsole;
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(new String[] { TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath(), TestUtils.sampleAllReferences().getAbsolutePath(), commandLineDirectory.getAbsolutePath() }, console);
+			commandLineConsole = baos.toString(StandardCharsets.UTF_8.name());
+			commandLineConsole = commandLineConsole.substring(commandLineConsole.indexOf('\n') + 1); // Everything after the echoed args.
+		}
+		EnforcementResult result = Enforce.enforce(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget2.yaml"), TestUtils.sampleAllReferences()), new RapidIterationFlags());
+		assertEquals(commandLineConsole.replace(commandLineDirectory.getAbsolutePath(), embeddedDirectory.getAbsolutePath()), write(result, embeddedDirectory));
+		String[] names = commandLineDirectory.list();
+		Arrays.sort(names);
+		String[] embeddedNames = embeddedDirectory.list();
+		Arrays.sort(embeddedNames);
+		assertTrue(Arrays.equals(names, embeddedNames));
+		for (String name : names) {
+			assertTrue(name, Arrays.equals(Files.readAllBytes(new File(commandLineDirectory, name).toPath()), Files.readAllBytes(new File(embeddedDirectory, name).toPath())));
+		}
+	}
+
+	@Test
+	public void testNoProblems() throws Exception {
+		File target = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), "target.yaml");
+		target.getParentFile().mkdirs();
+		Files.write(target.toPath(), "layers:\n  - name: Utils\n    depth: 0\ndomains:\n  - name: Utils\ncomponents:\n  - name: Utils\n    layer: Utils\n    domain: Utils\n    packages:\n      - com.jimandlisa.utils\n".getBytes(StandardCharsets.UTF_8));
+		Map<String, Type> types = new HashMap<>();
+		types.put("com.jimandlisa.utils.Utils", new Type("com.jimandlisa.utils.Utils"));
+		Flags flags = new Flags();
+		EnforcementResult result = Enforce.correlate(Enforce.parse(target, flags), types, null, new LinkedHashSet<Problem>(), flags);
+		assertFalse(result.hasProblems());
+		assertTrue(result.problemsByError().isEmpty());
+		assertTrue(result.problems(Errors.ILLEGAL_REFERENCE).isEmpty());
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		try {
+			Enforce.enforce(new RapidIterationInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget1.yaml"), TestUtils.testClassesFile("SampleTarget2.yaml")), TestUtils.sampleAllReferences()), new RapidIterationFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("multiple targets not supported without outputs, enforce each target separately", e.getMessage());
+			assertEquals(Errors.MULTIPLE_TARGETS_NOT_SUPPORTED_WITHOUT_OUTPUTS, e.error());
+		}
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		flags.enableCache();
+		AnalyzeBinaryInputs inputs = TestUtils.analyzeWarInputs(true, false, false);
+		try {
+			Enforce.enforce(inputs, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("cache directory must be specified when enforcing without outputs", e.getMessage());
+			assertEquals(Errors.CACHE_DIRECTORY_NOT_SPECIFIED, e.error());
+		}
+		File cacheDirectory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		cacheDirectory.mkdirs();
+		inputs.setCacheDirectory(cacheDirectory);
+		assertTrue(Enforce.enforce(inputs, flags).types().size() > 0);
+		assertTrue(new File(cacheDirectory, ClassFileCache.CACHE_FILE_NAME).exists());
+	}
+
+	@Test
+	public void testFatal() throws Exception {
+		try {
+			Enforce.enforce(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget2.yaml"), new File("/no/such/all_references.txt")), new RapidIterationFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.error() != null);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class EnforcerClientTest {
+
+	@Test
+	public void testBody() {
+		new EnforcerClient();
+		assertEquals("a\nb c\n", new String(EnforcerClient.body(new String[] { "a", "b c" }), StandardCharsets.UTF_8));
+		try {
+			EnforcerClient.body(new String[] { "a\nb" });
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("arg contains line break"));
+			assertEquals(Errors.UNRECOGNIZED_COMMAND_LINE_OPTION, e.error());
+		}
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = socket.getLocalPort(); // Free, and nothing listens on it once the socket is closed.
+		}
+		File outputDirectory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		String console = EnforcerServerTest.enforce(EnforcerServerTest.args("SampleTarget2.yaml", outputDirectory), port);
+		assertTrue(console.startsWith("No enforcer server on port " + port + ", enforcing in process"));
+		assertTrue(new Outputs(outputDirectory).allReferences().exists());
+	}
+
+	// A stand-in for a server that's broken, or isn't an enforcer server at all.
+	private static HttpServer server(final int status, final byte[] body, final String consoleLength) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext(EnforcerServer.ENFORCE_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					if (status == 0) {
+						return; // Hangs up without a response.
+					}
+					if (consoleLength != null) {
+						exchange.getResponseHeaders().set(EnforcerServer.ERROR_HEADER, Errors.ILLEGAL_REFERENCE.name());
+						exchange.getResponseHeaders().set(EnforcerServer.CONSOLE_LENGTH_HEADER, consoleLength);
+					}
+					EnforcerServer.respond(exchange, status, body);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	private static String enforce(HttpServer server) throws Exception {
+		try {
+			return EnforcerServerTest.enforce(new String[] { new File("a").getAbsolutePath() }, server.getAddress().getPort());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static void assertServerError(HttpServer server, String message) throws Exception {
+		try {
+			enforce(server);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+			assertEquals(Errors.SERVER_ERROR, e.error());
+		}
+	}
+
+	@Test
+	public void testServerError() throws Exception {
+		assertServerError(server(500, "broken".getBytes(StandardCharsets.UTF_8), null), "enforcer server error 500: broken");
+		assertServerError(server(500, new byte[0], null), "enforcer server error 500: ");
+		assertServerError(server(0, null, null), "error talking to enforcer server on port ");
+		assertEquals("", enforce(server(200, new byte[0], null)));
+		try {
+			enforce(server(200, "consolemessage".getBytes(StandardCharsets.UTF_8), "7"));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("message", e.getMessage());
+			assertEquals(Errors.ILLEGAL_REFERENCE, e.error());
+		}
+		assertServerError(server(200, "console".getBytes(StandardCharsets.UTF_8), "8"), "malformed enforcer server response, console length 8 for 7 bytes");
+	}
+
+	@Test
+	public void testConsoleLength() {
+		assertEquals(0, EnforcerClient.consoleLength("0", 0));
+		assertEquals(3, EnforcerClient.consoleLength("3", 5));
+		for (String header : new String[] { null, "", "x", "-1", "6" }) {
+			try {
+				EnforcerClient.consoleLength(header, 5);
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertEquals("malformed enforcer server response, console length " + header + " for 5 bytes", e.getMessage());
+				assertEquals(Errors.SERVER_ERROR, e.error());
+			}
+		}
+	}
+}
@@ -0,0 +1,259 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EnforcerServerTest {
+
+	// Not the user's home, so tests don't leave tokens there.
+	static final File TOKEN_DIRECTORY = TestUtils.targetDir("tokens");
+
+	static String enforce(String[] args, int port) throws Exception {
+		TOKEN_DIRECTORY.mkdirs();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			EnforcerClient.mainImpl(args, console, port, TOKEN_DIRECTORY);
+			return baos.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	static String[] args(String target, File outputDirectory, String... optionals) {
+		String[] args = Arrays.copyOf(new String[] { TestUtils.testClassesFile(target).getAbsolutePath(), TestUtils.sampleAllReferences().getAbsolutePath(), outputDirectory.getAbsolutePath() }, 3 + optionals.length);
+		System.arraycopy(optionals, 0, args, 3, optionals.length);
+		return args;
+	}
+
+	@Test
+	public void testArgs() {
+		assertEquals(Arrays.asList("a", "b c", "-d"), Arrays.asList(EnforcerServer.args("a\nb c\n\n-d".getBytes(StandardCharsets.UTF_8))));
+		assertEquals(0, EnforcerServer.args(new byte[0]).length);
+	}
+
+	@Test
+	public void testMainImpl() throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			try {
+				EnforcerServer.mainImpl(new String[] { "1", "2", "3" }, console, TOKEN_DIRECTORY);
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().contains("too many args: usage:"));
+				assertEquals(Errors.TOO_MANY_ARGS, e.error());
+			}
+			try {
+				EnforcerServer.mainImpl(new String[] { "port" }, console, TOKEN_DIRECTORY);
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().contains("invalid port port"));
+				assertEquals(Errors.INVALID_SERVER_ARG, e.error());
+			}
+			try {
+				EnforcerServer.mainImpl(new String[] { "0", "size" }, console, TOKEN_DIRECTORY);
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().contains("invalid cache size size"));
+				assertEquals(Errors.INVALID_SERVER_ARG, e.error());
+			}
+			TOKEN_DIRECTORY.mkdirs();
+			File tokenFile;
+			try (EnforcerServer server = EnforcerServer.mainImpl(new String[] { "0", "2" }, console, TOKEN_DIRECTORY)) {
+				assertTrue(server.port() > 0);
+				tokenFile = EnforcerServer.tokenFile(TOKEN_DIRECTORY, server.port());
+				assertTrue(baos.toString(StandardCharsets.UTF_8.name()).contains("caching up to 2 resolved binaries, token in " + tokenFile));
+				assertEquals(64, EnforcerClient.token(tokenFile).length());
+			}
+			assertFalse(tokenFile.exists());
+			try (EnforcerServer server = EnforcerServer.mainImpl(new String[] { "0" }, console, TOKEN_DIRECTORY)) {
+				assertTrue(server.port() > 0); // Any free port.
+				assertTrue(baos.toString(StandardCharsets.UTF_8.name()).contains("caching up to " + EnforcerServer.DEFAULT_CACHE_SIZE + " resolved binaries"));
+			}
+			try (EnforcerServer server = EnforcerServer.mainImpl(new String[0], console, TOKEN_DIRECTORY)) {
+				assertEquals(EnforcerServer.DEFAULT_PORT, server.port());
+			} catch (BindException e) {
+				// Something else is using the default port, which still means the server tried to listen on it.
+			}
+			assertEquals(new File(System.getProperty("user.home")), EnforcerServer.tokenDirectory());
+			assertEquals("", EnforcerClient.token(tokenFile));
+		}
+	}
+
+	@Test
+	public void testTokenFile() throws Exception {
+		TOKEN_DIRECTORY.mkdirs();
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		boolean posix = Files.getFileStore(directory.toPath()).supportsFileAttributeView(PosixFileAttributeView.class);
+		File created = new File(directory, "created.token");
+		File restricted = new File(directory, "restricted.token");
+		EnforcerServer.createOwnerOnly(created, posix);
+		EnforcerServer.createOwnerOnly(restricted, false); // What file systems without POSIX permissions get.
+		try (EnforcerServer server = new EnforcerServer(0, 1, TOKEN_DIRECTORY)) {
+			server.start();
+			File tokenFile = EnforcerServer.tokenFile(TOKEN_DIRECTORY, server.port());
+			assertEquals(64, EnforcerClient.token(tokenFile).length());
+			if (!posix) {
+				return;
+			}
+			Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+			assertEquals(ownerOnly, Files.getPosixFilePermissions(tokenFile.toPath()));
+			assertEquals(ownerOnly, Files.getPosixFilePermissions(created.toPath()));
+			assertEquals(ownerOnly, Files.getPosixFilePermissions(restricted.toPath()));
+		}
+	}
+
+	@Test
+	public void testEnforce() throws Exception {
+		TOKEN_DIRECTORY.mkdirs();
+		try (EnforcerServer server = new EnforcerServer(0, EnforcerServer.DEFAULT_CACHE_SIZE, TOKEN_DIRECTORY)) {
+			server.start();
+			File local = TestUtils.targetDir(TestUtils.uniqueSubdir());
+			try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+				Enforce.mainImpl(args("SampleTarget2.yaml", local), console);
+			}
+			for (int i = 1; i <= 2; i++) {
+				File remote = TestUtils.targetDir(TestUtils.uniqueSubdir());
+				String console = enforce(args("SampleTarget2.yaml", remote), server.port());
+				assertTrue(console.contains("ILLEGAL REFERENCE"));
+				for (String name : new String[] { Outputs.ILLEGAL_REFERENCES_BASE_NAME + ".txt", Outputs.ALL_REFERENCES_BASE_NAME + ".txt", Outputs.ALL_COMPONENT_REFERENCES_BASE_NAME + ".txt" }) {
+					assertTrue(name, Arrays.equals(Files.readAllBytes(new File(local, name).toPath()), Files.readAllBytes(new File(remote, name).toPath())));
+				}
+				assertEquals(1, server.cache().misses());
+				assertEquals(i - 1, server.cache().hits());
+			}
+			try {
+				enforce(args("SampleTarget2.yaml", TestUtils.targetDir(TestUtils.uniqueSubdir()), Optionals.STRICT.indicator()), server.port());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().startsWith("FATAL ERRORS:"));
+				assertTrue(e.getMessage().contains("ILLEGAL_COMPONENT_REFERENCE: App One!App!1!App Two!App!1"));
+				assertEquals(Errors.MULTIPLE_ERRORS, e.error());
+			}
+			try {
+				enforce(args("SampleTarget2.yaml", TestUtils.targetDir(TestUtils.uniqueSubdir()), Optionals.WATCH.indicator()), server.port());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertEquals("watch not supported by server", e.getMessage());
+				assertEquals(Errors.WATCH_NOT_SUPPORTED_BY_SERVER, e.error());
+			}
+			assertTrue(enforce(new String[] { new File("a").getAbsolutePath() }, server.port()).startsWith("not enough args"));
+			File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+			directory.mkdirs();
+			try {
+				enforce(new String[] { directory.getAbsolutePath(), TestUtils.sampleAllReferences().getAbsolutePath(), TestUtils.targetDir(TestUtils.uniqueSubdir()).getAbsolutePath() }, server.port());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().startsWith("enforcer server error 500: error enforcing: java.io.FileNotFoundException: " + directory.getAbsolutePath())); // A target that's a directory.
+				assertEquals(Errors.SERVER_ERROR, e.error());
+			}
+			HttpURLConnection connection = (HttpURLConnection)new URL("http", "localhost", server.port(), EnforcerServer.ENFORCE_PATH).openConnection();
+			assertEquals(405, connection.getResponseCode());
+			connection.disconnect();
+		}
+	}
+
+	// Over a plain socket, because HttpURLConnection won't send an Origin header.
+	private static int post(int port, String contentType, String token, String origin) throws Exception {
+		byte[] body = EnforcerClient.body(new String[] { new File("a").getAbsolutePath() });
+		StringBuilder request = new StringBuilder("POST " + EnforcerServer.ENFORCE_PATH + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nContent-Length: " + body.length + "\r\n");
+		if (contentType != null) {
+			request.append("Content-Type: ").append(contentType).append("\r\n");
+		}
+		if (token != null) {
+			request.append(EnforcerServer.TOKEN_HEADER).append(": ").append(token).append("\r\n");
+		}
+		if (origin != null) {
+			request.append("Origin: ").append(origin).append("\r\n");
+		}
+		request.append("\r\n");
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write(request.toString().getBytes(StandardCharsets.UTF_8));
+			out.write(body);
+			out.flush();
+			String response = new String(EnforcerServer.read(socket.getInputStream()), StandardCharsets.UTF_8);
+			return Integer.parseInt(response.split(" ")[1]);
+		}
+	}
+
+	@Test
+	public void testRejected() throws Exception {
+		TOKEN_DIRECTORY.mkdirs();
+		try (EnforcerServer server = new EnforcerServer(0, EnforcerServer.DEFAULT_CACHE_SIZE, TOKEN_DIRECTORY)) {
+			server.start();
+			String token = EnforcerClient.token(EnforcerServer.tokenFile(TOKEN_DIRECTORY, server.port()));
+			assertEquals(200, post(server.port(), EnforcerServer.CONTENT_TYPE, token, null));
+			assertEquals(403, post(server.port(), EnforcerServer.CONTENT_TYPE, token, "http://example.com"));
+			assertEquals(415, post(server.port(), null, token, null));
+			assertEquals(415, post(server.port(), "text/plain", token, null));
+			assertEquals(403, post(server.port(), EnforcerServer.CONTENT_TYPE, null, null));
+			assertEquals(403, post(server.port(), EnforcerServer.CONTENT_TYPE, token.substring(1) + "0", null));
+			try {
+				EnforcerClient.mainImpl(args("SampleTarget2.yaml", TestUtils.targetDir(TestUtils.uniqueSubdir())), new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()), server.port(), TestUtils.targetDir(TestUtils.uniqueSubdir()));
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertTrue(e.getMessage().startsWith("enforcer server error 403: missing or wrong token"));
+				assertEquals(Errors.SERVER_ERROR, e.error());
+			}
+			String[] args = args("SampleTarget2.yaml", TestUtils.targetDir(TestUtils.uniqueSubdir()));
+			args[1] = "all_references.txt";
+			try {
+				enforce(args, server.port());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertEquals("relative path all_references.txt not supported by server, use full paths", e.getMessage());
+				assertEquals(Errors.RELATIVE_PATH_NOT_SUPPORTED_BY_SERVER, e.error());
+			}
+		}
+	}
+
+	@Test
+	public void testPaths() {
+		assertEquals("/a" + File.pathSeparator + "b", EnforcerServer.paths("/a" + File.pathSeparator + "b"));
+		assertEquals("ignores.txt", EnforcerServer.paths(Optionals.IGNORES.indicator() + "ignores.txt"));
+		assertEquals("reflections.txt", EnforcerServer.paths(Optionals.REFLECTIONS.indicator() + "reflections.txt"));
+		assertEquals("fix.txt", EnforcerServer.paths(Optionals.FIX_UNRESOLVEDS.indicator() + "fix.txt"));
+		assertEquals("", EnforcerServer.paths(Optionals.CACHE.indicator()));
+		assertEquals("", EnforcerServer.paths(Optionals.MEMORY_CEILING.indicator() + "512"));
+		EnforcerServer.checkPaths(new String[] { new File("a").getAbsolutePath() + File.pathSeparator + new File("b").getAbsolutePath(), Optionals.CACHE.indicator(), Optionals.STRICT.indicator() });
+		for (String arg : new String[] { new File("a").getAbsolutePath() + File.pathSeparator + "b", Optionals.CACHE.indicator() + "cache", Optionals.IGNORES.indicator() + "ignores.txt" }) {
+			try {
+				EnforcerServer.checkPaths(new String[] { arg });
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertEquals(Errors.RELATIVE_PATH_NOT_SUPPORTED_BY_SERVER, e.error());
+			}
+		}
+	}
+}
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -40,10 +41,10 @@ public class EnforcerUtilsTest {
 
 	@Test
 	public void testAddIgnore() {
-		Set<String> ignores = new HashSet<>();
+		Ignores ignores = new Ignores();
 		EnforcerUtils.add("foo", ignores);
 		assertEquals(1, ignores.size());
-		assertEquals("foo", ignores.iterator().next());
+		assertEquals("foo", ignores.prefixes().iterator().next());
 		try {
 			EnforcerUtils.add("foo", ignores);
 			Assert.fail();
@@ -55,21 +56,23 @@ public class EnforcerUtilsTest {
 
 	@Test
 	public void testIgnores() throws Exception {
-		Set<String> ignores = EnforcerUtils.ignores(null);
-		assertTrue(ignores.isEmpty());
+		Ignores ignores = EnforcerUtils.ignores(null);
+		assertEquals(0, ignores.size());
 		ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("TestIgnores.txt"));
-		assertEquals(3, ignores.size());
-		ignores.remove("foo");
-		ignores.remove("bar.");
-		ignores.remove("baz.");
-		assertTrue(ignores.isEmpty());
-		assertTrue(EnforcerUtils.skip("foo:bar", ignores));
+		assertEquals(new HashSet<>(Arrays.asList("foo", "bar.", "baz.")), ignores.prefixes());
+		assertTrue(EnforcerUtils.skip("foo:bar", new Ignores()));
+		ignores = new Ignores();
 		ignores.add("foo.");
 		assertTrue(EnforcerUtils.skip("foo.bar", ignores));
 		assertFalse(EnforcerUtils.skip("baz.baz2", ignores));
-		ignores.clear();
+		ignores = new Ignores();
 		assertTrue(EnforcerUtils.skip("com.foo.Bar", "com.foo.Bar", ignores));
 		assertFalse(EnforcerUtils.skip("com.foo.Bar", "com.foo.Baz", ignores));
+		Set<String> linear = new HashSet<>();
+		assertTrue(EnforcerUtils.skip("foo:bar", linear));
+		linear.add("foo.");
+		assertTrue(EnforcerUtils.skip("foo.bar", linear));
+		assertFalse(EnforcerUtils.skip("baz.baz2", linear));
 	}
 
 	@Test
@@ -106,6 +109,31 @@ public class EnforcerUtilsTest {
 		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
 		flags.enablePreserveNestedTypes();
 		assertEquals("foo", EnforcerUtils.denest(mockClassInformation, null, flags));
+		flags = new AnalyzeBinaryFlags();
+		assertEquals("foo", EnforcerUtils.denest(mockClassInformation, null, flags));
+		ClassInformation outer = classInfo("com.foo.Bar", false);
+		ClassInformation middle = classInfo("com.foo.Bar$Baz", true);
+		Workset mockWorkset = Mockito.mock(Workset.class);
+		when(mockWorkset.getClassInfo("com.foo.Bar")).thenReturn(outer);
+		when(mockWorkset.getClassInfo("com.foo.Bar$Baz")).thenReturn(middle);
+		assertEquals("com.foo.Bar", EnforcerUtils.denest(classInfo("com.foo.Bar$Baz$Qux", true), mockWorkset, flags));
+		// A $ that doesn't mean nesting is skipped over.
+		assertEquals("com.foo.Bar", EnforcerUtils.denest(classInfo("com.foo.Bar$$Lambda$1", true), mockWorkset, flags));
+		// Enclosing class missing from the workset used to spin forever.
+		assertEquals("com.foo.Missing", EnforcerUtils.denest(classInfo("com.foo.Missing$Baz$Qux", true), mockWorkset, flags));
+		try {
+			EnforcerUtils.denest(classInfo("$Foo", true), mockWorkset, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.MALFORMED_CLASS_NAME, e.error());
+		}
+	}
+
+	static ClassInformation classInfo(String name, boolean isInnerClass) {
+		ClassInformation mockClassInformation = Mockito.mock(ClassInformation.class);
+		when(mockClassInformation.getName()).thenReturn(name);
+		when(mockClassInformation.isInnerClass()).thenReturn(isInnerClass);
+		return mockClassInformation;
 	}
 
 	@Test
@@ -146,44 +174,44 @@ public class EnforcerUtilsTest {
 
 	@Test
 	public void testSupplementalTypes() throws Exception {
-		Set<String> ignores = new HashSet<>();
+		Ignores ignores = new Ignores();
 		Map<String, Type> types = new HashMap<>();
 		Set<Problem> problems = new LinkedHashSet<>();
-		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		Denester denester = new Denester(new AnalyzeBinaryFlags());
 		EnforcerUtils.addSupplementalTypes(null, null, null, null, false, null);
-		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestReflections.txt"), types, ignores, problems, true, flags);
+		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestReflections.txt"), types, ignores, problems, true, denester);
 		try {
-			EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("BadReflections.txt"), types, ignores, problems, true, flags);
+			EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("BadReflections.txt"), types, ignores, problems, true, denester);
 			Assert.fail();
 		} catch (EnforcerException e) {
 			assertTrue(e.getMessage().contains("invalid reflection entry in"));
 			assertEquals(Errors.MISSING_REFERRED_TO_CLASS, e.error());
 		}
 		try {
-			EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("BadFixUnresolveds.txt"), types, ignores, problems, false, flags);
+			EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("BadFixUnresolveds.txt"), types, ignores, problems, false, denester);
 			Assert.fail();
 		} catch (EnforcerException e) {
 			assertTrue(e.getMessage().contains("invalid fix-unresolved entry in"));
 			assertEquals(Errors.MALFORMED_CLASS_TO_CLASS_REFERENCE, e.error());
 		}
-		ignores.clear();
+		ignores = new Ignores();
 		types.clear();
 		problems.clear();
-		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, flags);
+		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, denester);
 		assertTrue(problems.isEmpty());
-		ignores.clear();
+		ignores = new Ignores();
 		types.clear();
 		problems.clear();
 		ignores.add("foo.");
-		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, flags);
+		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, denester);
 		assertEquals(1, problems.size());
 		assertTrue(problems.iterator().next().description().contains("class is listed as referring but also listed in ignores:"));
 		assertEquals(Errors.CLASS_BOTH_REFERRING_AND_IGNORED, problems.iterator().next().error());
-		ignores.clear();
+		ignores = new Ignores();
 		types.clear();
 		problems.clear();
 		ignores.add("com.x.");
-		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, flags);
+		EnforcerUtils.addSupplementalTypes(TestUtils.testClassesFile("TestFixUnresolveds.txt"), types, ignores, problems, false, denester);
 		assertEquals(1, problems.size());
 		assertTrue(problems.iterator().next().description().contains("class is listed as referred-to but also listed in ignores:"));
 		assertEquals(Errors.CLASS_BOTH_REFERRED_TO_AND_IGNORED, problems.iterator().next().error());
@@ -260,6 +288,35 @@ public class EnforcerUtilsTest {
 		types.put("bar", new Type("bar"));
 		EnforcerUtils.resolve(types, problems);
 		assertTrue(problems.isEmpty());
+		Type type1 = new Type("baz");
+		type1.addReferenceName("qux");
+		type1.addReferenceName("quux");
+		types.clear();
+		types.put(type1.name(), type1);
+		EnforcerUtils.resolve(types, problems, 1);
+		assertEquals(1, problems.size());
+		assertFalse(types.containsKey("qux"));
+		assertFalse(types.containsKey("quux"));
+	}
+
+	@Test
+	public void testFailFast() {
+		Flags flags = new Flags();
+		assertEquals(Integer.MAX_VALUE, EnforcerUtils.failFast(Errors.ILLEGAL_REFERENCE, flags));
+		flags.setFailFast(3);
+		assertEquals(Integer.MAX_VALUE, EnforcerUtils.failFast(Errors.ILLEGAL_REFERENCE, flags));
+		assertEquals(3, EnforcerUtils.failFast(Errors.UNUSED_PACKAGE, flags));
+		flags.enableStrict();
+		assertEquals(3, EnforcerUtils.failFast(Errors.ILLEGAL_REFERENCE, flags));
+		assertEquals(Integer.MAX_VALUE, EnforcerUtils.failFast(Errors.UNABLE_TO_RELEASE_WORKSET, flags));
+		Set<Problem> problems = new LinkedHashSet<>();
+		problems.add(new Problem("foo", Errors.ILLEGAL_REFERENCE, "big long explanation"));
+		try {
+			EnforcerUtils.reportFatalErrors(problems, flags);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().startsWith("FATAL ERROR (failing fast at 3):"));
+		}
 	}
 
 	@Test
@@ -296,10 +353,14 @@ public class EnforcerUtilsTest {
 		Component component1 = new Component("Comp1", layer1, null, null);
 		component1.packages().add("com.foo");
 		components.put(component1.name(), component1);
-		EnforcerUtils.correlate(types, components, new RollUp(), references, problems, flags);
+		TypeGraph graph = EnforcerUtils.correlate(types, components, new RollUp(), references, problems, flags);
 		assertTrue(problems.isEmpty());
 		assertEquals(component1, type1.component());
 		assertEquals(type1, component1.types().get(type1.name()));
+		assertEquals(2, graph.size());
+		assertEquals(1, references.size());
+		assertEquals(new Reference(type1, type2), references.iterator().next());
+		assertEquals(references, component1.references());
 	}
 
 	@Test
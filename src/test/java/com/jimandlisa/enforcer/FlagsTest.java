@@ -15,6 +15,8 @@ package com.jimandlisa.enforcer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Assert;
@@ -25,14 +27,14 @@ public class FlagsTest {
 	@Test
 	public void doTest() {
 		Flags flags = new Flags();
-		assertEquals("strict=false, debug=false", flags.toString());
+		assertEquals("strict=false, debug=false, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", flags.toString());
 		assertFalse(flags.strict());
 		flags.enableStrict();
 		assertTrue(flags.strict());
 		assertFalse(flags.debug());
 		flags.enableDebug();
 		assertTrue(flags.debug());
-		assertEquals("strict=true, debug=true", flags.toString());
+		assertEquals("strict=true, debug=true, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", flags.toString());
 		try {
 			flags.enableStrict();
 			Assert.fail();
@@ -47,18 +49,81 @@ public class FlagsTest {
 			assertTrue(e.getMessage().contains("debug already set"));
 			assertEquals(Errors.DEBUG_ALREADY_SPECIFIED, e.error());
 		}
+		try {
+			flags.setMemoryCeiling(0);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("invalid memory ceiling 0"));
+			assertEquals(Errors.INVALID_MEMORY_CEILING, e.error());
+		}
+		assertEquals(0, flags.memoryCeiling());
+		flags.setMemoryCeiling(512);
+		assertEquals(512, flags.memoryCeiling());
+		assertEquals("strict=true, debug=true, watch=false, memoryCeiling=512, profile=false, quiet=false, failFast=0", flags.toString());
+		assertFalse(flags.watch());
+		flags.enableWatch();
+		assertTrue(flags.watch());
+		assertEquals("strict=true, debug=true, watch=true, memoryCeiling=512, profile=false, quiet=false, failFast=0", flags.toString());
+		try {
+			flags.enableWatch();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("watch already set"));
+			assertEquals(Errors.WATCH_ALREADY_SPECIFIED, e.error());
+		}
+		try {
+			flags.setMemoryCeiling(1024);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("memory ceiling already set"));
+			assertEquals(Errors.MEMORY_CEILING_ALREADY_SPECIFIED, e.error());
+		}
+		assertFalse(flags.profile());
+		assertEquals(null, flags.profiler());
+		flags.enableProfile();
+		assertTrue(flags.profile());
+		assertNotNull(flags.profiler());
+		assertEquals("strict=true, debug=true, watch=true, memoryCeiling=512, profile=true, quiet=false, failFast=0", flags.toString());
+		try {
+			flags.enableProfile();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("profile already set"));
+			assertEquals(Errors.PROFILE_ALREADY_SPECIFIED, e.error());
+		}
+		assertFalse(flags.quiet());
+		flags.reportProgressTo(System.out);
+		assertEquals(System.out, flags.progressConsole());
+		flags.enableQuiet();
+		assertTrue(flags.quiet());
+		assertEquals("strict=true, debug=true, watch=true, memoryCeiling=512, profile=true, quiet=true, failFast=0", flags.toString());
+		flags.reportProgressTo(System.out);
+		assertNull(flags.progressConsole());
+		try {
+			flags.enableQuiet();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("quiet already set"));
+			assertEquals(Errors.QUIET_ALREADY_SPECIFIED, e.error());
+		}
 		AnalyzeBinaryFlags analyzeWarFlags = new AnalyzeBinaryFlags();
-		assertEquals("preserveNestedTypes=false, strict=false, debug=false", analyzeWarFlags.toString());
+		assertEquals("preserveNestedTypes=false, bcel=false, cache=false, strict=false, debug=false, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", analyzeWarFlags.toString());
 		assertFalse(analyzeWarFlags.preserveNestedTypes());
 		analyzeWarFlags.enablePreserveNestedTypes();
 		assertTrue(analyzeWarFlags.preserveNestedTypes());
+		assertFalse(analyzeWarFlags.bcel());
+		analyzeWarFlags.enableBcel();
+		assertTrue(analyzeWarFlags.bcel());
+		assertFalse(analyzeWarFlags.cache());
+		analyzeWarFlags.enableCache();
+		assertTrue(analyzeWarFlags.cache());
 		assertFalse(analyzeWarFlags.strict());
 		analyzeWarFlags.enableStrict();
 		assertTrue(analyzeWarFlags.strict());
 		assertFalse(analyzeWarFlags.debug());
 		analyzeWarFlags.enableDebug();
 		assertTrue(analyzeWarFlags.debug());
-		assertEquals("preserveNestedTypes=true, strict=true, debug=true", analyzeWarFlags.toString());
+		assertEquals("preserveNestedTypes=true, bcel=true, cache=true, strict=true, debug=true, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", analyzeWarFlags.toString());
 		try {
 			analyzeWarFlags.enablePreserveNestedTypes();
 			Assert.fail();
@@ -66,5 +131,57 @@ public class FlagsTest {
 			assertTrue(e.getMessage().contains("preserve nested types already set"));
 			assertEquals(Errors.PRESERVE_NESTED_TYPES_ALREADY_SPECIFIED, e.error());
 		}
+		try {
+			analyzeWarFlags.enableBcel();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("bcel already set"));
+			assertEquals(Errors.BCEL_ALREADY_SPECIFIED, e.error());
+		}
+		try {
+			analyzeWarFlags.enableCache();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("cache already set"));
+			assertEquals(Errors.CACHE_ALREADY_SPECIFIED, e.error());
+		}
+		RapidIterationFlags rapidIterationFlags = new RapidIterationFlags();
+		assertEquals("mapped=false, incremental=false, strict=false, debug=false, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", rapidIterationFlags.toString());
+		assertFalse(rapidIterationFlags.mapped());
+		rapidIterationFlags.enableMapped();
+		assertTrue(rapidIterationFlags.mapped());
+		assertEquals("mapped=true, incremental=false, strict=false, debug=false, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", rapidIterationFlags.toString());
+		try {
+			rapidIterationFlags.enableMapped();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("mapped already set"));
+			assertEquals(Errors.MAPPED_ALREADY_SPECIFIED, e.error());
+		}
+		assertFalse(rapidIterationFlags.incremental());
+		rapidIterationFlags.enableIncremental();
+		assertTrue(rapidIterationFlags.incremental());
+		assertEquals("mapped=true, incremental=true, strict=false, debug=false, watch=false, memoryCeiling=0, profile=false, quiet=false, failFast=0", rapidIterationFlags.toString());
+		try {
+			rapidIterationFlags.enableIncremental();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("incremental already set"));
+			assertEquals(Errors.INCREMENTAL_ALREADY_SPECIFIED, e.error());
+		}
+	}
+
+	@Test
+	public void testReportingProgressTo() throws Exception {
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		flags.enableProfile();
+		assertNull(flags.reportingProgressTo(System.err).progressConsole());
+		flags.reportProgressTo(System.out);
+		AnalyzeBinaryFlags copy = (AnalyzeBinaryFlags)flags.reportingProgressTo(System.err);
+		assertEquals(System.err, copy.progressConsole());
+		assertEquals(System.out, flags.progressConsole());
+		assertTrue(copy.bcel());
+		assertEquals(flags.profiler(), copy.profiler());
 	}
 }
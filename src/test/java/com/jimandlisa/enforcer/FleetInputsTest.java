@@ -0,0 +1,113 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FleetInputsTest {
+
+	static File fleet(String... names) throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		for (String name : names) {
+			Files.copy(TestUtils.sampleWar().toPath(), new File(directory, name).toPath());
+		}
+		return directory;
+	}
+
+	@Test
+	public void testBinaries() throws Exception {
+		assertNull(FleetInputs.binaries(TestUtils.sampleWar().getAbsolutePath()));
+		assertNull(FleetInputs.binaries("no-such-file.war"));
+		File directory = fleet("b.war", "a.jar", "c.ear");
+		Files.write(new File(directory, "notes.txt").toPath(), new byte[0]);
+		new File(directory, "d.jar").mkdirs();
+		assertEquals(Arrays.asList(new File(directory, "a.jar"), new File(directory, "b.war"), new File(directory, "c.ear")), FleetInputs.binaries(directory.getAbsolutePath()));
+		assertEquals(Arrays.asList(new File("x.jar"), new File("y.war")), FleetInputs.binaries("x.jar" + File.pathSeparator + "y.war"));
+		try {
+			FleetInputs.binaries(fleet().getAbsolutePath());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("no binaries in"));
+			assertEquals(Errors.NO_BINARIES_IN_FLEET, e.error());
+		}
+		try {
+			FleetInputs.binaries(directory, null); // Couldn't be listed.
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("cannot read " + directory));
+			assertEquals(Errors.CANNOT_READ_FILE, e.error());
+		}
+	}
+
+	@Test
+	public void testInputs() throws Exception {
+		File directory = fleet("a.war", "b.war");
+		FleetInputs inputs = new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), FleetInputs.binaries(directory.getAbsolutePath()));
+		assertEquals(new File(directory, "a.war"), inputs.binary());
+		assertEquals(2, inputs.binaries().size());
+		inputs.setIgnores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		inputs.setReflections(TestUtils.testClassesFile("SampleReflections.txt"));
+		inputs.setFixUnresolveds(TestUtils.testClassesFile("SampleFixUnresolveds.txt"));
+		inputs.setCacheDirectory(directory);
+		assertEquals(Arrays.asList(new File(directory, "a.war"), new File(directory, "b.war"), inputs.ignores(), inputs.reflections(), inputs.fixUnresolveds()), inputs.dataFiles());
+		assertTrue(inputs.toString().contains("binaries=["));
+		AnalyzeBinaryInputs binaryInputs = inputs.inputs(new File(directory, "b.war"));
+		assertEquals(new File(directory, "b.war"), binaryInputs.binary());
+		assertEquals(inputs.target(), binaryInputs.target());
+		assertEquals(inputs.ignores(), binaryInputs.ignores());
+		assertEquals(inputs.reflections(), binaryInputs.reflections());
+		assertEquals(inputs.fixUnresolveds(), binaryInputs.fixUnresolveds());
+		assertEquals(inputs.cacheDirectory(), binaryInputs.cacheDirectory());
+		assertTrue(binaryInputs.toString().contains("binary="));
+		binaryInputs = new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), FleetInputs.binaries(directory.getAbsolutePath())).inputs(new File(directory, "a.war"));
+		assertNull(binaryInputs.ignores());
+		try {
+			new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), Arrays.asList(new File(directory, "a.war"), TestUtils.sampleAllReferences()));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("is not a .jar, .war, or .ear"));
+			assertEquals(Errors.NOT_A_BINARY, e.error());
+		}
+		try {
+			new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), Arrays.asList(new File(directory, "a.war"), new File(fleet("a.war"), "a.war")));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.NAME_CONFLICTS_WITH_OTHER_FILE, e.error());
+		}
+		File other = fleet("a.jar");
+		try {
+			new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), Arrays.asList(new File(directory, "a.war"), new File(other, "a.jar")));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("would overwrite the output of another binary with the same name"));
+			assertEquals(Errors.NAME_CONFLICTS_WITH_OTHER_FILE, e.error());
+		}
+		try {
+			new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), Arrays.<File>asList());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.NO_BINARIES_IN_FLEET, e.error());
+		}
+	}
+}
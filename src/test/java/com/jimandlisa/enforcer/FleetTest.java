@@ -0,0 +1,163 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FleetTest {
+
+	private static String enforce(String... args) throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			Enforce.mainImpl(args, console);
+			return baos.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	@Test
+	public void testWorkers() throws Exception {
+		List<File> binaries = Arrays.asList(TestUtils.sampleWar(), TestUtils.sampleWar(), TestUtils.sampleWar());
+		long size = TestUtils.sampleWar().length() * Fleet.HEAP_PER_BINARY_BYTE;
+		assertEquals(3, Fleet.workers(binaries, 8, size * 100));
+		assertEquals(2, Fleet.workers(binaries, 2, size * 100));
+		assertEquals(2, Fleet.workers(binaries, 8, size * 2));
+		assertEquals(1, Fleet.workers(binaries, 8, 1));
+	}
+
+	@Test
+	public void testSummary() {
+		List<File> binaries = Arrays.asList(new File("a.jar"), new File("b.jar"), new File("c.jar"));
+		Set<String> a = new TreeSet<>(Arrays.asList("X!L!1!Y!L!1", "X!L!1!X!L!1"));
+		Set<String> c = new TreeSet<>(Arrays.asList("X!L!1!Y!L!1"));
+		assertEquals(Arrays.asList("X!L!1!X!L!1!1!a.jar", "X!L!1!Y!L!1!2!a.jar,c.jar"), Fleet.summary(binaries, Arrays.asList(a, null, c)));
+	}
+
+	@Test
+	public void testSharedCache() throws Exception {
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		ClassFileCache shared = new ClassFileCache(EnforcerUtils.ignores(TestUtils.testClassesFile("SampleIgnores.txt")), flags);
+		File directory = FleetInputsTest.fleet("a.war", "b.war");
+		FleetInputs inputs = new FleetInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml")), FleetInputs.binaries(directory.getAbsolutePath()));
+		inputs.setIgnores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		EnforcerUtils.resolve(inputs.inputs(inputs.binaries().get(0)), new LinkedHashSet<Problem>(), flags, shared);
+		int classFiles = shared.misses();
+		assertEquals(0, shared.hits());
+		EnforcerUtils.resolve(inputs.inputs(inputs.binaries().get(1)), new LinkedHashSet<Problem>(), flags, shared);
+		assertEquals(classFiles, shared.hits()); // Every class file in the second binary was already parsed for the first.
+		assertEquals(classFiles, shared.misses());
+	}
+
+	@Test
+	public void testEnforce() throws Exception {
+		File directory = FleetInputsTest.fleet("a.war", "b.war");
+		File output = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		String target = TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath();
+		String ignores = Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath();
+		String console = enforce(target, directory.getAbsolutePath(), output.getAbsolutePath(), ignores, Optionals.BCEL.indicator());
+		assertTrue(console, console.contains("binaries=[" + new File(directory, "a.war") + ", " + new File(directory, "b.war") + "]"));
+		assertTrue(console, console.indexOf("Binary " + new File(directory, "a.war")) < console.indexOf("Binary " + new File(directory, "b.war")));
+		File single = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		enforce(target, TestUtils.sampleWar().getAbsolutePath(), single.getAbsolutePath(), ignores, Optionals.BCEL.indicator());
+		String[] files = single.list();
+		Arrays.sort(files);
+		for (String name : new String[] { "a", "b" }) {
+			String[] fleetFiles = new File(output, name).list();
+			Arrays.sort(fleetFiles);
+			assertTrue(Arrays.equals(files, fleetFiles));
+			for (String file : files) {
+				assertTrue(file, Arrays.equals(Files.readAllBytes(new File(single, file).toPath()), Files.readAllBytes(new File(new File(output, name), file).toPath())));
+			}
+		}
+		List<String> summary = Files.readAllLines(new File(output, Fleet.SUMMARY_FILE_NAME).toPath(), StandardCharsets.UTF_8);
+		assertEquals(new TreeSet<>(Files.readAllLines(new Outputs(single).allComponentReferences().toPath(), StandardCharsets.UTF_8)).size(), summary.size());
+		for (String line : summary) {
+			assertTrue(line, line.endsWith("!2!a.war,b.war"));
+		}
+		// With the cache on, it's shared, and saved once.
+		output = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		enforce(target, directory.getAbsolutePath(), output.getAbsolutePath(), ignores, Optionals.BCEL.indicator(), Optionals.CACHE.indicator());
+		assertTrue(new File(output, ClassFileCache.CACHE_FILE_NAME).exists());
+		// Served, each binary is resolved through the server's cache instead.
+		FleetInputs inputs = new FleetInputs(Arrays.asList(new File(target)), FleetInputs.binaries(directory.getAbsolutePath()));
+		inputs.setIgnores(TestUtils.testClassesFile("SampleIgnores.txt"));
+		output = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+			flags.enableBcel();
+			Fleet.enforce(inputs, new Outputs(output), out, flags, new ResolutionCache(2));
+		}
+		assertEquals(summary, Files.readAllLines(new File(output, Fleet.SUMMARY_FILE_NAME).toPath(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		File directory = FleetInputsTest.fleet("a.war", "b.war");
+		String target = TestUtils.testClassesFile("SampleTarget2.yaml").getAbsolutePath();
+		String console = enforce(target, FleetInputsTest.fleet().getAbsolutePath(), TestUtils.targetDir(TestUtils.uniqueSubdir()).getAbsolutePath());
+		assertTrue(console, console.contains("no binaries in"));
+		console = enforce(target, new File(directory, "a.war").getAbsolutePath() + File.pathSeparator + TestUtils.sampleAllReferences().getAbsolutePath(), TestUtils.targetDir(TestUtils.uniqueSubdir()).getAbsolutePath());
+		assertTrue(console, console.contains("is not a .jar, .war, or .ear"));
+		try {
+			enforce(target, directory.getAbsolutePath(), TestUtils.targetDir(TestUtils.uniqueSubdir()).getAbsolutePath(), Optionals.WATCH.indicator());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.WATCH_NOT_SUPPORTED_WITH_FLEET, e.error());
+		}
+		try {
+			enforce(target + File.pathSeparator + TestUtils.testClassesFile("SampleTarget1.yaml").getAbsolutePath(), directory.getAbsolutePath(), TestUtils.targetDir(TestUtils.uniqueSubdir()).getAbsolutePath());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.MULTIPLE_TARGETS_NOT_SUPPORTED_WITH_FLEET, e.error());
+		}
+		// A binary with fatal problems doesn't stop the others.
+		File output = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		try {
+			enforce(target, directory.getAbsolutePath(), output.getAbsolutePath(), Optionals.BCEL.indicator(), Optionals.STRICT.indicator());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("2 of 2 binaries failed, first with: "));
+		}
+		assertTrue(new File(output, Fleet.SUMMARY_FILE_NAME).exists());
+		// A binary that can't be read fails on its own, and is left out of the summary.
+		Files.write(new File(directory, "c.war").toPath(), "not a war".getBytes(StandardCharsets.UTF_8));
+		output = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		String ignores = Optionals.IGNORES.indicator() + TestUtils.testClassesFile("SampleIgnores.txt").getAbsolutePath();
+		try {
+			enforce(target, directory.getAbsolutePath(), output.getAbsolutePath(), ignores, Optionals.BCEL.indicator());
+			Assert.fail();
+		} catch (ZipException e) {
+			// Not the enforcer's, so rethrown as is.
+		}
+		for (String line : Files.readAllLines(new File(output, Fleet.SUMMARY_FILE_NAME).toPath(), StandardCharsets.UTF_8)) {
+			assertTrue(line, line.endsWith("!2!a.war,b.war"));
+		}
+		new Fleet();
+	}
+}
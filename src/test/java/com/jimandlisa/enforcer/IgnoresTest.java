@@ -0,0 +1,151 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IgnoresTest {
+
+	private static final String[] APPLICATION_SEGMENTS = new String[] { "com", "example", "app", "billing", "orders", "service", "impl", "model", "web", "util", "dao",
+			"Customer", "Invoice", "OrderService", "OrderServiceImpl", "InvoiceDao", "Controller", "Helper$1", "Builder" };
+
+	// Names generated from the ignores themselves (so some match) plus application-style names (so most don't, as in a real binary).
+	private static List<String> typeNames(Ignores ignores, int count, Random random) {
+		List<String> prefixes = new ArrayList<>(ignores.prefixes());
+		List<String> typeNames = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (random.nextInt(4) == 0) {
+				typeNames.add(prefixes.get(random.nextInt(prefixes.size())) + "Foo" + (random.nextBoolean() ? "" : "$Bar"));
+				continue;
+			}
+			StringBuilder builder = new StringBuilder("com.example");
+			int segments = 2 + random.nextInt(5);
+			for (int j = 0; j < segments; j++) {
+				builder.append(".").append(APPLICATION_SEGMENTS[random.nextInt(APPLICATION_SEGMENTS.length)]);
+			}
+			typeNames.add(builder.toString());
+		}
+		return typeNames;
+	}
+
+	static Ignores ignores(String... prefixes) {
+		Ignores ignores = new Ignores();
+		for (String prefix : prefixes) {
+			assertTrue(ignores.add(prefix));
+		}
+		return ignores;
+	}
+
+	@Test
+	public void testPackages() {
+		Ignores ignores = ignores("org.", "com.google.");
+		assertTrue(ignores.matches("org.Foo"));
+		assertTrue(ignores.matches("org.json.JSONObject"));
+		assertTrue(ignores.matches("com.google.common.Lists"));
+		assertFalse(ignores.matches("org"));
+		assertFalse(ignores.matches("organization.Foo"));
+		assertFalse(ignores.matches("com.google"));
+		assertFalse(ignores.matches("com.googlex.Foo"));
+		assertFalse(ignores.matches("com.Foo"));
+		assertFalse(ignores.matches("Foo"));
+		assertFalse(ignores.add("org."));
+		assertEquals(2, ignores.size());
+		assertEquals(new HashSet<>(java.util.Arrays.asList("org.", "com.google.")), ignores.prefixes());
+	}
+
+	@Test
+	public void testVerbatim() {
+		Ignores ignores = ignores("com.foo.Bar", "com.baz", "Top", "com.qux.Nested$");
+		assertTrue(ignores.matches("com.foo.Bar"));
+		assertTrue(ignores.matches("com.foo.BarBaz"));
+		assertTrue(ignores.matches("com.foo.Bar$Inner"));
+		assertTrue(ignores.matches("com.foo.Bar.x.Y"));
+		assertFalse(ignores.matches("com.foo.Ba"));
+		assertFalse(ignores.matches("com.foo.Baz"));
+		assertTrue(ignores.matches("com.baz"));
+		assertTrue(ignores.matches("com.bazooka.Foo"));
+		assertTrue(ignores.matches("Top"));
+		assertTrue(ignores.matches("Topology.Foo"));
+		assertTrue(ignores.matches("com.qux.Nested$1"));
+		assertFalse(ignores.matches("com.qux.Nested"));
+	}
+
+	@Test
+	public void testEdgeCases() {
+		assertFalse(new Ignores().matches("com.foo.Bar"));
+		assertFalse(new Ignores().matches(""));
+		assertTrue(ignores("").matches("com.foo.Bar"));
+		assertTrue(ignores("").matches(""));
+		Ignores ignores = ignores(".");
+		assertTrue(ignores.matches(".foo"));
+		assertFalse(ignores.matches("foo."));
+		ignores = ignores("a..b.");
+		assertTrue(ignores.matches("a..b.C"));
+		assertFalse(ignores.matches("a.b.C"));
+	}
+
+	static String randomName(Random random, String[] segments, int maxSegments) {
+		StringBuilder builder = new StringBuilder();
+		int count = 1 + random.nextInt(maxSegments);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				builder.append(random.nextInt(10) == 0 ? "$" : ".");
+			}
+			builder.append(segments[random.nextInt(segments.length)]);
+		}
+		return builder.toString();
+	}
+
+	// The trie has to give exactly the same answers as checking startsWith against every ignore.
+	@Test
+	public void testMatchesLinear() throws Exception {
+		Random random = new Random(12345);
+		String[] segments = new String[] { "a", "ab", "abc", "b", "ba", "com", "co", "org", "Foo", "Foo1", "" };
+		for (int round = 0; round < 200; round++) {
+			Set<String> linear = new HashSet<>();
+			Ignores ignores = new Ignores();
+			for (int i = 0; i < random.nextInt(20); i++) {
+				String prefix = randomName(random, segments, 3) + (random.nextBoolean() ? "." : "");
+				linear.add(prefix);
+				ignores.add(prefix);
+			}
+			for (int i = 0; i < 200; i++) {
+				String typeName = randomName(random, segments, 5);
+				assertEquals(ignores.prefixes() + " " + typeName, EnforcerUtils.skip(typeName, linear), EnforcerUtils.skip(typeName, ignores));
+			}
+		}
+		Ignores ignores = EnforcerUtils.ignores(TestUtils.testClassesFile("BenchmarkIgnores.txt"));
+		List<String> typeNames = typeNames(ignores, 10000, new Random(54321));
+		for (String typeName : typeNames) {
+			assertEquals(typeName, EnforcerUtils.skip(typeName, ignores.prefixes()), EnforcerUtils.skip(typeName, ignores));
+		}
+		List<String> matched = new ArrayList<>();
+		for (String typeName : typeNames) {
+			if (ignores.matches(typeName)) {
+				matched.add(typeName);
+			}
+		}
+		assertTrue(matched.size() > 0 && matched.size() < typeNames.size());
+	}
+}
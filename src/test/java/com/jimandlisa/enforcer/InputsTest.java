@@ -19,6 +19,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -43,12 +44,43 @@ public class InputsTest {
 		analyzeBinaryInputs.setFixUnresolveds(TestUtils.testClassesFile("SampleFixUnresolveds.txt"));
 		assertNotNull(analyzeBinaryInputs.fixUnresolveds());
 		analyzeBinaryInputs.toString();
+		assertNull(analyzeBinaryInputs.cacheDirectory());
+		analyzeBinaryInputs.setCacheDirectory(TestUtils.targetDir(TestUtils.uniqueSubdir()));
+		assertNotNull(analyzeBinaryInputs.cacheDirectory());
+		assertTrue(analyzeBinaryInputs.toString().contains("cache-directory="));
+		try {
+			analyzeBinaryInputs.setCacheDirectory(new File("foo"));
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("already set cache directory"));
+			assertEquals(Errors.CACHE_ALREADY_SPECIFIED, e.error());
+		}
 		analyzeBinaryInputs = TestUtils.analyzeWarInputs(true, true, true);
 		analyzeBinaryInputs.toString();
+		assertEquals(Arrays.asList(analyzeBinaryInputs.binary(), analyzeBinaryInputs.ignores(), analyzeBinaryInputs.reflections(), analyzeBinaryInputs.fixUnresolveds()), analyzeBinaryInputs.dataFiles());
+		assertEquals(Arrays.asList(analyzeBinaryInputs.binary()), TestUtils.analyzeWarInputs(false, false, false).dataFiles());
 		RapidIterationInputs rapidIterationInputs = TestUtils.rapidIterationInputs();
 		assertNotNull(rapidIterationInputs.target());
 		assertNotNull(rapidIterationInputs.allReferences());
-		rapidIterationInputs.toString();
+		assertEquals(Arrays.asList(rapidIterationInputs.allReferences()), rapidIterationInputs.dataFiles());
+		assertTrue(rapidIterationInputs.toString().startsWith("target="));
+		assertEquals(Arrays.asList(rapidIterationInputs.target()), rapidIterationInputs.targets());
+		rapidIterationInputs = new RapidIterationInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget1.yaml"), TestUtils.testClassesFile("SampleTarget2.yaml")), TestUtils.sampleAllReferences());
+		assertEquals(TestUtils.testClassesFile("SampleTarget1.yaml"), rapidIterationInputs.target());
+		assertEquals(2, rapidIterationInputs.targets().size());
+		assertTrue(rapidIterationInputs.toString().startsWith("targets=["));
+		try {
+			new AnalyzeBinaryInputs(Arrays.asList(TestUtils.testClassesFile("SampleTarget2.yaml"), TestUtils.testClassesFile("SampleTarget2.yaml")), TestUtils.sampleWar());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.NAME_CONFLICTS_WITH_OTHER_FILE, e.error());
+		}
+		try {
+			new RapidIterationInputs(new java.util.ArrayList<File>(), TestUtils.sampleAllReferences());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.NOT_ENOUGH_ARGS, e.error());
+		}
 		try {
 			analyzeBinaryInputs.setIgnores(new File("foo"));
 			Assert.fail();
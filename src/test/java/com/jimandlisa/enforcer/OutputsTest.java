@@ -50,6 +50,7 @@ public class OutputsTest {
 		add(outputs.illegalReferences(), names);
 		add(outputs.illegalComponentReferences(), names);
 		add(outputs.allReferences(), names);
+		add(outputs.allReferencesBinary(), names);
 		add(outputs.allReferencesGephiNodes(), names);
 		add(outputs.allReferencesGephiEdges(), names);
 		add(outputs.allReferencesYeD(), names);
@@ -57,7 +58,9 @@ public class OutputsTest {
 		add(outputs.allComponentReferencesGephiNodes(), names);
 		add(outputs.allComponentReferencesGephiEdges(), names);
 		add(outputs.allComponentReferencesYeD(), names);
-		assertEquals(13, names.size());
+		add(outputs.correlationSnapshot(), names);
+		add(outputs.profile(), names);
+		assertEquals(16, names.size());
 		outputs.toString();
 	}
 }
@@ -69,4 +69,83 @@ public class ProblemTest {
 		problems.add(problem2);
 		assertEquals(2, problems.size());
 	}
+
+	@Test
+	public void testFromReference() {
+		Layer layer1 = new Layer("One", 1, null);
+		Layer layer2 = new Layer("Two", 2, null);
+		Component comp1 = new Component("Comp 1", layer1, null, null);
+		Component comp2 = new Component("Comp2", layer2, null, null);
+		Type type1 = new Type("com.foo.A");
+		type1.setComponent(comp1);
+		Type type2 = new Type("com.foo.B");
+		type2.setComponent(comp2);
+		Type type3 = new Type("com.foo.C");
+		type3.setComponent(comp1);
+		Reference reference = new Reference(type1, type2);
+		Set<Problem> problems = new HashSet<>();
+		for (boolean includeClasses : new boolean[] { true, false }) {
+			Problem lazy = new Problem(reference, includeClasses);
+			Problem eager = new Problem(reference.parseableDescription(includeClasses, false), includeClasses ? Errors.ILLEGAL_REFERENCE : Errors.ILLEGAL_COMPONENT_REFERENCE,
+					reference.humanReadableDescription(includeClasses, false));
+			assertEquals(eager.hashCode(), lazy.hashCode());
+			assertTrue(lazy.equals(eager));
+			assertTrue(eager.equals(lazy));
+			assertEquals(eager.error(), lazy.error());
+			assertEquals(0, lazy.compareTo(eager));
+			assertEquals(eager.toString(), lazy.toString());
+			assertEquals(eager.humanReadableToString(), lazy.humanReadableToString());
+			assertEquals(eager.description(), lazy.description());
+			assertEquals(eager.detail(), lazy.detail());
+			problems.add(lazy);
+			problems.add(eager);
+		}
+		assertEquals(2, problems.size());
+		// Same components, different classes.
+		Problem other = new Problem(new Reference(type3, type2), true);
+		assertFalse(other.equals(new Problem(reference, true)));
+		assertTrue(new Problem(new Reference(type3, type2), false).equals(new Problem(reference, false)));
+		assertFalse(new Problem(reference, true).equals(new Problem(reference, false)));
+		assertFalse(new Problem(new Reference(type2, type1), false).equals(new Problem(reference, false)));
+		assertTrue(other.compareTo(new Problem(reference, true)) > 0);
+	}
+
+	@Test
+	public void testSameReference() {
+		Layer layer = new Layer("One", 1, null);
+		Component comp = new Component("Comp", layer, null, null);
+		assertTrue(Problem.sameComponent(comp, new Component("Comp", new Layer("One", 1, null), null, null)));
+		assertFalse(Problem.sameComponent(comp, new Component("Other", layer, null, null)));
+		assertFalse(Problem.sameComponent(comp, new Component("Comp", new Layer("Other", 1, null), null, null)));
+		assertFalse(Problem.sameComponent(comp, new Component("Comp", new Layer("One", 2, null), null, null)));
+		Component other = new Component("Other", new Layer("Two", 2, null), null, null);
+		Type a = new Type("com.foo.A");
+		a.setComponent(comp);
+		Type b = new Type("com.foo.B");
+		b.setComponent(other);
+		Type c = new Type("com.foo.C");
+		c.setComponent(comp);
+		Type d = new Type("com.foo.D");
+		d.setComponent(other);
+		Type e = new Type("com.foo.E");
+		e.setComponent(new Component("Third", layer, null, null));
+		for (boolean includeClasses : new boolean[] { true, false }) {
+			Problem problem = new Problem(new Reference(a, b), includeClasses);
+			assertTrue(problem.sameReference(new Problem(new Reference(a, b), includeClasses)));
+			assertFalse(problem.sameReference(new Problem(new Reference(a, b), !includeClasses)));
+			// Different referring or referred-to classes, in the same components, only matter with classes.
+			assertEquals(!includeClasses, problem.sameReference(new Problem(new Reference(c, b), includeClasses)));
+			assertEquals(!includeClasses, problem.sameReference(new Problem(new Reference(a, d), includeClasses)));
+			// Different referring or referred-to components always matter.
+			assertFalse(problem.sameReference(new Problem(new Reference(e, b), includeClasses)));
+			assertFalse(problem.sameReference(new Problem(new Reference(a, e), includeClasses)));
+		}
+		// Same classes, different components.
+		Type otherA = new Type("com.foo.A");
+		otherA.setComponent(e.component());
+		Type otherB = new Type("com.foo.B");
+		otherB.setComponent(e.component());
+		assertFalse(new Problem(new Reference(a, b), true).sameReference(new Problem(new Reference(otherA, b), true)));
+		assertFalse(new Problem(new Reference(a, b), true).sameReference(new Problem(new Reference(a, otherB), true)));
+	}
 }
@@ -0,0 +1,151 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ProfilerTest {
+
+	private static String[] fields(String line) {
+		return line.split(Separators.REFERENCE_SEPARATOR.value());
+	}
+
+	@Test
+	public void testMeasure() throws Exception {
+		Profiler profiler = new Profiler();
+		assertTrue(profiler.isEmpty());
+		assertEquals(1, profiler.lines().size());
+		Profiler.Measurement outer = profiler.start(Phases.RESOLVE);
+		Profiler.Measurement inner = profiler.start(Phases.SUPPLEMENTAL_TYPES);
+		byte[][] garbage = new byte[64][];
+		for (int i = 0; i < garbage.length; i++) {
+			garbage[i] = new byte[1024 * 1024];
+		}
+		profiler.stop(inner);
+		profiler.stop(outer);
+		profiler.stop(profiler.start(Phases.PARSE_TARGET));
+		profiler.stop(profiler.start(Phases.PARSE_TARGET));
+		assertFalse(profiler.isEmpty());
+		List<String> lines = profiler.lines();
+		assertEquals(Profiler.HEADER, lines.get(0));
+		assertEquals(4, lines.size());
+		String[] parse = fields(lines.get(1));
+		String[] resolve = fields(lines.get(2));
+		String[] supplemental = fields(lines.get(3));
+		assertEquals(Phases.PARSE_TARGET.name(), parse[0]);
+		assertEquals("2", parse[1]);
+		assertEquals(Phases.RESOLVE.name(), resolve[0]);
+		assertEquals("1", resolve[1]);
+		assertEquals(Phases.SUPPLEMENTAL_TYPES.name(), supplemental[0]);
+		assertTrue(Long.parseLong(resolve[2]) >= Long.parseLong(supplemental[2]));
+		long allocated = Long.parseLong(supplemental[5]);
+		assertTrue(String.valueOf(allocated), allocated == -1 || allocated >= garbage.length * 1024L * 1024L);
+		assertTrue(Long.parseLong(supplemental[6]) > 0);
+		assertTrue(Long.parseLong(resolve[7]) <= Long.parseLong(supplemental[7]));
+		assertTrue(Long.parseLong(supplemental[8]) <= Long.parseLong(resolve[8]));
+		File file = new File(TestUtils.targetDir(TestUtils.uniqueSubdir()), Outputs.PROFILE_FILE_NAME);
+		file.getParentFile().mkdirs();
+		profiler.write(file);
+		assertEquals(lines, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+		assertTrue(profiler.isEmpty());
+	}
+
+	@Test
+	public void testAdd() {
+		assertEquals(15, Profiler.add(10, 5, 10));
+		assertEquals(-1, Profiler.add(-1, 5, 10));
+		assertEquals(-1, Profiler.add(10, -1, 10));
+		assertEquals(-1, Profiler.add(10, 5, -1));
+	}
+
+	@Test
+	public void testFlags() {
+		Flags flags = new Flags();
+		Profiler.Measurement measurement = Profiler.start(flags, Phases.CORRELATE);
+		assertNull(measurement);
+		Profiler.stop(flags, measurement);
+		flags.enableProfile();
+		Profiler.stop(flags, Profiler.start(flags, Phases.CORRELATE));
+		assertEquals(Phases.CORRELATE.name(), fields(flags.profiler().lines().get(1))[0]);
+	}
+
+	// A bean of the given interface whose methods return the given values by name (names, then values), and that records which methods were called.
+	private static <T> T bean(Class<T> type, final List<String> calls, Object... values) {
+		final Map<String, Object> returns = new HashMap<>();
+		for (int i = 0; i < values.length; i += 2) {
+			returns.put((String)values[i], values[i + 1]);
+		}
+		return type.cast(Proxy.newProxyInstance(ProfilerTest.class.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				calls.add(method.getName());
+				return returns.get(method.getName());
+			}
+		}));
+	}
+
+	private static <T> T bean(Class<T> type, Object... values) {
+		return bean(type, new ArrayList<String>(), values);
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertEquals(-1, Profiler.cpu(bean(ThreadMXBean.class, "isCurrentThreadCpuTimeSupported", false, "isThreadCpuTimeEnabled", true, "getCurrentThreadCpuTime", 5L)));
+		assertEquals(-1, Profiler.cpu(bean(ThreadMXBean.class, "isCurrentThreadCpuTimeSupported", true, "isThreadCpuTimeEnabled", false, "getCurrentThreadCpuTime", 5L)));
+		assertEquals(5, Profiler.cpu(bean(ThreadMXBean.class, "isCurrentThreadCpuTimeSupported", true, "isThreadCpuTimeEnabled", true, "getCurrentThreadCpuTime", 5L)));
+		assertEquals(-1, Profiler.processCpu(bean(OperatingSystemMXBean.class)));
+		assertEquals(5, Profiler.processCpu(bean(com.sun.management.OperatingSystemMXBean.class, "getProcessCpuTime", 5L)));
+		assertEquals(-1, Profiler.allocated(bean(ThreadMXBean.class)));
+		assertEquals(-1, Profiler.allocated(bean(com.sun.management.ThreadMXBean.class, "isThreadAllocatedMemorySupported", false, "isThreadAllocatedMemoryEnabled", true, "getThreadAllocatedBytes", 5L)));
+		assertEquals(-1, Profiler.allocated(bean(com.sun.management.ThreadMXBean.class, "isThreadAllocatedMemorySupported", true, "isThreadAllocatedMemoryEnabled", false, "getThreadAllocatedBytes", 5L)));
+		assertEquals(5, Profiler.allocated(bean(com.sun.management.ThreadMXBean.class, "isThreadAllocatedMemorySupported", true, "isThreadAllocatedMemoryEnabled", true, "getThreadAllocatedBytes", 5L)));
+	}
+
+	@Test
+	public void testPeakHeap() {
+		List<String> heapCalls = new ArrayList<>();
+		List<String> nonHeapCalls = new ArrayList<>();
+		List<MemoryPoolMXBean> pools = Arrays.asList(bean(MemoryPoolMXBean.class, heapCalls, "getType", MemoryType.HEAP, "getPeakUsage", new MemoryUsage(0, 7, 10, 20)),
+				bean(MemoryPoolMXBean.class, "getType", MemoryType.HEAP, "getPeakUsage", null),
+				bean(MemoryPoolMXBean.class, nonHeapCalls, "getType", MemoryType.NON_HEAP, "getPeakUsage", new MemoryUsage(0, 100, 100, 200)),
+				bean(MemoryPoolMXBean.class, "getType", MemoryType.HEAP, "getPeakUsage", new MemoryUsage(0, 3, 10, 20)));
+		assertEquals(10, Profiler.peakHeap(pools));
+		assertEquals(0, Profiler.peakHeap(new ArrayList<MemoryPoolMXBean>()));
+		Profiler.resetPeakHeap(pools);
+		assertTrue(heapCalls.contains("resetPeakUsage"));
+		assertFalse(nonHeapCalls.contains("resetPeakUsage"));
+	}
+}
@@ -0,0 +1,70 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ProgressTest {
+
+	@Test
+	public void testLine() {
+		long tenSeconds = TimeUnit.SECONDS.toNanos(10);
+		assertEquals("Scanning x.war: 1000 of 4000 classes (25%), 5000 references, 100 classes/s, 10s elapsed, about 30s left", Progress.line("Scanning x.war", "classes", 1000, 4000, 5000, tenSeconds));
+		assertEquals("Scanning x.war: 1000 classes, 5000 references, 100 classes/s, 10s elapsed", Progress.line("Scanning x.war", "classes", 1000, 0, 5000, tenSeconds));
+		assertEquals("Correlating references: 4000 of 4000 types (100%), 0 references, 400 types/s, 10s elapsed", Progress.line("Correlating references", "types", 4000, 4000, 0, tenSeconds));
+		assertEquals("Correlating references: 0 of 4000 types (0%), 0 references, 0 types/s, 0s elapsed", Progress.line("Correlating references", "types", 0, 4000, 0, 0));
+	}
+
+	@Test
+	public void testReport() throws Exception {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			try (Progress progress = new Progress(console, "Scanning x.war", "classes", 2, 10)) {
+				progress.grow(2);
+				progress.step(3);
+				progress.step(4);
+				long deadline = System.currentTimeMillis() + 10000;
+				while (baos.size() == 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+			}
+			String output = baos.toString(StandardCharsets.UTF_8.name());
+			assertTrue(output, output.startsWith("Scanning x.war: 2 of 4 classes (50%), 7 references, "));
+		}
+	}
+
+	@Test
+	public void testQuiet() throws Exception {
+		Flags flags = new AnalyzeBinaryFlags();
+		try (Progress progress = Progress.start(flags, "Scanning x.war", "classes", 0)) {
+			progress.step(1);
+		}
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			flags.enableQuiet();
+			flags.reportProgressTo(console);
+			try (Progress progress = new Progress(flags.progressConsole(), "Scanning x.war", "classes", 0, 10)) {
+				progress.step(1);
+				Thread.sleep(50);
+			}
+			assertEquals(0, baos.size());
+		}
+	}
+}
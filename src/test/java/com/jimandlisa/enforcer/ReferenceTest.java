@@ -53,6 +53,10 @@ public class ReferenceTest {
 		assertTrue(reference1.equals(reference1));
 		assertEquals(0, reference1.compareTo(reference1));
 		assertFalse(reference1.equals(reference2));
+		assertFalse(reference1.equals(new Reference(type1, type3))); // Same referring type, different referred-to type.
+		Type sameName = new Type(type2.name());
+		sameName.setComponent(comp1);
+		assertTrue(reference1.equals(new Reference(type1, sameName))); // Equal by name.
 		assertEquals(4, reference1.compareTo(reference2));
 		assertEquals(type2, reference2.referringType());
 		assertEquals(type1, reference2.referredToType());
@@ -0,0 +1,142 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResolutionCacheTest {
+
+	@Test
+	public void testKey() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File copy = new File(directory, "copy.txt");
+		Files.copy(TestUtils.sampleAllReferences().toPath(), copy.toPath());
+		String key = ResolutionCache.key(TestUtils.rapidIterationInputs(), new RapidIterationFlags());
+		assertEquals(key, ResolutionCache.key(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget1.yaml"), copy), new RapidIterationFlags())); // Content, not names.
+		Files.write(copy.toPath(), "changed".getBytes(StandardCharsets.UTF_8), java.nio.file.StandardOpenOption.APPEND);
+		assertNotEquals(key, ResolutionCache.key(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget2.yaml"), copy), new RapidIterationFlags()));
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		key = ResolutionCache.key(TestUtils.analyzeWarInputs(false, false, false), flags);
+		assertNotEquals(key, ResolutionCache.key(TestUtils.analyzeWarInputs(true, false, false), flags));
+		flags.enableBcel();
+		assertNotEquals(key, ResolutionCache.key(TestUtils.analyzeWarInputs(false, false, false), flags));
+	}
+
+	@Test
+	public void testResolve() throws Exception {
+		try {
+			new ResolutionCache(0);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("invalid cache size 0"));
+			assertEquals(Errors.INVALID_SERVER_ARG, e.error());
+		}
+		ResolutionCache cache = new ResolutionCache(1);
+		ResolvedTypes resolved = cache.resolve(TestUtils.rapidIterationInputs(), new RapidIterationFlags());
+		assertEquals(8, resolved.size());
+		assertSame(resolved, cache.resolve(TestUtils.rapidIterationInputs(), new RapidIterationFlags()));
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		cache.resolve(TestUtils.analyzeWarInputs(true, false, false), flags); // Evicts the least recently used.
+		assertEquals(1, cache.size());
+		assertNotSame(resolved, cache.resolve(TestUtils.rapidIterationInputs(), new RapidIterationFlags()));
+		assertEquals(3, cache.misses());
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File bad = new File(directory, "bad.bin");
+		Files.write(bad.toPath(), "bad".getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.resolve(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget2.yaml"), bad), new RapidIterationFlags());
+				Assert.fail();
+			} catch (EnforcerException e) {
+				assertEquals(Errors.MALFORMED_ALL_REFERENCES_FILE, e.error());
+			}
+		}
+		assertEquals(5, cache.misses()); // Failures aren't kept.
+	}
+
+	// A resolution that fails after its entry was evicted mustn't remove the entry that replaced it.
+	@Test
+	public void testEvictedWhileResolving() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ResolutionCache cache = new ResolutionCache(1) {
+			@Override
+			ResolvedTypes uncached(Inputs inputs, Flags flags) throws Exception {
+				if (inputs.target().getName().equals("SampleTarget1.yaml")) {
+					started.countDown();
+					release.await();
+					throw new EnforcerException("failed", Errors.MALFORMED_ALL_REFERENCES_FILE);
+				}
+				return super.uncached(inputs, flags);
+			}
+		};
+		final Exception[] failure = new Exception[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					cache.resolve(new RapidIterationInputs(TestUtils.testClassesFile("SampleTarget1.yaml"), TestUtils.sampleAllReferences()), new RapidIterationFlags());
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		thread.start();
+		started.await();
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		ResolvedTypes resolved = cache.resolve(TestUtils.analyzeWarInputs(true, false, false), flags); // Evicts the one still resolving.
+		release.countDown();
+		thread.join(30000);
+		assertEquals("failed", failure[0].getMessage());
+		assertEquals(1, cache.size());
+		assertSame(resolved, cache.resolve(TestUtils.analyzeWarInputs(true, false, false), flags));
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	public void testResolveError() throws Exception {
+		ResolutionCache cache = new ResolutionCache(1) {
+			@Override
+			ResolvedTypes uncached(Inputs inputs, Flags flags) {
+				throw new StackOverflowError();
+			}
+		};
+		try {
+			cache.resolve(TestUtils.rapidIterationInputs(), new RapidIterationFlags());
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals("error resolving types: java.lang.StackOverflowError", e.getMessage());
+			assertEquals(Errors.SERVER_ERROR, e.error());
+		}
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,70 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ResolvedTypesTest {
+
+	@Test
+	public void doTest() throws Exception {
+		Map<String, Type> types = EnforcerUtils.resolve(TestUtils.rapidIterationInputs(), new LinkedHashSet<Problem>());
+		types.put("com.jimandlisa.Synthesized", new Type("com.jimandlisa.Synthesized", true));
+		Set<Problem> problems = new LinkedHashSet<>();
+		problems.add(new Problem("com.jimandlisa.Synthesized", Errors.UNRESOLVED_REFERENCE));
+		ResolvedTypes resolved = new ResolvedTypes(types, problems);
+		assertEquals(types.size(), resolved.size());
+		for (int i = 0; i < 2; i++) {
+			Map<String, Type> copy = resolved.types(); // Fresh each time, so each run can correlate its own.
+			assertEquals(types.keySet(), copy.keySet());
+			for (Type type : types.values()) {
+				Type copied = copy.get(type.name());
+				assertNotSame(type, copied);
+				assertEquals(type.isSynthesized(), copied.isSynthesized());
+				assertEquals(type.referenceNames(), copied.referenceNames());
+				assertEquals(type.references(), copied.references());
+				assertTrue(copied.component() == null);
+			}
+			new TypeGraph(copy);
+		}
+		Set<Problem> copiedProblems = resolved.problems();
+		assertEquals(problems, copiedProblems);
+		copiedProblems.add(new Problem("another", Errors.UNRESOLVED_REFERENCE));
+		assertEquals(1, resolved.problems().size());
+	}
+
+	@Test
+	public void testOutsideReference() {
+		Map<String, Type> types = new HashMap<>();
+		Type type = new Type("com.jimandlisa.Inside");
+		Type outside = new Type("com.jimandlisa.Outside");
+		type.addReferenceName(outside.name());
+		type.addReference(outside);
+		types.put(type.name(), type);
+		ResolvedTypes resolved = new ResolvedTypes(types, new LinkedHashSet<Problem>());
+		assertEquals(2, resolved.size()); // Referred-to types not in the map are kept too, same as TypeGraph.
+		Map<String, Type> copy = resolved.types();
+		assertEquals(outside.name(), copy.get(type.name()).references().iterator().next().name());
+		assertTrue(copy.get(outside.name()).references().isEmpty());
+	}
+}
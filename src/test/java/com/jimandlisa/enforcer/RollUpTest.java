@@ -64,4 +64,40 @@ public class RollUpTest {
 		assertEquals(Errors.UNUSED_PACKAGE, problems.iterator().next().error());
 		assertTrue(problems.iterator().next().description().contains("unused package"));
 	}
+
+	@Test
+	public void testLongestMatch() {
+		Layer layer = new Layer("L1", 1, null);
+		Component outer = new Component("Outer", layer, null, null);
+		outer.packages().add("com.foo");
+		Component inner = new Component("Inner", layer, null, null);
+		inner.packages().add("com.foo.bar");
+		Component clazz = new Component("Clazz", layer, null, null);
+		clazz.packages().add("com.foo.bar.Baz");
+		Component prefix = new Component("Prefix", layer, null, null);
+		prefix.packages().add("com.fo");
+		Set<Component> components = new HashSet<>();
+		components.add(outer);
+		components.add(inner);
+		components.add(clazz);
+		components.add(prefix);
+		RollUp rollUp = new RollUp();
+		rollUp.add(components);
+		assertEquals(outer, rollUp.get("com.foo"));
+		assertEquals(outer, rollUp.get("com.foo.Qux"));
+		assertEquals(outer, rollUp.get("com.foo.barber.Qux"));
+		assertEquals(inner, rollUp.get("com.foo.bar.Qux"));
+		assertEquals(inner, rollUp.get("com.foo.bar.deeper.Qux$Nested"));
+		assertEquals(clazz, rollUp.get("com.foo.bar.Baz"));
+		assertEquals(clazz, rollUp.get("com.foo.bar.Baz$Nested"));
+		assertEquals(inner, rollUp.get("com.foo.bar.Bazooka"));
+		assertNull(rollUp.get("com.foobar.Qux"));
+		assertNull(rollUp.get("com.fob.Qux"));
+		assertNull(rollUp.get("com"));
+		assertNull(rollUp.get(""));
+		Set<Problem> problems = new HashSet<>();
+		rollUp.validate(problems);
+		assertEquals(1, problems.size());
+		assertTrue(problems.iterator().next().description().contains("unused package com.fo "));
+	}
 }
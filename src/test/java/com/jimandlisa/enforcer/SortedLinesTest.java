@@ -0,0 +1,78 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SortedLinesTest {
+
+	private static byte[] expected(Set<String> lines) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(baos)) {
+			Enforce.output(new HashSet<>(lines), out);
+		}
+		return baos.toByteArray();
+	}
+
+	private static byte[] actual(Iterable<String> lines, File spillDirectory, long ceiling, int expectedRuns) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(baos); SortedLines sorted = new SortedLines(spillDirectory, ceiling)) {
+			for (String line : lines) {
+				sorted.add(line);
+			}
+			sorted.print(out);
+			if (expectedRuns >= 0) {
+				assertEquals(expectedRuns, sorted.runs());
+			} else {
+				assertTrue(sorted.runs() > 1);
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void testCost() {
+		assertTrue(SortedLines.cost("abcd") > SortedLines.cost("ab"));
+	}
+
+	@Test
+	public void testSortAndSpill() throws Exception {
+		File dir = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		dir.mkdirs();
+		Random random = new Random(1234);
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			lines.add("com.foo.Type" + random.nextInt(2000) + "!Comp" + random.nextInt(10)); // Lots of duplicates, within and across runs.
+		}
+		byte[] expected = expected(new HashSet<>(lines));
+		assertArrayEquals(expected, actual(lines, dir, 0, 0));
+		assertArrayEquals(expected, actual(lines, dir, 100 * SortedLines.cost(lines.get(0)), -1));
+		assertArrayEquals(expected, actual(lines, dir, 1, -1));
+		assertEquals(0, dir.list().length); // Spilled runs are deleted.
+		assertArrayEquals(expected(new HashSet<String>()), actual(new HashSet<String>(), dir, 1, 0));
+	}
+}
@@ -0,0 +1,215 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+// Sizes can be raised for scale testing, for example: mvn test -Dtest=SyntheticCodebaseTest -Dsynthetic.types=50000 -Dsynthetic.references=2000000
+public class SyntheticCodebaseTest {
+
+	private static final int TYPES = Integer.getInteger("synthetic.types", 2000);
+	private static final int REFERENCES = Integer.getInteger("synthetic.references", 20000);
+	private static final int COMPONENTS = Integer.getInteger("synthetic.components", 40);
+
+	private static SyntheticCodebase codebase() {
+		SyntheticCodebase codebase = new SyntheticCodebase(TYPES, REFERENCES, COMPONENTS);
+		codebase.setLayers(5);
+		codebase.setDomains(3);
+		codebase.setPackagesPerComponent(3);
+		codebase.setClassesPerComponent(2);
+		codebase.setFanOutSkew(2.0);
+		codebase.setIllegalRate(0.1);
+		return codebase;
+	}
+
+	private static String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8.name());
+	}
+
+	private static void fail(Runnable runnable) {
+		try {
+			runnable.run();
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.INVALID_SYNTHETIC_CODEBASE, e.error());
+			assertTrue(e.getMessage().startsWith("invalid synthetic codebase: "));
+		}
+	}
+
+	@Test
+	public void testInvalid() {
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				new SyntheticCodebase(0, 0, 1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				new SyntheticCodebase(1, 0, 0);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				new SyntheticCodebase(2, 3, 1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				new SyntheticCodebase(2, -1, 1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				new SyntheticCodebase(2, 0, 3);
+			}
+		});
+		final SyntheticCodebase codebase = new SyntheticCodebase(4, 0, 2);
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setLayers(0);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setDomains(-1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setPackagesPerComponent(0);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setClassesPerComponent(-1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setClassesPerComponent(2);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setFanOutSkew(0.5);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setIllegalRate(-0.1);
+			}
+		});
+		fail(new Runnable() {
+			@Override
+			public void run() {
+				codebase.setIllegalRate(1.1);
+			}
+		});
+	}
+
+	@Test
+	public void testGenerate() throws Exception {
+		SyntheticCodebase codebase = codebase();
+		assertEquals(REFERENCES, codebase.referenceCount());
+		double rate = codebase.illegalReferenceCount() / (double)REFERENCES;
+		assertTrue(String.valueOf(rate), rate > 0.05 && rate < 0.15);
+		Map<String, Type> types = codebase.types();
+		int references = 0;
+		int maxReferences = 0;
+		for (Type type : types.values()) {
+			references += type.references().size();
+			maxReferences = Math.max(maxReferences, type.references().size());
+		}
+		assertEquals(REFERENCES, references);
+		assertTrue(maxReferences > 2 * REFERENCES / TYPES); // Skewed.
+		assertTrue(types != codebase.types());
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File first = new File(directory, "first.txt");
+		File second = new File(directory, "second.txt");
+		codebase.writeAllReferences(first);
+		codebase().writeAllReferences(second);
+		assertEquals(read(first), read(second));
+		codebase.setSeed(43);
+		codebase.writeAllReferences(second);
+		assertTrue(!read(first).equals(read(second)));
+		// Saturated: one component of two types can't hold more than two references.
+		codebase = new SyntheticCodebase(2, 2, 1);
+		codebase.setIllegalRate(1.0);
+		assertEquals(2, codebase.referenceCount());
+		assertEquals(0, codebase.illegalReferenceCount());
+		// Short: with no illegal references, two components of two types hold only eight (four within them, four from the higher to the lower), so
+		// generating stops after that many rounds without progress.
+		codebase = new SyntheticCodebase(4, 12, 2);
+		assertEquals(8, codebase.referenceCount());
+		assertEquals(0, codebase.illegalReferenceCount());
+	}
+
+	private static void check(SyntheticCodebase codebase, Inputs inputs, Flags flags, File expected) throws Exception {
+		EnforcementResult result = Enforce.enforce(inputs, flags);
+		assertEquals(codebase.illegalReferenceCount(), result.problems(Errors.ILLEGAL_REFERENCE).size());
+		assertTrue(result.problems(Errors.UNUSED_PACKAGE).isEmpty());
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name())) {
+			result.write(new Outputs(directory), console);
+		}
+		assertEquals(read(expected), read(new Outputs(directory).allReferences()));
+	}
+
+	@Test
+	public void testEnforce() throws Exception {
+		SyntheticCodebase codebase = codebase();
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File target = new File(directory, "synthetic.yaml");
+		File allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + ".txt");
+		File jar = new File(directory, "synthetic.jar");
+		codebase.writeTarget(target);
+		codebase.writeAllReferences(allReferences);
+		codebase.writeJar(jar);
+		assertEquals(COMPONENTS, TargetUtils.parse(target).components().size());
+		check(codebase, new RapidIterationInputs(target, allReferences), new RapidIterationFlags(), allReferences);
+		File ignores = new File(directory, "ignores.txt");
+		Files.write(ignores.toPath(), "java.\n".getBytes(StandardCharsets.UTF_8));
+		AnalyzeBinaryInputs inputs = new AnalyzeBinaryInputs(target, jar);
+		inputs.setIgnores(ignores);
+		AnalyzeBinaryFlags flags = new AnalyzeBinaryFlags();
+		flags.enableBcel();
+		check(codebase, inputs, flags, allReferences);
+	}
+}
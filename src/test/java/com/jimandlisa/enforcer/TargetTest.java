@@ -16,6 +16,10 @@ package com.jimandlisa.enforcer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
 import org.junit.Test;
 
 public class TargetTest {
@@ -39,4 +43,29 @@ public class TargetTest {
 		assertEquals(1, target.components().size());
 		assertEquals(component, target.components().values().iterator().next());
 	}
+
+	@Test
+	public void testNumberComponents() throws Exception {
+		Target target = TargetUtils.parse(TestUtils.testClassesFile("SampleTarget2.yaml"));
+		List<String> names = new ArrayList<>(new TreeSet<>(target.components().keySet()));
+		for (int id = 0; id < names.size(); id++) {
+			assertEquals(id, target.components().get(names.get(id)).id());
+		}
+		Component unnumbered = new Component("Other", target.layers().values().iterator().next(), null, null);
+		assertEquals(-1, unnumbered.id());
+		for (Component referring : target.components().values()) {
+			for (Component referredTo : target.components().values()) {
+				assertEquals(Component.kind(referring, referredTo), referring.kind(referredTo));
+			}
+			assertEquals(Component.kind(referring, unnumbered), referring.kind(unnumbered));
+			assertEquals(Component.kind(unnumbered, referring), unnumbered.kind(referring));
+		}
+		// Components of another target are never looked up in this target's kinds, even with the same ids.
+		Target other = TargetUtils.parse(TestUtils.testClassesFile("BrokenTarget.yaml"));
+		for (Component referring : target.components().values()) {
+			for (Component referredTo : other.components().values()) {
+				assertEquals(Component.kind(referring, referredTo), referring.kind(referredTo));
+			}
+		}
+	}
 }
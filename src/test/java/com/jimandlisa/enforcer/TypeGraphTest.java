@@ -0,0 +1,261 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TypeGraphTest {
+
+	static Type type(String name, Component component, Map<String, Type> types) {
+		Type type = new Type(name);
+		type.setComponent(component);
+		component.add(type);
+		types.put(name, type);
+		return type;
+	}
+
+	static void refer(Type from, Type to) {
+		from.addReferenceName(to.name());
+		from.addReference(to);
+	}
+
+	@Test
+	public void testGraph() {
+		Layer layer1 = new Layer("One", 1, null);
+		Layer layer2 = new Layer("Two", 2, null);
+		Component comp1 = new Component("Comp1", layer1, null, null);
+		Component comp2 = new Component("Comp2", layer2, null, null);
+		Map<String, Type> types = new HashMap<>();
+		Type foo = type("foo", comp1, types);
+		Type bar = type("bar", comp1, types);
+		Type baz = type("baz", comp2, types);
+		Type outside = new Type("outside");
+		outside.setComponent(comp2);
+		refer(foo, baz);
+		refer(foo, bar);
+		refer(baz, bar);
+		refer(baz, outside);
+		assertTrue(comp1.references().isEmpty());
+		TypeGraph graph = new TypeGraph(types);
+		assertEquals(4, graph.size());
+		assertEquals(4, graph.referenceCount());
+		assertEquals(0, graph.id("bar"));
+		assertEquals(1, graph.id("baz"));
+		assertEquals(2, graph.id("foo"));
+		assertEquals(3, graph.id("outside"));
+		assertEquals(-1, graph.id("missing"));
+		assertEquals(foo, graph.type(2));
+		assertEquals(2, foo.id());
+		assertEquals(graph.firstReference(2), graph.endReference(1));
+		assertEquals(0, graph.target(graph.firstReference(2)));
+		assertEquals(1, graph.target(graph.firstReference(2) + 1));
+		assertEquals(Arrays.asList(bar, baz), new ArrayList<>(foo.references()));
+		assertEquals(Arrays.asList("bar", "baz"), new ArrayList<>(foo.referenceNames()));
+		assertTrue(bar.references().isEmpty());
+		assertTrue(outside.referenceNames().isEmpty());
+		assertEquals(2, comp1.references().size());
+		assertTrue(comp1.references().contains(new Reference(foo, baz)));
+		assertEquals(new HashSet<>(Arrays.asList(new Reference(baz, bar), new Reference(baz, outside))), comp2.references());
+		try {
+			foo.addReference(baz);
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertTrue(e.getMessage().contains("type foo is already in graph"));
+			assertEquals(Errors.TYPE_ALREADY_IN_GRAPH, e.error());
+		}
+		try {
+			foo.addReferenceName("baz");
+			Assert.fail();
+		} catch (EnforcerException e) {
+			assertEquals(Errors.TYPE_ALREADY_IN_GRAPH, e.error());
+		}
+		List<Reference> references = new ArrayList<>();
+		for (Reference reference : graph.references()) {
+			references.add(reference);
+		}
+		assertEquals(Arrays.asList(new Reference(baz, bar), new Reference(baz, outside), new Reference(foo, bar), new Reference(foo, baz)), references);
+		Iterator<Reference> iterator = graph.references().iterator();
+		for (int i = 0; i < 4; i++) {
+			iterator.next();
+		}
+		assertFalse(iterator.hasNext());
+		try {
+			iterator.next();
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+			// Expected.
+		}
+		assertFalse(new TypeGraph(new HashMap<String, Type>()).references().iterator().hasNext());
+	}
+
+	// References are read through views of the graph's arrays, which have to behave like the sets they replace.
+	@Test
+	public void testViews() {
+		Layer layer = new Layer("One", 1, null);
+		Component component = new Component("Comp", layer, null, null);
+		Map<String, Type> types = new HashMap<>();
+		Type foo = type("foo", component, types);
+		Type bar = type("bar", component, types);
+		Type baz = type("baz", component, types);
+		Type outside = new Type("outside");
+		outside.setComponent(component);
+		refer(foo, bar);
+		refer(foo, baz);
+		refer(foo, outside);
+		refer(bar, baz);
+		refer(bar, foo);
+		refer(bar, outside);
+		refer(baz, outside);
+		TypeGraph graph = new TypeGraph(types); // More references than types, so the targets have to grow.
+		assertEquals(4, graph.size());
+		assertEquals(7, graph.referenceCount());
+		assertEquals(Arrays.asList(baz, foo, outside), new ArrayList<>(bar.references()));
+		assertEquals(3, foo.references().size());
+		assertTrue(foo.references().contains(outside));
+		assertTrue(foo.references().contains(new Type("baz")));
+		assertFalse(foo.references().contains(foo));
+		assertFalse(foo.references().contains(new Type("missing")));
+		assertFalse(foo.references().contains("bar"));
+		assertTrue(foo.referenceNames().contains("bar"));
+		assertFalse(foo.referenceNames().contains("foo"));
+		assertFalse(foo.referenceNames().contains("missing"));
+		assertFalse(foo.referenceNames().contains(bar));
+		assertEquals(new HashSet<>(Arrays.asList("outside")), baz.referenceNames());
+		try {
+			foo.references().add(foo);
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// Expected.
+		}
+		try {
+			foo.referenceNames().add("foo");
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// Expected.
+		}
+		Iterator<String> iterator = baz.referenceNames().iterator();
+		assertEquals("outside", iterator.next());
+		assertFalse(iterator.hasNext());
+		try {
+			iterator.next();
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+			// Expected.
+		}
+	}
+
+	// Iterating the graph has to give the same order as sorting the references, because output depends on it.
+	@Test
+	public void testSortedOrder() {
+		Layer layer = new Layer("One", 1, null);
+		Component component = new Component("Comp", layer, null, null);
+		Map<String, Type> types = new HashMap<>();
+		String[] segments = new String[] { "a", "a1", "b", "B", "_", "$", "x$y", "z" };
+		Random random = new Random(99);
+		for (int i = 0; i < 60; i++) {
+			String name = "com." + segments[random.nextInt(segments.length)] + "." + segments[random.nextInt(segments.length)];
+			if (!types.containsKey(name)) {
+				type(name, component, types);
+			}
+		}
+		List<Type> all = new ArrayList<>(types.values());
+		Set<Reference> expected = new LinkedHashSet<>();
+		for (Type from : all) {
+			for (int i = 0; i < 5; i++) {
+				Type to = all.get(random.nextInt(all.size()));
+				if (!from.references().contains(to)) {
+					refer(from, to);
+					expected.add(new Reference(from, to));
+				}
+			}
+		}
+		List<Reference> actual = new ArrayList<>();
+		for (Reference reference : new TypeGraph(types).references()) {
+			actual.add(reference);
+		}
+		assertEquals(CollectionUtils.sort(new ArrayList<>(expected)), actual);
+	}
+
+	@Test
+	public void testOutputMatches() throws Exception {
+		Layer layer1 = new Layer("One", 1, null);
+		Component comp1 = new Component("Comp1", layer1, null, null);
+		Component comp2 = new Component("Comp2", layer1, null, null);
+		Layer layer2 = new Layer("Two", 2, null);
+		Component comp3 = new Component("Comp3", layer2, null, null);
+		Map<String, Type> types = new HashMap<>();
+		Type type1 = type("foo", comp1, types);
+		Type type2 = type("bar", comp1, types);
+		Type type3 = type("baz", comp2, types);
+		Type type4 = type("cat", comp3, types);
+		Type type5 = type("foo$1", comp3, types);
+		refer(type1, type2);
+		refer(type1, type3);
+		refer(type2, type3);
+		refer(type4, type1);
+		refer(type1, type4);
+		refer(type5, type1);
+		refer(type1, type5);
+		Set<Reference> references = new HashSet<>();
+		for (Type type : types.values()) {
+			for (Type referredTo : type.references()) {
+				references.add(new Reference(type, referredTo));
+			}
+		}
+		TypeGraph graph = new TypeGraph(types);
+		for (boolean includeClasses : new boolean[] { true, false }) {
+			Outputs fromSet = TestUtils.outputs(TestUtils.uniqueSubdir());
+			Outputs fromGraph = TestUtils.outputs(TestUtils.uniqueSubdir());
+			Enforce.outputReferences(references, includeClasses, fromSet.allReferences(), fromSet.allReferencesGephiNodes(), fromSet.allReferencesGephiEdges(), fromSet.allReferencesYeD());
+			Enforce.outputReferences(graph, includeClasses, fromGraph.allReferences(), fromGraph.allReferencesGephiNodes(), fromGraph.allReferencesGephiEdges(), fromGraph.allReferencesYeD());
+			compare(fromSet.allReferences(), fromGraph.allReferences());
+			compare(fromSet.allReferencesGephiNodes(), fromGraph.allReferencesGephiNodes());
+			compare(fromSet.allReferencesGephiEdges(), fromGraph.allReferencesGephiEdges());
+			compare(fromSet.allReferencesYeD(), fromGraph.allReferencesYeD());
+			Outputs spilled = TestUtils.outputs(TestUtils.uniqueSubdir());
+			Artifact.write(Enforce.referenceArtifacts(graph.references(), includeClasses, includeClasses, spilled.allReferences(), spilled.allReferencesGephiNodes(), spilled.allReferencesGephiEdges(),
+					spilled.allReferencesYeD(), spilled.outputDirectory(), 1)); // Spills every line.
+			compare(fromSet.allReferences(), spilled.allReferences());
+			compare(fromSet.allReferencesGephiNodes(), spilled.allReferencesGephiNodes());
+			compare(fromSet.allReferencesGephiEdges(), spilled.allReferencesGephiEdges());
+			compare(fromSet.allReferencesYeD(), spilled.allReferencesYeD());
+			assertEquals(4, spilled.outputDirectory().list().length);
+		}
+	}
+
+	static void compare(File expected, File actual) throws Exception {
+		assertTrue(expected.length() > 0);
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+	}
+}
@@ -0,0 +1,220 @@
+// Copyright 2019 jimandlisa.com.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+// to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+// and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+
+package com.jimandlisa.enforcer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WatcherTest {
+
+	private static int count(ByteArrayOutputStream baos, String text) throws Exception {
+		String console;
+		synchronized (baos) {
+			console = baos.toString(StandardCharsets.UTF_8.name());
+		}
+		int count = 0;
+		for (int index = console.indexOf(text); index >= 0; index = console.indexOf(text, index + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	private static void await(ByteArrayOutputStream baos, String text, int count) throws Exception {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (count(baos, text) < count) {
+			if (System.currentTimeMillis() > deadline) {
+				Assert.fail("timed out waiting for " + count + " of " + text + " in " + baos.toString(StandardCharsets.UTF_8.name()));
+			}
+			Thread.sleep(20);
+		}
+	}
+
+	private static void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFiles() {
+		assertEquals(Arrays.asList(TestUtils.rapidIterationInputs().target(), TestUtils.rapidIterationInputs().allReferences()), Watcher.files(TestUtils.rapidIterationInputs()));
+		AnalyzeBinaryInputs inputs = TestUtils.analyzeWarInputs(true, false, true);
+		assertEquals(Arrays.asList(inputs.target(), inputs.binary(), inputs.ignores(), inputs.fixUnresolveds()), Watcher.files(inputs));
+	}
+
+	@Test
+	public void testWatch() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File target = new File(directory, "target.yaml");
+		String yaml = TestUtils.readTestClassesFile("SampleTarget2.yaml");
+		write(target, yaml);
+		File allReferences = new File(directory, Outputs.ALL_REFERENCES_BASE_NAME + "_input.txt");
+		Files.copy(TestUtils.sampleAllReferences().toPath(), allReferences.toPath());
+		Outputs outputs = new Outputs(directory); // Same directory as the inputs, so output changes must not trigger runs.
+		RapidIterationFlags flags = new RapidIterationFlags();
+		flags.enableWatch();
+		flags.enableIncremental();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name()) {
+			@Override
+			public void println(String line) {
+				synchronized (baos) {
+					super.println(line);
+				}
+			}
+		};
+		final Watcher watcher = new Watcher(new RapidIterationInputs(target, allReferences), outputs, console, flags);
+		final Exception[] failure = new Exception[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					watcher.watch();
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		thread.start();
+		try {
+			await(baos, "Watching", 1);
+			assertEquals(1, count(baos, "Enforced in"));
+			assertTrue(outputs.correlationSnapshot().exists());
+			String before = new String(Files.readAllBytes(outputs.allComponentReferences().toPath()), StandardCharsets.UTF_8);
+			assertTrue(before.contains("App One!App!1!App Two!App!1"));
+			write(target, yaml.replace("      - com.jimandlisa.app.two\n      - com.jimandlisa.service\n", "").replace("      - com.jimandlisa.service.one\n", "").replace("      - com.jimandlisa.app.one\n",
+					"      - com.jimandlisa.app\n      - com.jimandlisa.service\n")); // Both apps in one component, so nothing's illegal.
+			await(baos, "Watching", 2);
+			assertEquals(2, count(baos, "Enforced in"));
+			String after = new String(Files.readAllBytes(outputs.allComponentReferences().toPath()), StandardCharsets.UTF_8);
+			assertTrue(!after.contains("App One!App!1!App Two!App!1"));
+			assertTrue(!outputs.illegalReferences().exists()); // Fixed, so the previous run's illegal references are gone.
+			assertTrue(!outputs.illegalComponentReferences().exists());
+			write(target, yaml.replace("      - com.jimandlisa.utils\n", "      - com.jimandlisa.utils\n      - com.nosuchpackage\n"));
+			await(baos, "Watching", 3);
+			assertEquals(1, count(baos, "unused package com.nosuchpackage"));
+			assertEquals(after, new String(Files.readAllBytes(outputs.allComponentReferences().toPath()), StandardCharsets.UTF_8)); // Failed runs don't touch outputs.
+			write(target, yaml);
+			await(baos, "Watching", 4);
+			assertEquals(3, count(baos, "Enforced in"));
+			assertEquals(before, new String(Files.readAllBytes(outputs.allComponentReferences().toPath()), StandardCharsets.UTF_8));
+			assertTrue(outputs.illegalReferences().exists());
+			Files.copy(outputs.allReferences().toPath(), allReferences.toPath(), StandardCopyOption.REPLACE_EXISTING); // Resolves again.
+			await(baos, "Watching", 5);
+			assertEquals(4, count(baos, "Enforced in"));
+			assertEquals(before, new String(Files.readAllBytes(outputs.allComponentReferences().toPath()), StandardCharsets.UTF_8));
+			assertTrue(CorrelationSnapshot.read(outputs.correlationSnapshot(), allReferences) != null);
+		} finally {
+			watcher.close();
+			thread.join(30000);
+		}
+		assertTrue(!thread.isAlive());
+		assertTrue(failure[0] == null);
+		try (Watcher restarted = new Watcher(new RapidIterationInputs(target, allReferences), outputs, console, flags)) {
+			assertTrue(restarted.enforce(false)); // Starts from the snapshot the last run left.
+		}
+	}
+
+	// Changes are collected until they settle, so several saves make one run. Files that aren't inputs are ignored, unless so many change that
+	// events are lost, in which case everything is resolved again. Interrupting the watch ends it.
+	@Test
+	public void testWatchEvents() throws Exception {
+		File directory = TestUtils.targetDir(TestUtils.uniqueSubdir());
+		directory.mkdirs();
+		File target = new File(directory, "target.yaml");
+		String yaml = TestUtils.readTestClassesFile("SampleTarget2.yaml");
+		write(target, yaml);
+		Outputs outputs = new Outputs(TestUtils.targetDir(TestUtils.uniqueSubdir()));
+		outputs.profile().mkdirs(); // Not empty, so the profile can't replace it, which has to be reported without stopping the watch.
+		write(new File(outputs.profile(), "blocker.txt"), "");
+		RapidIterationFlags flags = new RapidIterationFlags();
+		flags.enableWatch();
+		flags.enableProfile();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final AtomicBoolean hold = new AtomicBoolean(false);
+		final CountDownLatch held = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final PrintStream console = new PrintStream(baos, true, StandardCharsets.UTF_8.name()) {
+			@Override
+			public void println(String line) {
+				if (line.startsWith("Enforced in") && hold.getAndSet(false)) {
+					held.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				synchronized (baos) {
+					super.println(line);
+				}
+			}
+		};
+		final Watcher watcher = new Watcher(new RapidIterationInputs(target, TestUtils.sampleAllReferences()), outputs, console, flags);
+		final Exception[] failure = new Exception[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					watcher.watch();
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		thread.start();
+		try {
+			await(baos, "Watching", 1);
+			assertTrue(count(baos, outputs.profile().getAbsolutePath()) > 0);
+			write(new File(directory, "unrelated.txt"), "unrelated");
+			Thread.sleep(5 * Watcher.SETTLE_MILLIS); // Long enough to be seen, and ignored, on its own.
+			for (int i = 0; i < 3; i++) {
+				write(target, yaml);
+			}
+			await(baos, "Watching", 2);
+			assertEquals(2, count(baos, "Enforced in"));
+			hold.set(true);
+			write(target, yaml);
+			held.await();
+			for (int i = 0; i < 600; i++) { // More than a watch key queues, while the watch is busy enforcing.
+				write(new File(directory, "unrelated" + i + ".txt"), "unrelated");
+			}
+			Thread.sleep(10 * Watcher.SETTLE_MILLIS);
+			release.countDown();
+			await(baos, "Watching", 4);
+			assertEquals(4, count(baos, "Enforced in"));
+			thread.interrupt();
+			thread.join(30000);
+			assertTrue(!thread.isAlive());
+		} finally {
+			release.countDown();
+			watcher.close();
+			thread.join(30000);
+		}
+		assertTrue(failure[0] == null);
+		assertEquals(4, count(baos, "Watching"));
+	}
+}